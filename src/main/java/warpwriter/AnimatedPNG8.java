@@ -0,0 +1,340 @@
+package warpwriter;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.StreamUtils;
+import squidpony.annotation.GwtIncompatible;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Animated PNG (APNG) encoder for indexed-color animations, using the same chunk writing and filtering as
+ * {@link PNG8}. Every frame shares one palette, held by {@link #palette}, and after the first frame only the rectangle
+ * that changed since the previous frame is stored. Inside that rectangle, pixels that didn't change are written as
+ * transparent and blended over the previous frame, which compresses much better than repeating them, unless the
+ * palette has no transparent entry or some pixel in the rectangle becomes transparent. Browsers and most image viewers
+ * play APNG files, and programs that don't understand APNG show the first frame as an ordinary PNG.
+ * <p>
+ * Frames can be streamed, so only the previous frame's palette indices need to stay in memory: set {@link #palette}
+ * (usually to the palette the frames were rendered with, using {@link PaletteReducer#exact(int[])}), then call
+ * {@link #start(OutputStream, int, int, int, int)}, {@link #writeFrame(Pixmap)} once per frame, and {@link #finish()}.
+ * If all frames are already in memory, {@link #write(OutputStream, Array, int)} does all of that, and analyzes all the
+ * frames together to build a palette if {@link #palette} is null. Colors that aren't in the palette are mapped to the
+ * closest color without dithering, since dither patterns that change every frame would defeat the cropping.
+ * <p>
+ * An instance can be reused to encode multiple animations, but can only write one at a time.
+ * @author Tommy Ettinger
+ */
+@GwtIncompatible
+public class AnimatedPNG8 implements Disposable {
+    static private final byte[] SIGNATURE = {(byte)137, 80, 78, 71, 13, 10, 26, 10};
+    static private final int IHDR = 0x49484452, IDAT = 0x49444154, IEND = 0x49454E44,
+            PLTE = 0x504C5445, TRNS = 0x74524E53, ACTL = 0x6163544C, FCTL = 0x6663544C, FDAT = 0x66644154;
+    static private final byte COLOR_INDEXED = 3;
+    static private final byte COMPRESSION_DEFLATE = 0;
+    static private final byte FILTER_NONE = 0;
+    static private final byte INTERLACE_NONE = 0;
+    static private final byte PAETH = 4;
+    static private final byte DISPOSE_NONE = 0, BLEND_SOURCE = 0, BLEND_OVER = 1;
+
+    private final PNG8.ChunkBuffer buffer;
+    private final Deflater deflater;
+    private boolean flipY = true;
+
+    public PaletteReducer palette;
+
+    private DataOutputStream dataOutput;
+    private int width, height, frameCount, framesWritten, sequence, fps;
+    private boolean hasTransparent;
+    /**
+     * The palette index for every color in the palette, so exact colors can be looked up without the 15-bit mapping.
+     */
+    private final IntIntMap exact = new IntIntMap(256);
+    /**
+     * Palette indices of the previous and current frames, in the order rows are written; and scratch rows for
+     * filtering.
+     */
+    private byte[] previous, current, curLine, prevLine, lineOut;
+
+    public AnimatedPNG8() {
+        this(128 * 128);
+    }
+
+    public AnimatedPNG8(int initialBufferSize) {
+        buffer = new PNG8.ChunkBuffer(initialBufferSize);
+        deflater = new Deflater();
+    }
+
+    /** If true, the resulting APNG is flipped vertically. Default is true. */
+    public void setFlipY (boolean flipY) {
+        this.flipY = flipY;
+    }
+
+    /** Sets the deflate compression level. Default is {@link Deflater#DEFAULT_COMPRESSION}. */
+    public void setCompression (int level) {
+        deflater.setLevel(level);
+    }
+
+    /**
+     * Writes all of the given frames as an APNG file that loops forever; see {@link #write(OutputStream, Array, int)}.
+     * @param file a FileHandle that must be writable, and will have the given frames written as an APNG image
+     * @param frames the frames to write, in order; all must be the same size
+     * @param fps how many frames to show per second
+     * @throws IOException if file writing fails for any reason
+     */
+    public void write (FileHandle file, Array<Pixmap> frames, int fps) throws IOException {
+        OutputStream output = file.write(false);
+        try {
+            write(output, frames, fps);
+        } finally {
+            StreamUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Writes all of the given frames as an APNG that loops forever. If {@link #palette} is null, this first analyzes
+     * all the frames together to make a shared palette with {@link PaletteReducer#analyze(Array)}, and keeps it in
+     * {@link #palette}; otherwise it uses the existing palette.
+     * @param output an OutputStream that will not be closed
+     * @param frames the frames to write, in order; all must be the same size
+     * @param fps how many frames to show per second
+     * @throws IOException if OutputStream things fail for any reason
+     */
+    public void write (OutputStream output, Array<Pixmap> frames, int fps) throws IOException {
+        if (palette == null) {
+            palette = new PaletteReducer();
+            palette.analyze(frames);
+        }
+        final Pixmap first = frames.get(0);
+        start(output, first.getWidth(), first.getHeight(), frames.size, fps);
+        for (int i = 0; i < frames.size; i++) {
+            writeFrame(frames.get(i));
+        }
+        finish();
+    }
+
+    /**
+     * Begins writing an APNG that loops forever to output, using {@link #palette} for every frame. Follow this with
+     * exactly {@code frameCount} calls to {@link #writeFrame(Pixmap)} and then one call to {@link #finish()}.
+     * @param output an OutputStream that will not be closed
+     * @param width the width of every frame
+     * @param height the height of every frame
+     * @param frameCount how many frames will be written
+     * @param fps how many frames to show per second
+     * @throws IOException if OutputStream things fail for any reason
+     */
+    public void start (OutputStream output, int width, int height, int frameCount, int fps) throws IOException {
+        if (palette == null)
+            throw new IllegalStateException("AnimatedPNG8.palette must be set before start() is called");
+        if (frameCount < 1)
+            throw new IllegalArgumentException("frameCount must be at least 1");
+        this.width = width;
+        this.height = height;
+        this.frameCount = frameCount;
+        this.fps = Math.max(1, fps);
+        framesWritten = 0;
+        sequence = 0;
+
+        final int[] paletteArray = palette.paletteArray;
+        int colors = paletteArray.length;
+        while (colors > 1 && paletteArray[colors - 1] == 0)
+            colors--;
+        hasTransparent = paletteArray[0] == 0;
+        exact.clear();
+        for (int i = hasTransparent ? 1 : 0; i < colors; i++) {
+            if (!exact.containsKey(paletteArray[i]))
+                exact.put(paletteArray[i], i);
+        }
+
+        final int size = width * height;
+        if (current == null || current.length < size) {
+            previous = new byte[size];
+            current = new byte[size];
+        }
+        if (lineOut == null || lineOut.length < width) {
+            lineOut = new byte[width];
+            curLine = new byte[width];
+            prevLine = new byte[width];
+        }
+
+        dataOutput = new DataOutputStream(output);
+        dataOutput.write(SIGNATURE);
+
+        buffer.writeInt(IHDR);
+        buffer.writeInt(width);
+        buffer.writeInt(height);
+        buffer.writeByte(8); // 8 bits per component.
+        buffer.writeByte(COLOR_INDEXED);
+        buffer.writeByte(COMPRESSION_DEFLATE);
+        buffer.writeByte(FILTER_NONE);
+        buffer.writeByte(INTERLACE_NONE);
+        buffer.endChunk(dataOutput);
+
+        buffer.writeInt(ACTL);
+        buffer.writeInt(frameCount);
+        buffer.writeInt(0); // loop forever
+        buffer.endChunk(dataOutput);
+
+        buffer.writeInt(PLTE);
+        for (int i = 0; i < colors; i++) {
+            int p = paletteArray[i];
+            buffer.write(p>>>24);
+            buffer.write(p>>>16);
+            buffer.write(p>>>8);
+        }
+        buffer.endChunk(dataOutput);
+
+        if (hasTransparent) {
+            buffer.writeInt(TRNS);
+            buffer.write(0);
+            buffer.endChunk(dataOutput);
+        }
+    }
+
+    /**
+     * Writes the next frame of the animation started by {@link #start(OutputStream, int, int, int, int)}. The first
+     * frame is written whole; later frames only store the rectangle that changed since the frame before.
+     * @param frame a Pixmap with the same size given to start(); it can be reused or disposed after this returns
+     * @throws IOException if OutputStream things fail for any reason
+     */
+    public void writeFrame (Pixmap frame) throws IOException {
+        if (dataOutput == null || framesWritten >= frameCount)
+            throw new IllegalStateException("writeFrame() must come after start(), at most frameCount times");
+        index(frame);
+        int x0 = 0, y0 = 0, x1 = width, y1 = height;
+        byte blend = BLEND_SOURCE;
+        if (framesWritten > 0) {
+            // find the rectangle of changed pixels; x0 > x1 when nothing changed
+            x0 = width;
+            y0 = height;
+            x1 = -1;
+            y1 = -1;
+            boolean toTransparent = false;
+            for (int y = 0, i = 0; y < height; y++) {
+                for (int x = 0; x < width; x++, i++) {
+                    if (current[i] != previous[i]) {
+                        if (x < x0) x0 = x;
+                        if (x > x1) x1 = x;
+                        if (y < y0) y0 = y;
+                        y1 = y;
+                        toTransparent |= current[i] == 0;
+                    }
+                }
+            }
+            if (x1 < 0) {
+                // nothing changed, but every frame needs some data; repeat one pixel
+                x0 = y0 = 0;
+                x1 = y1 = 0;
+            }
+            x1++;
+            y1++;
+            if (hasTransparent && !toTransparent)
+                blend = BLEND_OVER;
+        }
+        final int w = x1 - x0, h = y1 - y0;
+
+        buffer.writeInt(FCTL);
+        buffer.writeInt(sequence++);
+        buffer.writeInt(w);
+        buffer.writeInt(h);
+        buffer.writeInt(x0);
+        buffer.writeInt(y0);
+        buffer.writeShort(1);
+        buffer.writeShort(fps);
+        buffer.writeByte(DISPOSE_NONE);
+        buffer.writeByte(blend);
+        buffer.endChunk(dataOutput);
+
+        if (framesWritten == 0) {
+            buffer.writeInt(IDAT);
+        } else {
+            buffer.writeInt(FDAT);
+            buffer.writeInt(sequence++);
+        }
+        deflater.reset();
+        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+        byte[] curLine = this.curLine, prevLine = this.prevLine;
+        for (int x = 0; x < w; x++) {
+            prevLine[x] = 0;
+        }
+        for (int y = y0; y < y1; y++) {
+            final int row = y * width;
+            if (blend == BLEND_OVER) {
+                for (int x = x0, i = row + x0; x < x1; x++, i++) {
+                    curLine[x - x0] = current[i] == previous[i] ? 0 : current[i];
+                }
+            } else {
+                System.arraycopy(current, row + x0, curLine, 0, w);
+            }
+            PNG8.filterRow(PAETH, curLine, prevLine, lineOut, 0, w);
+            deflaterOutput.write(PAETH);
+            deflaterOutput.write(lineOut, 0, w);
+
+            byte[] temp = curLine;
+            curLine = prevLine;
+            prevLine = temp;
+        }
+        deflaterOutput.finish();
+        buffer.endChunk(dataOutput);
+
+        byte[] temp = previous;
+        previous = current;
+        current = temp;
+        framesWritten++;
+    }
+
+    /**
+     * Ends the animation started by {@link #start(OutputStream, int, int, int, int)}, after all of its frames have
+     * been written, and flushes the OutputStream (without closing it).
+     * @throws IOException if OutputStream things fail for any reason
+     */
+    public void finish () throws IOException {
+        if (dataOutput == null)
+            throw new IllegalStateException("finish() must come after start()");
+        if (framesWritten != frameCount)
+            throw new IllegalStateException("Expected " + frameCount + " frames but " + framesWritten + " were written");
+        buffer.writeInt(IEND);
+        buffer.endChunk(dataOutput);
+        dataOutput.flush();
+        dataOutput = null;
+    }
+
+    /**
+     * Fills {@link #current} with the palette index of every pixel in frame, in the order rows will be written.
+     */
+    private void index (Pixmap frame) {
+        final int[] paletteArray = palette.paletteArray;
+        final byte[] paletteMapping = palette.paletteMapping;
+        int lastColor = 0, lastIndex = 0;
+        for (int y = 0, i = 0; y < height; y++) {
+            final int py = flipY ? (height - y - 1) : y;
+            for (int px = 0; px < width; px++, i++) {
+                int color = frame.getPixel(px, py);
+                if ((color & 0x80) == 0 && hasTransparent) {
+                    current[i] = 0;
+                    continue;
+                }
+                color |= 0xFF;
+                if (color != lastColor || i == 0) {
+                    lastColor = color;
+                    lastIndex = exact.get(color, -1);
+                    if (lastIndex < 0)
+                        lastIndex = paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] & 0xFF;
+                }
+                current[i] = (byte) lastIndex;
+            }
+        }
+    }
+
+    /** Disposal will happen automatically in {@link #finalize()} but can be done explicitly if desired. */
+    public void dispose () {
+        deflater.end();
+    }
+}
@@ -0,0 +1,862 @@
+package warpwriter;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.math.MathUtils;
+import squidpony.annotation.GwtIncompatible;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Runs the color reduction methods of a {@link PaletteReducer} on raw {@code int[]} buffers of RGBA8888 pixels, in
+ * row-major order, using several threads. Each method here has the same name as the PaletteReducer method it mirrors,
+ * and produces exactly the same pixels as that method does on a Pixmap with the same contents; the only difference is
+ * how fast it gets there. The PaletteReducer's palette and dither strength are read each time a method is called, so
+ * changes to the reducer are picked up without making a new DitherEngine.
+ * <br>
+ * The methods that only look at a pixel and its position ({@link #reduceSolid(int[], int, int)},
+ * {@link #reduceWithRoberts(int[], int, int)}, {@link #reduceRobertsMul(int[], int, int)},
+ * {@link #reduceRobertsEdit(int[], int, int)}, and {@link #reduceShaderMimic(int[], int, int)}) split the image into
+ * bands of rows and reduce the bands independently. The error-diffusion methods ({@link #reduce(int[], int, int)},
+ * {@link #reduceBurkes(int[], int, int)}, {@link #reduceFloydSteinberg(int[], int, int)}, and
+ * {@link #reduceWithNoise(int[], int, int)}) can't do that, because each pixel depends on error from the ones before
+ * it; instead, each thread takes the next row and follows a few pixels behind the thread working on the row above it,
+ * so a "wavefront" of rows moves across the image together. Error is added in the same order the serial methods use, so
+ * rounding is identical too.
+ * <br>
+ * Pixmaps can be reduced with the Pixmap overloads, which copy the pixels out with {@link #getPixels(Pixmap, int[])},
+ * reduce them, and copy them back with {@link #setPixels(Pixmap, int[])}. If you reduce many images of the same size,
+ * calling those yourself with a reused buffer avoids allocating a new array each time.
+ */
+@GwtIncompatible
+public class DitherEngine {
+    /**
+     * The PaletteReducer whose palette, mapping, and dither strength this uses.
+     */
+    public PaletteReducer reducer;
+    /**
+     * The ForkJoinPool that work is split across; defaults to the common pool.
+     */
+    public ForkJoinPool pool;
+
+    private static final int SIERRA = 0, BURKES = 1, FLOYD = 2, NOISE = 3;
+    private static final int SOLID = 0, ROBERTS = 1, ROBERTS_MUL = 2, ROBERTS_EDIT = 3, SHADER_MIMIC = 4;
+
+    /**
+     * Constructs a DitherEngine that uses the given PaletteReducer and the common ForkJoinPool.
+     * @param reducer a PaletteReducer that should already have a palette
+     */
+    public DitherEngine(PaletteReducer reducer) {
+        this(reducer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a DitherEngine that uses the given PaletteReducer and ForkJoinPool.
+     * @param reducer a PaletteReducer that should already have a palette
+     * @param pool    the ForkJoinPool to run on; a pool with parallelism 1 will do everything on one thread
+     */
+    public DitherEngine(PaletteReducer reducer, ForkJoinPool pool) {
+        this.reducer = reducer;
+        this.pool = pool;
+    }
+
+    /**
+     * Copies the pixels of {@code pixmap} into a row-major array of RGBA8888 ints, reusing buffer if it is big enough.
+     * This is fastest when the Pixmap's format is RGBA8888.
+     * @param pixmap a Pixmap to read from
+     * @param buffer an int array to reuse if it has at least width * height items; may be null
+     * @return buffer if it was big enough, or a new int array otherwise
+     */
+    public static int[] getPixels(Pixmap pixmap, int[] buffer) {
+        final int w = pixmap.getWidth(), h = pixmap.getHeight(), size = w * h;
+        if (buffer == null || buffer.length < size)
+            buffer = new int[size];
+        if (pixmap.getFormat() == Pixmap.Format.RGBA8888) {
+            final ByteBuffer bytes = pixmap.getPixels().duplicate();
+            bytes.order(ByteOrder.BIG_ENDIAN);
+            bytes.position(0);
+            bytes.asIntBuffer().get(buffer, 0, size);
+        } else {
+            for (int y = 0, i = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    buffer[i++] = pixmap.getPixel(x, y);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Copies a row-major array of RGBA8888 ints into {@code pixmap}, replacing what it held (no blending is done).
+     * @param pixmap a Pixmap to write to
+     * @param pixels an int array with at least width * height items, such as one from {@link #getPixels(Pixmap, int[])}
+     * @return pixmap, after modifications
+     */
+    public static Pixmap setPixels(Pixmap pixmap, int[] pixels) {
+        final int w = pixmap.getWidth(), h = pixmap.getHeight(), size = w * h;
+        if (pixmap.getFormat() == Pixmap.Format.RGBA8888) {
+            final ByteBuffer bytes = pixmap.getPixels().duplicate();
+            bytes.order(ByteOrder.BIG_ENDIAN);
+            bytes.position(0);
+            bytes.asIntBuffer().put(pixels, 0, size);
+        } else {
+            Pixmap.Blending blending = pixmap.getBlending();
+            pixmap.setBlending(Pixmap.Blending.None);
+            for (int y = 0, i = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    pixmap.drawPixel(x, y, pixels[i++]);
+                }
+            }
+            pixmap.setBlending(blending);
+        }
+        return pixmap;
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduce(Pixmap)} (Sierra Lite dithering), but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduce(int[] pixels, int width, int height) {
+        return diffuse(SIERRA, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceBurkes(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceBurkes(int[] pixels, int width, int height) {
+        return diffuse(BURKES, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceFloydSteinberg(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceFloydSteinberg(int[] pixels, int width, int height) {
+        return diffuse(FLOYD, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceWithNoise(Pixmap)}, but on an int array, using several threads. The random
+     * state that method carries from pixel to pixel depends only on the original colors, so it is found for the start
+     * of each row in a quick serial pass before the rows are dithered in parallel.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceWithNoise(int[] pixels, int width, int height) {
+        return diffuse(NOISE, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceSolid(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceSolid(int[] pixels, int width, int height) {
+        return ordered(SOLID, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceWithRoberts(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceWithRoberts(int[] pixels, int width, int height) {
+        return ordered(ROBERTS, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceRobertsMul(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceRobertsMul(int[] pixels, int width, int height) {
+        return ordered(ROBERTS_MUL, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceRobertsEdit(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceRobertsEdit(int[] pixels, int width, int height) {
+        return ordered(ROBERTS_EDIT, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceShaderMimic(Pixmap)}, but on an int array, using several threads.
+     * @param pixels RGBA8888 ints in row-major order; will be modified in place
+     * @param width  the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return pixels, after modifications
+     */
+    public int[] reduceShaderMimic(int[] pixels, int width, int height) {
+        return ordered(SHADER_MIMIC, pixels, width, height);
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduce(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduce(Pixmap pixmap) {
+        return setPixels(pixmap, reduce(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceBurkes(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceBurkes(Pixmap pixmap) {
+        return setPixels(pixmap, reduceBurkes(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceFloydSteinberg(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceFloydSteinberg(Pixmap pixmap) {
+        return setPixels(pixmap, reduceFloydSteinberg(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceWithNoise(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceWithNoise(Pixmap pixmap) {
+        return setPixels(pixmap, reduceWithNoise(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceSolid(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceSolid(Pixmap pixmap) {
+        return setPixels(pixmap, reduceSolid(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceWithRoberts(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceWithRoberts(Pixmap pixmap) {
+        return setPixels(pixmap, reduceWithRoberts(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceRobertsMul(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceRobertsMul(Pixmap pixmap) {
+        return setPixels(pixmap, reduceRobertsMul(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceRobertsEdit(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceRobertsEdit(Pixmap pixmap) {
+        return setPixels(pixmap, reduceRobertsEdit(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    /**
+     * Same as {@link PaletteReducer#reduceShaderMimic(Pixmap)}, using several threads.
+     * @param pixmap a Pixmap that will be modified in place
+     * @return the given Pixmap, for chaining
+     */
+    public Pixmap reduceShaderMimic(Pixmap pixmap) {
+        return setPixels(pixmap, reduceShaderMimic(getPixels(pixmap, null), pixmap.getWidth(), pixmap.getHeight()));
+    }
+
+    private int[] ordered(int kind, int[] pixels, int width, int height) {
+        if (width <= 0 || height <= 0)
+            return pixels;
+        // aim for bands of roughly 16K pixels, which keeps scheduling overhead small without starving threads
+        pool.invoke(new BandTask(kind, pixels, width, Math.max(1, 0x4000 / width), 0, height));
+        return pixels;
+    }
+
+    private int[] diffuse(int kind, int[] pixels, int width, int height) {
+        if (width <= 0 || height <= 0)
+            return pixels;
+        pool.invoke(new Wavefront(kind, pixels, width, height, Math.min(pool.getParallelism(), height)));
+        return pixels;
+    }
+
+    /**
+     * Reduces rows from start (inclusive) to end (exclusive) with one of the dithers that only depend on position.
+     * Each case is a copy of the loop in the matching PaletteReducer method.
+     */
+    private void reduceRows(final int kind, final int[] pixels, final int width, final int start, final int end) {
+        final int[] paletteArray = reducer.paletteArray;
+        final byte[] paletteMapping = reducer.paletteMapping;
+        final boolean hasTransparent = (paletteArray[0] == 0);
+        final float ditherStrength = reducer.ditherStrength;
+        int color, used, i = start * width;
+        switch (kind) {
+            case SOLID:
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < width; px++, i++) {
+                        color = pixels[i];
+                        if ((color & 0x80) == 0 && hasTransparent)
+                            pixels[i] = 0;
+                        else {
+                            int rr = ((color >>> 24)       );
+                            int gg = ((color >>> 16) & 0xFF);
+                            int bb = ((color >>> 8)  & 0xFF);
+                            pixels[i] = paletteArray[
+                                    paletteMapping[((rr << 7) & 0x7C00)
+                                            | ((gg << 2) & 0x3E0)
+                                            | ((bb >>> 3))] & 0xFF];
+                        }
+                    }
+                }
+                break;
+            case ROBERTS: {
+                int adj;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < width; px++, i++) {
+                        color = pixels[i] & 0xF8F8F880;
+                        if ((color & 0x80) == 0 && hasTransparent)
+                            pixels[i] = 0;
+                        else {
+                            adj = (int)((px * 0xC13FA9A902A6328FL + y * 0x91E10DA5C79E7B1DL >> 57) * ditherStrength);
+                            adj ^= adj >> 31;
+                            adj -= 32 * ditherStrength;
+                            color |= (color >>> 5 & 0x07070700) | 0xFE;
+                            int rr = MathUtils.clamp(((color >>> 24)       ) + (adj), 0, 0xFF);
+                            int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (adj), 0, 0xFF);
+                            int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (adj), 0, 0xFF);
+                            pixels[i] = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                        }
+                    }
+                }
+                break;
+            }
+            case ROBERTS_MUL: {
+                float adj, str = ditherStrength * (256f / paletteArray.length) * 0x2.5p-27f;
+                long pos;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < width; px++, i++) {
+                        color = pixels[i] & 0xF8F8F880;
+                        if ((color & 0x80) == 0 && hasTransparent)
+                            pixels[i] = 0;
+                        else {
+                            color |= (color >>> 5 & 0x07070700) | 0xFE;
+                            int rr = ((color >>> 24)       );
+                            int gg = ((color >>> 16) & 0xFF);
+                            int bb = ((color >>> 8)  & 0xFF);
+                            used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                            pos = (px * 0xC13FA9A902A6328FL - y * 0x91E10DA5C79E7B1DL);
+                            pos ^= pos >>> 1;
+                            adj = ((pos >> 40) * str);
+                            rr = MathUtils.clamp((int) (rr * (1f + adj * ((used >>> 24) - rr >> 3))), 0, 0xFF);
+                            gg = MathUtils.clamp((int) (gg * (1f + adj * ((used >>> 16 & 0xFF) - gg >> 3))), 0, 0xFF);
+                            bb = MathUtils.clamp((int) (bb * (1f + adj * ((used >>> 8 & 0xFF) - bb >> 3))), 0, 0xFF);
+                            pixels[i] = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                        }
+                    }
+                }
+                break;
+            }
+            case ROBERTS_EDIT: {
+                int pos;
+                float adj, str = -0x3.Fp-20f * ditherStrength;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < width; px++, i++) {
+                        color = pixels[i] & 0xF8F8F880;
+                        if ((color & 0x80) == 0 && hasTransparent)
+                            pixels[i] = 0;
+                        else {
+                            color |= (color >>> 5 & 0x07070700) | 0xFE;
+                            int rr = ((color >>> 24)       );
+                            int gg = ((color >>> 16) & 0xFF);
+                            int bb = ((color >>> 8)  & 0xFF);
+                            used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                            pos = (px * (0xC13FA9A9 + y) + y * (0x91E10DA5 + px));
+                            pos += pos >>> 1 ^ pos >>> 3 ^ pos >>> 4;
+                            adj = (pos >> 12) * str;
+                            rr = MathUtils.clamp((int) (rr + (adj * (((used >>> 24) - rr)))), 0, 0xFF);
+                            gg = MathUtils.clamp((int) (gg + (adj * (((used >>> 16 & 0xFF) - gg)))), 0, 0xFF);
+                            bb = MathUtils.clamp((int) (bb + (adj * (((used >>> 8 & 0xFF) - bb)))), 0, 0xFF);
+                            pixels[i] = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                        }
+                    }
+                }
+                break;
+            }
+            default: {
+                float pos, adj;
+                for (int y = start; y < end; y++) {
+                    for (int px = 0; px < width; px++, i++) {
+                        color = pixels[i] & 0xF8F8F880;
+                        if ((color & 0x80) == 0 && hasTransparent)
+                            pixels[i] = 0;
+                        else {
+                            color |= (color >>> 5 & 0x07070700) | 0xFE;
+                            int rr = ((color >>> 24)       );
+                            int gg = ((color >>> 16) & 0xFF);
+                            int bb = ((color >>> 8)  & 0xFF);
+                            float len = (rr * 5 + gg * 9 + bb * 2) * 0x1.9p-12f + 1f;
+                            used = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                            pos = (px * 0.06711056f + y * 0.00583715f);
+                            pos -= (int)pos;
+                            pos *= 52.9829189f;
+                            adj = (pos - (int)pos) * len - len * 0.5f;
+                            rr = MathUtils.clamp((int) (rr + (adj * ((rr - (used >>> 24))))), 0, 0xFF);
+                            gg = MathUtils.clamp((int) (gg + (adj * ((gg - (used >>> 16 & 0xFF))))), 0, 0xFF);
+                            bb = MathUtils.clamp((int) (bb + (adj * ((bb - (used >>> 8 & 0xFF))))), 0, 0xFF);
+                            pixels[i] = paletteArray[paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))] & 0xFF];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a range of rows in half until it's small enough, then reduces it with {@link #reduceRows}.
+     */
+    private final class BandTask extends RecursiveAction {
+        private final int kind, width, band, start, end;
+        private final int[] pixels;
+
+        BandTask(int kind, int[] pixels, int width, int band, int start, int end) {
+            this.kind = kind;
+            this.pixels = pixels;
+            this.width = width;
+            this.band = band;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= band) {
+                reduceRows(kind, pixels, width, start, end);
+                return;
+            }
+            final int mid = start + end >>> 1;
+            invokeAll(new BandTask(kind, pixels, width, band, start, mid),
+                    new BandTask(kind, pixels, width, band, mid, end));
+        }
+    }
+
+    /**
+     * Runs one of the error-diffusion dithers with one worker per thread. Each worker repeatedly claims the next row
+     * that nobody has started, then dithers it left to right, waiting whenever it gets within {@link #lag} pixels of the
+     * worker on the row above. Rows are claimed in order and a row only waits on the row before it, so this can't
+     * deadlock even if the pool runs the workers one after another.
+     * <br>
+     * Error for a row is written by the row above it and by the row itself. Each row's error lives in one of
+     * {@code threads + 2} slots, reused in a ring; by the time a row clears the slot for the row below it, the row that
+     * used that slot last is guaranteed to be finished, since at most {@code threads} rows can be unfinished at once.
+     */
+    private final class Wavefront extends RecursiveAction {
+        private final int kind, width, height, threads, slots, lag;
+        private final int[] pixels;
+        private final int[] rowStates;
+        private final byte[] errorRed, errorGreen, errorBlue;
+        /**
+         * How many pixels of each row are done; only updated every so often, and always set to width at the end.
+         */
+        private final AtomicIntegerArray progress;
+        private final AtomicInteger nextRow = new AtomicInteger();
+        private final int[] paletteArray;
+        private final byte[] paletteMapping;
+        private final boolean hasTransparent;
+        private final float ditherStrength, halfDitherStrength;
+
+        Wavefront(int kind, int[] pixels, int width, int height, int threads) {
+            this.kind = kind;
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.threads = Math.max(1, threads);
+            slots = this.threads + 2;
+            // how far ahead the row above must be: far enough that it has made every write to the pixel we read, and to
+            // the pixels we write to in our own row, so additions to each byte happen in the serial order
+            lag = kind == BURKES ? 5 : 3;
+            errorRed = new byte[slots * width];
+            errorGreen = new byte[slots * width];
+            errorBlue = new byte[slots * width];
+            progress = new AtomicIntegerArray(height);
+            paletteArray = reducer.paletteArray;
+            paletteMapping = reducer.paletteMapping;
+            hasTransparent = (paletteArray[0] == 0);
+            ditherStrength = reducer.ditherStrength;
+            halfDitherStrength = reducer.halfDitherStrength;
+            rowStates = kind == NOISE ? noiseStates() : null;
+        }
+
+        /**
+         * Runs the random state update from {@link PaletteReducer#reduceWithNoise(Pixmap)} over every pixel, without
+         * dithering anything, to find the state at the start of each row. This only depends on the original colors.
+         */
+        private int[] noiseStates() {
+            final int[] states = new int[height];
+            int color, state = 0xFEEDBEEF;
+            for (int y = 0, i = 0; y < height; y++) {
+                states[y] = state;
+                for (int px = 0; px < width; px++, i++) {
+                    color = pixels[i] & 0xF8F8F880;
+                    if ((color & 0x80) == 0 && hasTransparent)
+                        continue;
+                    color |= (color >>> 5 & 0x07070700) | 0xFE;
+                    state += (color + 0x41C64E6D) ^ color >>> 7;
+                    state = (state << 21 | state >>> 11);
+                    state ^= (state << 5 | state >>> 27) + 0x9E3779B9;
+                }
+            }
+            return states;
+        }
+
+        @Override
+        protected void compute() {
+            final Worker[] workers = new Worker[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker();
+            }
+            invokeAll(workers);
+        }
+
+        private final class Worker extends RecursiveAction {
+            @Override
+            protected void compute() {
+                int y;
+                while ((y = nextRow.getAndIncrement()) < height) {
+                    if (y + 1 < height) {
+                        final int next = (y + 1) % slots * width;
+                        for (int i = next, n = next + width; i < n; i++) {
+                            errorRed[i] = 0;
+                            errorGreen[i] = 0;
+                            errorBlue[i] = 0;
+                        }
+                    }
+                    switch (kind) {
+                        case SIERRA: sierraRow(y);
+                            break;
+                        case BURKES: burkesRow(y);
+                            break;
+                        case FLOYD: floydRow(y);
+                            break;
+                        default: noiseRow(y);
+                    }
+                    progress.set(y, width);
+                }
+            }
+        }
+
+        /**
+         * Waits until the row above y has finished at least {@code need} pixels (or all of them, if need is larger),
+         * and returns how many it has finished.
+         */
+        private int await(final int y, int need) {
+            if (y == 0) return width;
+            need = Math.min(need, width);
+            int done;
+            while ((done = progress.get(y - 1)) < need) {
+                Thread.yield();
+            }
+            return done;
+        }
+
+        private void sierraRow(final int y) {
+            final int row = y * width, cur = y % slots * width, nxt = (y + 1) % slots * width;
+            final boolean hasNext = y + 1 < height;
+            int color, used, rdiff, gdiff, bdiff, ready = 0;
+            byte er, eg, eb, paletteIndex;
+            for (int px = 0; px < width; px++) {
+                if (ready < width && ready < px + lag) ready = await(y, px + lag);
+                color = pixels[row + px] & 0xF8F8F880;
+                if ((color & 0x80) == 0 && hasTransparent)
+                    pixels[row + px] = 0;
+                else {
+                    er = errorRed[cur + px];
+                    eg = errorGreen[cur + px];
+                    eb = errorBlue[cur + px];
+                    color |= (color >>> 5 & 0x07070700) | 0xFE;
+                    int rr = MathUtils.clamp(((color >>> 24)       ) + (er), 0, 0xFF);
+                    int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (eg), 0, 0xFF);
+                    int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (eb), 0, 0xFF);
+                    paletteIndex =
+                            paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))];
+                    used = paletteArray[paletteIndex & 0xFF];
+                    pixels[row + px] = used;
+                    rdiff = (color>>>24)-    (used>>>24);
+                    gdiff = (color>>>16&255)-(used>>>16&255);
+                    bdiff = (color>>>8&255)- (used>>>8&255);
+                    if(px < width - 1)
+                    {
+                        errorRed[cur+px+1]   += rdiff * ditherStrength;
+                        errorGreen[cur+px+1] += gdiff * ditherStrength;
+                        errorBlue[cur+px+1]  += bdiff * ditherStrength;
+                    }
+                    if(hasNext)
+                    {
+                        if(px > 0)
+                        {
+                            errorRed[nxt+px-1]   += rdiff * halfDitherStrength;
+                            errorGreen[nxt+px-1] += gdiff * halfDitherStrength;
+                            errorBlue[nxt+px-1]  += bdiff * halfDitherStrength;
+                        }
+                        errorRed[nxt+px]   += rdiff * halfDitherStrength;
+                        errorGreen[nxt+px] += gdiff * halfDitherStrength;
+                        errorBlue[nxt+px]  += bdiff * halfDitherStrength;
+                    }
+                }
+                if ((px & 15) == 15) progress.lazySet(y, px + 1);
+            }
+        }
+
+        private void burkesRow(final int y) {
+            final int row = y * width, cur = y % slots * width, nxt = (y + 1) % slots * width;
+            final boolean hasNext = y + 1 < height;
+            float r4, r2, r1, g4, g2, g1, b4, b2, b1;
+            int color, used, rdiff, gdiff, bdiff, ready = 0;
+            byte er, eg, eb, paletteIndex;
+            for (int px = 0; px < width; px++) {
+                if (ready < width && ready < px + lag) ready = await(y, px + lag);
+                color = pixels[row + px] & 0xF8F8F880;
+                if ((color & 0x80) == 0 && hasTransparent)
+                    pixels[row + px] = 0;
+                else {
+                    er = errorRed[cur + px];
+                    eg = errorGreen[cur + px];
+                    eb = errorBlue[cur + px];
+                    color |= (color >>> 5 & 0x07070700) | 0xFE;
+                    int rr = MathUtils.clamp(((color >>> 24)       ) + (er), 0, 0xFF);
+                    int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (eg), 0, 0xFF);
+                    int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (eb), 0, 0xFF);
+                    paletteIndex =
+                            paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))];
+                    used = paletteArray[paletteIndex & 0xFF];
+                    pixels[row + px] = used;
+                    rdiff = (color>>>24)-    (used>>>24);
+                    gdiff = (color>>>16&255)-(used>>>16&255);
+                    bdiff = (color>>>8&255)- (used>>>8&255);
+                    r4 = rdiff * halfDitherStrength;
+                    g4 = gdiff * halfDitherStrength;
+                    b4 = bdiff * halfDitherStrength;
+                    r2 = r4 * 0.5f;
+                    g2 = g4 * 0.5f;
+                    b2 = b4 * 0.5f;
+                    r1 = r4 * 0.25f;
+                    g1 = g4 * 0.25f;
+                    b1 = b4 * 0.25f;
+                    if(px < width - 1)
+                    {
+                        errorRed[cur+px+1]   += r4;
+                        errorGreen[cur+px+1] += g4;
+                        errorBlue[cur+px+1]  += b4;
+                        if(px < width - 2)
+                        {
+                            errorRed[cur+px+2]   += r2;
+                            errorGreen[cur+px+2] += g2;
+                            errorBlue[cur+px+2]  += b2;
+                        }
+                    }
+                    if(hasNext)
+                    {
+                        if(px > 0)
+                        {
+                            errorRed[nxt+px-1]   += r2;
+                            errorGreen[nxt+px-1] += g2;
+                            errorBlue[nxt+px-1]  += b2;
+                            if(px > 1)
+                            {
+                                errorRed[nxt+px-2]   += r1;
+                                errorGreen[nxt+px-2] += g1;
+                                errorBlue[nxt+px-2]  += b1;
+                            }
+                        }
+                        errorRed[nxt+px]   += r4;
+                        errorGreen[nxt+px] += g4;
+                        errorBlue[nxt+px]  += b4;
+                        if(px < width - 1)
+                        {
+                            errorRed[nxt+px+1]   += r2;
+                            errorGreen[nxt+px+1] += g2;
+                            errorBlue[nxt+px+1]  += b2;
+                            if(px < width - 2)
+                            {
+                                errorRed[nxt+px+2]   += r1;
+                                errorGreen[nxt+px+2] += g1;
+                                errorBlue[nxt+px+2]  += b1;
+                            }
+                        }
+                    }
+                }
+                if ((px & 15) == 15) progress.lazySet(y, px + 1);
+            }
+        }
+
+        private void floydRow(final int y) {
+            final int row = y * width, cur = y % slots * width, nxt = (y + 1) % slots * width;
+            final boolean hasNext = y + 1 < height;
+            final float w1 = ditherStrength * 0.125f, w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f;
+            int color, used, rdiff, gdiff, bdiff, ready = 0;
+            byte er, eg, eb, paletteIndex;
+            for (int px = 0; px < width; px++) {
+                if (ready < width && ready < px + lag) ready = await(y, px + lag);
+                color = pixels[row + px] & 0xF8F8F880;
+                if ((color & 0x80) == 0 && hasTransparent)
+                    pixels[row + px] = 0;
+                else {
+                    er = errorRed[cur + px];
+                    eg = errorGreen[cur + px];
+                    eb = errorBlue[cur + px];
+                    color |= (color >>> 5 & 0x07070700) | 0xFE;
+                    int rr = MathUtils.clamp(((color >>> 24)       ) + (er), 0, 0xFF);
+                    int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (eg), 0, 0xFF);
+                    int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (eb), 0, 0xFF);
+                    paletteIndex =
+                            paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))];
+                    used = paletteArray[paletteIndex & 0xFF];
+                    pixels[row + px] = used;
+                    rdiff = (color>>>24)-    (used>>>24);
+                    gdiff = (color>>>16&255)-(used>>>16&255);
+                    bdiff = (color>>>8&255)- (used>>>8&255);
+                    if(px < width - 1)
+                    {
+                        errorRed[cur+px+1]   += rdiff * w7;
+                        errorGreen[cur+px+1] += gdiff * w7;
+                        errorBlue[cur+px+1]  += bdiff * w7;
+                    }
+                    if(hasNext)
+                    {
+                        if(px > 0)
+                        {
+                            errorRed[nxt+px-1]   += rdiff * w3;
+                            errorGreen[nxt+px-1] += gdiff * w3;
+                            errorBlue[nxt+px-1]  += bdiff * w3;
+                        }
+                        if(px < width - 1)
+                        {
+                            errorRed[nxt+px+1]   += rdiff * w1;
+                            errorGreen[nxt+px+1] += gdiff * w1;
+                            errorBlue[nxt+px+1]  += bdiff * w1;
+                        }
+                        errorRed[nxt+px]   += rdiff * w5;
+                        errorGreen[nxt+px] += gdiff * w5;
+                        errorBlue[nxt+px]  += bdiff * w5;
+                    }
+                }
+                if ((px & 15) == 15) progress.lazySet(y, px + 1);
+            }
+        }
+
+        private void noiseRow(final int y) {
+            final int row = y * width, cur = y % slots * width, nxt = (y + 1) % slots * width;
+            final boolean hasNext = y + 1 < height;
+            final float w1 = ditherStrength * 0.125f, w3 = w1 * 3f, w5 = w1 * 5f, w7 = w1 * 7f;
+            float xi1, xi2;
+            int color, used, rdiff, gdiff, bdiff, ready = 0, state = rowStates[y];
+            byte er, eg, eb, paletteIndex;
+            for (int px = 0; px < width; px++) {
+                if (ready < width && ready < px + lag) ready = await(y, px + lag);
+                color = pixels[row + px] & 0xF8F8F880;
+                if ((color & 0x80) == 0 && hasTransparent)
+                    pixels[row + px] = 0;
+                else {
+                    er = errorRed[cur + px];
+                    eg = errorGreen[cur + px];
+                    eb = errorBlue[cur + px];
+                    color |= (color >>> 5 & 0x07070700) | 0xFE;
+                    int rr = MathUtils.clamp(((color >>> 24)       ) + (er), 0, 0xFF);
+                    int gg = MathUtils.clamp(((color >>> 16) & 0xFF) + (eg), 0, 0xFF);
+                    int bb = MathUtils.clamp(((color >>> 8)  & 0xFF) + (eb), 0, 0xFF);
+                    paletteIndex =
+                            paletteMapping[((rr << 7) & 0x7C00)
+                                    | ((gg << 2) & 0x3E0)
+                                    | ((bb >>> 3))];
+                    used = paletteArray[paletteIndex & 0xFF];
+                    pixels[row + px] = used;
+                    rdiff = (color>>>24)-    (used>>>24);
+                    gdiff = (color>>>16&255)-(used>>>16&255);
+                    bdiff = (color>>>8&255)- (used>>>8&255);
+                    state += (color + 0x41C64E6D) ^ color >>> 7;
+                    state = (state << 21 | state >>> 11);
+                    xi1 = PaletteReducer.randomXi(state);
+                    state ^= (state << 5 | state >>> 27) + 0x9E3779B9;
+                    xi2 = PaletteReducer.randomXi(state);
+                    if(px < width - 1)
+                    {
+                        errorRed[cur+px+1]   += rdiff * w7 * (1f + xi1);
+                        errorGreen[cur+px+1] += gdiff * w7 * (1f + xi1);
+                        errorBlue[cur+px+1]  += bdiff * w7 * (1f + xi1);
+                    }
+                    if(hasNext)
+                    {
+                        if(px > 0)
+                        {
+                            errorRed[nxt+px-1]   += rdiff * w3 * (1f + xi2);
+                            errorGreen[nxt+px-1] += gdiff * w3 * (1f + xi2);
+                            errorBlue[nxt+px-1]  += bdiff * w3 * (1f + xi2);
+                        }
+                        if(px < width - 1)
+                        {
+                            errorRed[nxt+px+1]   += rdiff * w1 * (1f - xi2);
+                            errorGreen[nxt+px+1] += gdiff * w1 * (1f - xi2);
+                            errorBlue[nxt+px+1]  += bdiff * w1 * (1f - xi2);
+                        }
+                        errorRed[nxt+px]   += rdiff * w5 * (1f - xi1);
+                        errorGreen[nxt+px] += gdiff * w5 * (1f - xi1);
+                        errorBlue[nxt+px]  += bdiff * w5 * (1f - xi1);
+                    }
+                }
+                if ((px & 15) == 15) progress.lazySet(y, px + 1);
+            }
+        }
+    }
+}
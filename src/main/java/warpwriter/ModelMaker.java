@@ -3,10 +3,15 @@ package warpwriter;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Interpolation;
 import com.badlogic.gdx.math.MathUtils;
+import squidpony.annotation.GwtIncompatible;
 import squidpony.squidmath.*;
+import warpwriter.model.AnimatedVoxelSeq;
+import warpwriter.model.VoxelSeq;
 import warpwriter.model.color.Colorizer;
 
 import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static squidpony.squidmath.GWTRNG.determineBounded;
 import static squidpony.squidmath.GWTRNG.determineInt;
@@ -73,6 +78,183 @@ public class ModelMaker {
         return colorizer;
     }
 
+    /**
+     * Makes a ModelMaker that shares the models loaded by source (and its Colorizer) without reading any files, but has
+     * its own RNG and its own size fields, so it can generate on a different thread than source.
+     */
+    private ModelMaker(ModelMaker source, long seed)
+    {
+        rng = new GWTRNG(seed);
+        ship = source.ship;
+        shipLarge = source.shipLarge;
+        warriorMale = source.warriorMale;
+        sword0 = source.sword0;
+        spear0 = source.spear0;
+        shield0 = source.shield0;
+        shield1 = source.shield1;
+        rightHand = source.rightHand;
+        leftHand = source.leftHand;
+        xSize = ship.length;
+        ySize = ship[0].length;
+        zSize = ship[0][0].length;
+        colorizer = source.colorizer;
+    }
+
+    /**
+     * Gets a new ModelMaker with the same Colorizer and loaded models as this one, but with its own RNG seeded with
+     * {@code seed}, in the same state as a ModelMaker constructed with that seed. Nothing is loaded from files, so
+     * this is cheap, and the copy can be used on a different thread than this ModelMaker.
+     * @param seed the seed for the copy's RNG
+     * @return a new ModelMaker that makes the same models as {@code new ModelMaker(seed, getColorizer())}
+     */
+    public ModelMaker copy(long seed)
+    {
+        return new ModelMaker(this, seed);
+    }
+
+    /**
+     * Something that makes one model with a ModelMaker, usually by calling one of its random generator methods; the
+     * constants in {@link Kind} cover the generators here, and a method reference such as
+     * {@code ModelMaker::blobLargeRandom} works too.
+     */
+    public interface Generator {
+        byte[][][] generate(ModelMaker maker);
+    }
+
+    /**
+     * The random model generators a ModelMaker has, for use with {@link #generate(Generator, long[])}.
+     */
+    public enum Kind implements Generator {
+        FULLY_RANDOM {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.fullyRandom(false);
+            }
+        },
+        FULLY_RANDOM_LARGE {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.fullyRandom(true);
+            }
+        },
+        FISH {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.fishRandom();
+            }
+        },
+        SHIP {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.shipRandom();
+            }
+        },
+        SHIP_LARGE {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.shipLargeRandom();
+            }
+        },
+        SHIP_LARGE_COLORIZED {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.shipLargeRandomColorized();
+            }
+        },
+        SHIP_NOISE {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.shipNoiseColorized();
+            }
+        },
+        SHIP_LARGE_NOISE {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.shipLargeNoiseColorized();
+            }
+        },
+        WARRIOR {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.warriorRandom();
+            }
+        },
+        BLOB_LARGE {
+            @Override
+            public byte[][][] generate(ModelMaker maker) {
+                return maker.blobLargeRandom();
+            }
+        }
+    }
+
+    /**
+     * Makes one model for each seed, on the threads of the common ForkJoinPool. Each model is made by a separate
+     * {@link #copy(long)} of this ModelMaker, seeded with its seed, so the model for a seed is always the same no
+     * matter how many threads are used, what order the seeds are in, or what else was generated first; it is the same
+     * as calling {@code kind.generate(new ModelMaker(seed, getColorizer()))}. This ModelMaker's own RNG isn't used.
+     * @param kind which generator to use, such as {@link Kind#SHIP_LARGE} or {@link Kind#BLOB_LARGE}
+     * @param seeds one seed per model to make
+     * @return an array with the model for {@code seeds[i]} at index i
+     */
+    @GwtIncompatible
+    public byte[][][][] generate(Generator kind, long[] seeds)
+    {
+        return generate(kind, seeds, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Just like {@link #generate(Generator, long[])}, but uses the given ForkJoinPool.
+     * @param kind which generator to use, such as {@link Kind#SHIP_LARGE} or {@link Kind#BLOB_LARGE}
+     * @param seeds one seed per model to make
+     * @param pool the ForkJoinPool to run on
+     * @return an array with the model for {@code seeds[i]} at index i
+     */
+    @GwtIncompatible
+    public byte[][][][] generate(Generator kind, long[] seeds, ForkJoinPool pool)
+    {
+        final byte[][][][] models = new byte[seeds.length][][][];
+        if(seeds.length > 0)
+            pool.invoke(new GenerateTask(this, kind, seeds, models, 0, seeds.length,
+                    Math.max(1, seeds.length / (pool.getParallelism() << 2))));
+        return models;
+    }
+
+    /**
+     * Generates the models for a range of seeds for {@link #generate(Generator, long[], ForkJoinPool)}, splitting the
+     * range in half until it is small enough.
+     */
+    @GwtIncompatible
+    private static final class GenerateTask extends RecursiveAction {
+        private final ModelMaker source;
+        private final Generator kind;
+        private final long[] seeds;
+        private final byte[][][][] models;
+        private final int start, end, batch;
+
+        GenerateTask(ModelMaker source, Generator kind, long[] seeds, byte[][][][] models, int start, int end, int batch) {
+            this.source = source;
+            this.kind = kind;
+            this.seeds = seeds;
+            this.models = models;
+            this.start = start;
+            this.end = end;
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= batch) {
+                for (int i = start; i < end; i++) {
+                    models[i] = kind.generate(source.copy(seeds[i]));
+                }
+                return;
+            }
+            final int mid = start + end >>> 1;
+            invokeAll(new GenerateTask(source, kind, seeds, models, start, mid, batch),
+                    new GenerateTask(source, kind, seeds, models, mid, end, batch));
+        }
+    }
+
     public void setColorizer(Colorizer colorizer) {
         this.colorizer = colorizer;
     }
@@ -1410,4 +1592,232 @@ public class ModelMaker {
         return boom;
     }
 
+    /**
+     * Like {@link #animateExplosion(int, int, int, int, byte[])}, but computes the frames in parallel on the common
+     * ForkJoinPool; see {@link #explosionFrames(int, int, int, int, int, byte[], ForkJoinPool)}. Only one int is drawn
+     * from this ModelMaker's RNG, to seed the explosion.
+     * @param frames how many frames the explosion should last
+     * @param xSize the x size of each frame
+     * @param ySize the y size of each frame
+     * @param zSize the z size of each frame
+     * @param fireColors at least 5 colors, from hottest to smoke, as produced by {@link #fireRange()}
+     * @return a 4D byte array indexed by frame, x, y, and z
+     */
+    @GwtIncompatible
+    public byte[][][][] animateExplosionParallel(int frames, int xSize, int ySize, int zSize, byte[] fireColors)
+    {
+        return explosionFrames(rng.nextInt(), frames, xSize, ySize, zSize, fireColors, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Like {@link #animateExplosionParallel(int, int, int, int, byte[])}, but produces an AnimatedVoxelSeq with only
+     * the voxels that are actually filled, instead of a mostly-empty 4D byte array; see
+     * {@link #explosionSeq(int, int, int, int, int, byte[], ForkJoinPool)}.
+     * @param frames how many frames the explosion should last
+     * @param xSize the x size of each frame
+     * @param ySize the y size of each frame
+     * @param zSize the z size of each frame
+     * @param fireColors at least 5 colors, from hottest to smoke, as produced by {@link #fireRange()}
+     * @return an AnimatedVoxelSeq with one hollowed VoxelSeq per frame
+     */
+    @GwtIncompatible
+    public AnimatedVoxelSeq animateExplosionSeq(int frames, int xSize, int ySize, int zSize, byte[] fireColors)
+    {
+        return explosionSeq(rng.nextInt(), frames, xSize, ySize, zSize, fireColors, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Makes the same kind of explosion as {@link #animateExplosion(int, int, int, int, byte[])}, but each frame only
+     * depends on seed and its own index, so the frames are computed in parallel on pool. Instead of drawing from a
+     * shared RNG, each candidate voxel gets its random numbers from a hash of its position, its frame, and seed, so
+     * the result for a given seed is the same no matter how many threads are used (it isn't the same as what
+     * animateExplosion() makes, though).
+     * @param seed any int; the same seed always makes the same explosion
+     * @param frames how many frames the explosion should last
+     * @param xSize the x size of each frame
+     * @param ySize the y size of each frame
+     * @param zSize the z size of each frame
+     * @param fireColors at least 5 colors, from hottest to smoke, as produced by {@link #fireRange()}
+     * @param pool the ForkJoinPool to run on
+     * @return a 4D byte array indexed by frame, x, y, and z
+     */
+    @GwtIncompatible
+    public static byte[][][][] explosionFrames(int seed, int frames, int xSize, int ySize, int zSize, byte[] fireColors, ForkJoinPool pool)
+    {
+        final byte[][][][] boom = new byte[frames][xSize][ySize][zSize];
+        if(frames > 0)
+            pool.invoke(new ExplosionTask(seed, frames, xSize, ySize, zSize, fireColors, boom, null, 0, frames));
+        return boom;
+    }
+
+    /**
+     * Just like {@link #explosionFrames(int, int, int, int, int, byte[], ForkJoinPool)}, but puts each frame's voxels
+     * straight into a VoxelSeq, so the mostly-empty 4D array is never allocated. Each VoxelSeq is hollowed before this
+     * returns.
+     * @param seed any int; the same seed always makes the same explosion
+     * @param frames how many frames the explosion should last
+     * @param xSize the x size of each frame
+     * @param ySize the y size of each frame
+     * @param zSize the z size of each frame
+     * @param fireColors at least 5 colors, from hottest to smoke, as produced by {@link #fireRange()}
+     * @param pool the ForkJoinPool to run on
+     * @return an AnimatedVoxelSeq with one hollowed VoxelSeq per frame
+     */
+    @GwtIncompatible
+    public static AnimatedVoxelSeq explosionSeq(int seed, int frames, int xSize, int ySize, int zSize, byte[] fireColors, ForkJoinPool pool)
+    {
+        final VoxelSeq[] seqs = new VoxelSeq[frames];
+        if(frames > 0)
+            pool.invoke(new ExplosionTask(seed, frames, xSize, ySize, zSize, fireColors, null, seqs, 0, frames));
+        return new AnimatedVoxelSeq(seqs);
+    }
+
+    /**
+     * Gets the minimum of {@code trials} ints between 0 (inclusive) and bound (exclusive), each determined by state;
+     * the counter-based equivalent of {@link #minIntOf(int, int)}.
+     */
+    private static int minHashOf(int state, final int bound, final int trials)
+    {
+        int value = determineBounded(state, bound);
+        for (int i = 1; i < trials; i++) {
+            value = Math.min(value, determineBounded(state += 0x9E3779B9, bound));
+        }
+        return value;
+    }
+
+    /**
+     * Fills frame i of an explosion made by {@link #explosionFrames(int, int, int, int, int, byte[], ForkJoinPool)},
+     * either into dense (indexed by x, y, z) or into sparse, whichever is non-null. The radius and lift for each frame
+     * come from the same schedule animateExplosion() steps through, just calculated directly from i.
+     */
+    private static void explosionFrame(final int seed, final int i, final int frames, final int xSize, final int ySize,
+                                       final int zSize, final byte[] fireColors, final byte[][][] dense, final VoxelSeq sparse)
+    {
+        final FastNoise noise = new FastNoise(seed, 0x1.2p-3f, FastNoise.SIMPLEX_FRACTAL, 2);
+        noise.setFractalType(FastNoise.FBM);
+        final int centerX = xSize >> 1, centerY = ySize >> 1;
+        final int expandLength = Math.round(frames * 0.2f);
+        final int riseLength = Math.round(frames * 0.3f);
+        final int smokeLength = frames - riseLength - expandLength;
+        final float w = i * 0.125f;
+        float maxRadius = Math.min(centerX, centerY);
+        float startRadius = maxRadius * 0.375f;
+        float currentRadius, rad2;
+        int hx, hy, hz, h;
+        byte v;
+        if(i < expandLength) {
+            currentRadius = Interpolation.pow2InInverse.apply(startRadius, maxRadius, (float) i / expandLength);
+            rad2 = currentRadius * currentRadius * 0.825f;
+            for (float x = -currentRadius; x <= currentRadius; x++) {
+                for (float y = -currentRadius; y <= currentRadius; y++) {
+                    if(x * x + y * y > rad2 + 7)
+                        continue;
+                    for (float z = 0; z < currentRadius; z++) {
+                        float ns = noise.getSimplexFractal(x, y, z, w);
+                        h = hashAll(hx = Math.round(centerX + x), hy = Math.round(centerY + y), hz = Math.round(z), i, seed);
+                        if(x * x + y * y + z * z <= rad2 + (h >>> 28) - 16 * (ns + 1.5f) && ns * 16 + 12 < i) {
+                            v = fireColors[minHashOf(h, 7, 1 + expandLength - i) >> 1];
+                            if(dense != null) dense[hx][hy][hz] = v;
+                            else sparse.put(hx, hy, hz, v);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        // where the expand phase left off
+        if(expandLength > 0)
+            startRadius = Interpolation.pow2InInverse.apply(startRadius, maxRadius, (expandLength - 1f) / expandLength);
+        maxRadius = Math.min(centerX, centerY) * 1.1f - 1;
+        float startLift = zSize * 0.125f, currentLift;
+        if(i < expandLength + riseLength) {
+            final int j = i - expandLength;
+            currentRadius = MathUtils.lerp(startRadius, maxRadius, (float) j / riseLength);
+            rad2 = currentRadius * currentRadius * 0.875f;
+            currentLift = MathUtils.lerp(startLift, zSize * 0.4f, (float) j / riseLength);
+            for (float x = -currentRadius; x <= currentRadius; x++) {
+                for (float y = -currentRadius; y <= currentRadius; y++) {
+                    for (float z = currentRadius * -0.875f; z < currentRadius && z + 0.5f + currentLift < zSize; z++) {
+                        float ns = noise.getSimplexFractal(x, y, z, w);
+                        h = hashAll(hx = Math.round(centerX + x), hy = Math.round(centerY + y), hz = Math.round(z + currentLift), i, seed);
+                        if(z + currentLift >= 0 && x * x + y * y + z * z <= rad2 + (h >>> 28) - 16 * (ns + 1.5f) && ns * 16 + 11 < i)
+                        {
+                            v = fireColors[Math.round(NumberTools.formCurvedFloat(determineInt(h)) * 1.6f + 1.5f + 0.1f * j)];
+                            if(dense != null) dense[hx][hy][hz] = v;
+                            else sparse.put(hx, hy, hz, v);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        // where the rise phase left off
+        if(riseLength > 0)
+            startLift = MathUtils.lerp(startLift, zSize * 0.4f, (riseLength - 1f) / riseLength);
+        final int j = i - expandLength - riseLength;
+        currentLift = MathUtils.lerp(startLift, zSize * 0.7f, (float) j / smokeLength);
+        currentRadius = maxRadius;
+        rad2 = currentRadius * currentRadius * 0.875f;
+        for (float x = -currentRadius; x <= currentRadius; x++) {
+            for (float y = -currentRadius; y <= currentRadius; y++) {
+                for (float z = -currentRadius + 0.15f * j * (float) Math.sqrt(x * x + y * y); z + 0.5f + currentLift < zSize; z++) {
+                    float ns = noise.getSimplexFractal(x, y, z, w);
+                    h = hashAll(hx = MathUtils.clamp(Math.round(centerX + x), 0, xSize-1), hy = MathUtils.clamp(Math.round(centerY + y), 0, ySize-1),
+                            hz = MathUtils.clamp(Math.round(z + currentLift), 0, zSize-1), i, seed);
+                    if(z + currentLift >= 0 && x * x + y * y + z * z * 0.9f <= rad2 + (h >>> 28) - 16 * (ns + 1.5f) && ns * 512 + 230 < 11 * smokeLength - i * 7)
+                    {
+                        v = fireColors[Math.min(4, Math.round(NumberTools.formCurvedFloat(determineInt(h)) * 1.4f + 3.45f + 0.2f * (j - smokeLength)))];
+                        if(dense != null) dense[hx][hy][hz] = v;
+                        else sparse.put(hx, hy, hz, v);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes a range of explosion frames, splitting it in half until only one frame is left.
+     */
+    @GwtIncompatible
+    private static final class ExplosionTask extends RecursiveAction {
+        private final int seed, frames, xSize, ySize, zSize, start, end;
+        private final byte[] fireColors;
+        private final byte[][][][] dense;
+        private final VoxelSeq[] sparse;
+
+        ExplosionTask(int seed, int frames, int xSize, int ySize, int zSize, byte[] fireColors,
+                      byte[][][][] dense, VoxelSeq[] sparse, int start, int end) {
+            this.seed = seed;
+            this.frames = frames;
+            this.xSize = xSize;
+            this.ySize = ySize;
+            this.zSize = zSize;
+            this.fireColors = fireColors;
+            this.dense = dense;
+            this.sparse = sparse;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                if (dense != null)
+                    explosionFrame(seed, start, frames, xSize, ySize, zSize, fireColors, dense[start], null);
+                else {
+                    final VoxelSeq seq = new VoxelSeq(64);
+                    // the same cube putArray() and putSurface() use, so every rotation fits
+                    seq.sizeX = seq.sizeY = seq.sizeZ = Math.max(xSize, Math.max(ySize, zSize));
+                    explosionFrame(seed, start, frames, xSize, ySize, zSize, fireColors, null, seq);
+                    seq.hollow();
+                    sparse[start] = seq;
+                }
+                return;
+            }
+            final int mid = start + end >>> 1;
+            invokeAll(new ExplosionTask(seed, frames, xSize, ySize, zSize, fireColors, dense, sparse, start, mid),
+                    new ExplosionTask(seed, frames, xSize, ySize, zSize, fireColors, dense, sparse, mid, end));
+        }
+    }
+
 }
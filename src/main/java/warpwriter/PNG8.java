@@ -11,8 +11,12 @@ import com.badlogic.gdx.utils.StreamUtils;
 import squidpony.annotation.GwtIncompatible;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedOutputStream;
 import java.util.zip.Deflater;
@@ -82,6 +86,44 @@ public class PNG8 implements Disposable {
     private ByteArray lineOutBytes, curLineBytes, prevLineBytes;
     private boolean flipY = true;
     private int lastLineLen;
+    private int compression = Deflater.DEFAULT_COMPRESSION;
+    private ParallelDeflaterOutputStream parallelOutput;
+    private FilterMode filterMode = FilterMode.PAETH;
+    /**
+     * Each row filtered with each of the 5 PNG filters, with the filter type in the first byte; only used by the
+     * ADAPTIVE and BRUTE_FORCE filter modes.
+     */
+    private byte[][] filtered;
+    /**
+     * The last (up to) 32KB of filtered data written so far in the current image, used as the dictionary when
+     * {@link FilterMode#BRUTE_FORCE} trial-compresses a row, plus the Deflater and output buffer for those trials.
+     */
+    private byte[] window, trialOutput;
+    private int windowLength;
+    private Deflater trialDeflater;
+
+    /**
+     * Ways to choose the PNG filter used to predict each row of pixels from the one above it and the pixels to its
+     * left; see {@link #setFilterMode(FilterMode)}.
+     */
+    public enum FilterMode {
+        /**
+         * Uses the Paeth filter for every row; this is fast and usually good, and is the default.
+         */
+        PAETH,
+        /**
+         * Tries all five filters (None, Sub, Up, Average, and Paeth) on each row and uses the one whose output has the
+         * smallest sum of absolute values, treating bytes as signed; this is the heuristic the PNG specification
+         * suggests, and costs a little more time than PAETH.
+         */
+        ADAPTIVE,
+        /**
+         * Compresses each row with all five filters, using the data already written as context, and keeps whichever
+         * filter compressed smallest. This is many times slower than the other modes and is meant for final exports
+         * where every byte counts.
+         */
+        BRUTE_FORCE
+    }
 
     public PaletteReducer palette;
 
@@ -102,6 +144,65 @@ public class PNG8 implements Disposable {
     /** Sets the deflate compression level. Default is {@link Deflater#DEFAULT_COMPRESSION}. */
     public void setCompression (int level) {
         deflater.setLevel(level);
+        compression = level;
+    }
+
+    /**
+     * Sets how the filter for each row of pixels is chosen; see {@link FilterMode}. The default is
+     * {@link FilterMode#PAETH}. Every mode produces a valid PNG with the same pixels; only the size and the time taken
+     * to write it change.
+     * @param filterMode a FilterMode; if null, this uses PAETH
+     */
+    public void setFilterMode (FilterMode filterMode) {
+        this.filterMode = filterMode == null ? FilterMode.PAETH : filterMode;
+    }
+
+    public FilterMode getFilterMode () {
+        return filterMode;
+    }
+
+    /**
+     * Makes later writes compress image data on the threads of the common ForkJoinPool, splitting it into blocks of
+     * 128KB; see {@link #setParallel(ForkJoinPool, int)}.
+     */
+    public void setParallel () {
+        setParallel(ForkJoinPool.commonPool(), 1 << 17);
+    }
+
+    /**
+     * Makes later writes compress image data in independent blocks, on the threads of the given pool, instead of all
+     * on the calling thread. Each block is compressed with the last 32KB of the block before it as a preset
+     * dictionary, and the blocks are joined into one ordinary zlib stream, so any PNG decoder can read the result and
+     * the file is usually only slightly larger than the serial writer's. Blocks start compressing as soon as they fill
+     * up, while later rows are still being filtered. The buffers and Deflaters for each block are kept and reused by
+     * later writes until {@link #dispose()}. Passing a null pool goes back to compressing on the calling thread, which
+     * is the default.
+     * @param pool the ForkJoinPool to compress on, or null to compress serially
+     * @param blockSize how many bytes of filtered image data go in each block; at least 32KB is recommended
+     */
+    public void setParallel (ForkJoinPool pool, int blockSize) {
+        if (pool == null) {
+            if (parallelOutput != null)
+                parallelOutput.end();
+            parallelOutput = null;
+        } else if (parallelOutput == null) {
+            parallelOutput = new ParallelDeflaterOutputStream(buffer, deflater, pool, blockSize);
+        } else {
+            parallelOutput.pool = pool;
+            parallelOutput.blockSize = Math.max(1024, blockSize);
+        }
+    }
+
+    /**
+     * Gets the stream that compressed IDAT data is written through; if {@link #setParallel(ForkJoinPool, int)} was
+     * given a pool, this is the reusable parallel stream, otherwise it is a new DeflaterOutputStream like libGDX uses.
+     */
+    private DeflaterOutputStream idatOutput () {
+        windowLength = 0;
+        if (parallelOutput == null)
+            return new DeflaterOutputStream(buffer, deflater);
+        parallelOutput.begin(compression);
+        return parallelOutput;
     }
 
     /**
@@ -405,7 +506,7 @@ public class PNG8 implements Disposable {
                 colorToIndex.put(paletteArray[i], i);
             }
         }
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+        DeflaterOutputStream deflaterOutput = idatOutput();
         DataOutputStream dataOutput = new DataOutputStream(output);
         dataOutput.write(SIGNATURE);
 
@@ -461,29 +562,7 @@ public class PNG8 implements Disposable {
                 curLine[px] = (byte) colorToIndex.get(color, 0);
             }
 
-            lineOut[0] = (byte)(curLine[0] - prevLine[0]);
-
-            //Paeth
-            for (int x = 1; x < lineLen; x++) {
-                int a = curLine[x - 1] & 0xff;
-                int b = prevLine[x] & 0xff;
-                int c = prevLine[x - 1] & 0xff;
-                int p = a + b - c;
-                int pa = p - a;
-                if (pa < 0) pa = -pa;
-                int pb = p - b;
-                if (pb < 0) pb = -pb;
-                int pc = p - c;
-                if (pc < 0) pc = -pc;
-                if (pa <= pb && pa <= pc)
-                    c = a;
-                else if (pb <= pc)
-                    c = b;
-                lineOut[x] = (byte)(curLine[x] - c);
-            }
-
-            deflaterOutput.write(PAETH);
-            deflaterOutput.write(lineOut, 0, lineLen);
+            writeLine(deflaterOutput, curLine, prevLine, lineOut, lineLen);
 
             byte[] temp = curLine;
             curLine = prevLine;
@@ -570,7 +649,7 @@ public class PNG8 implements Disposable {
                 colorToIndex.put(paletteArray[i], i);
             }
         }
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+        DeflaterOutputStream deflaterOutput = idatOutput();
         DataOutputStream dataOutput = new DataOutputStream(output);
         dataOutput.write(SIGNATURE);
 
@@ -626,29 +705,7 @@ public class PNG8 implements Disposable {
                 curLine[px - startX] = (byte) colorToIndex.get(color, 0);
             }
 
-            lineOut[0] = (byte)(curLine[0] - prevLine[0]);
-
-            //Paeth
-            for (int x = 1; x < lineLen; x++) {
-                int a = curLine[x - 1] & 0xff;
-                int b = prevLine[x] & 0xff;
-                int c = prevLine[x - 1] & 0xff;
-                int p = a + b - c;
-                int pa = p - a;
-                if (pa < 0) pa = -pa;
-                int pb = p - b;
-                if (pb < 0) pb = -pb;
-                int pc = p - c;
-                if (pc < 0) pc = -pc;
-                if (pa <= pb && pa <= pc)
-                    c = a;
-                else if (pb <= pc)
-                    c = b;
-                lineOut[x] = (byte)(curLine[x] - c);
-            }
-
-            deflaterOutput.write(PAETH);
-            deflaterOutput.write(lineOut, 0, lineLen);
+            writeLine(deflaterOutput, curLine, prevLine, lineOut, lineLen);
 
             byte[] temp = curLine;
             curLine = prevLine;
@@ -668,7 +725,7 @@ public class PNG8 implements Disposable {
         final int[] paletteArray = palette.paletteArray;
         final byte[] paletteMapping = palette.paletteMapping;
 
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+        DeflaterOutputStream deflaterOutput = idatOutput();
         DataOutputStream dataOutput = new DataOutputStream(output);
         dataOutput.write(SIGNATURE);
 
@@ -737,29 +794,7 @@ public class PNG8 implements Disposable {
                 }
             }
 
-            lineOut[0] = (byte)(curLine[0] - prevLine[0]);
-
-            //Paeth
-            for (int x = 1; x < lineLen; x++) {
-                int a = curLine[x - 1] & 0xff;
-                int b = prevLine[x] & 0xff;
-                int c = prevLine[x - 1] & 0xff;
-                int p = a + b - c;
-                int pa = p - a;
-                if (pa < 0) pa = -pa;
-                int pb = p - b;
-                if (pb < 0) pb = -pb;
-                int pc = p - c;
-                if (pc < 0) pc = -pc;
-                if (pa <= pb && pa <= pc)
-                    c = a;
-                else if (pb <= pc)
-                    c = b;
-                lineOut[x] = (byte)(curLine[x] - c);
-            }
-
-            deflaterOutput.write(PAETH);
-            deflaterOutput.write(lineOut, 0, lineLen);
+            writeLine(deflaterOutput, curLine, prevLine, lineOut, lineLen);
 
             byte[] temp = curLine;
             curLine = prevLine;
@@ -775,7 +810,7 @@ public class PNG8 implements Disposable {
     }
 
     private void writeDithered (OutputStream output, Pixmap pixmap) throws IOException{
-        DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
+        DeflaterOutputStream deflaterOutput = idatOutput();
         final int[] paletteArray = palette.paletteArray;
         final byte[] paletteMapping = palette.paletteMapping;
 
@@ -920,29 +955,7 @@ public class PNG8 implements Disposable {
                 }
             }
 
-            lineOut[0] = (byte)(curLine[0] - prevLine[0]);
-
-            //Paeth
-            for (int x = 1; x < w; x++) {
-                int a = curLine[x - 1] & 0xff;
-                int b = prevLine[x] & 0xff;
-                int c = prevLine[x - 1] & 0xff;
-                int p = a + b - c;
-                int pa = p - a;
-                if (pa < 0) pa = -pa;
-                int pb = p - b;
-                if (pb < 0) pb = -pb;
-                int pc = p - c;
-                if (pc < 0) pc = -pc;
-                if (pa <= pb && pa <= pc)
-                    c = a;
-                else if (pb <= pc)
-                    c = b;
-                lineOut[x] = (byte)(curLine[x] - c);
-            }
-
-            deflaterOutput.write(PAETH);
-            deflaterOutput.write(lineOut, 0, w);
+            writeLine(deflaterOutput, curLine, prevLine, lineOut, w);
 
             byte[] temp = curLine;
             curLine = prevLine;
@@ -957,9 +970,367 @@ public class PNG8 implements Disposable {
         output.flush();
     }
 
+    /**
+     * Filters one row of palette indices and writes the filter type and the filtered row to output, choosing the
+     * filter as {@link #filterMode} says.
+     * @param output where filtered rows go to be compressed
+     * @param curLine the palette indices of this row
+     * @param prevLine the palette indices of the row above, or all zeros for the first row
+     * @param lineOut a scratch array at least lineLen long
+     * @param lineLen how many pixels are in a row
+     */
+    private void writeLine (OutputStream output, byte[] curLine, byte[] prevLine, byte[] lineOut, int lineLen)
+            throws IOException {
+        if (filterMode == FilterMode.PAETH) {
+            filterRow(PAETH, curLine, prevLine, lineOut, 0, lineLen);
+            output.write(PAETH);
+            output.write(lineOut, 0, lineLen);
+            return;
+        }
+        if (filtered == null || filtered[0].length < lineLen + 1)
+            filtered = new byte[5][lineLen + 1];
+        int best = 0;
+        if (filterMode == FilterMode.ADAPTIVE) {
+            long bestSum = Long.MAX_VALUE;
+            for (int type = 0; type < 5; type++) {
+                final byte[] row = filtered[type];
+                filterRow(type, curLine, prevLine, row, 1, lineLen);
+                long sum = 0;
+                for (int x = 1; x <= lineLen; x++) {
+                    final int v = row[x];
+                    sum += v < 0 ? -v : v;
+                }
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    best = type;
+                }
+            }
+        } else {
+            if (trialDeflater == null)
+                trialDeflater = new Deflater(compression, true);
+            if (window == null)
+                window = new byte[65536];
+            if (trialOutput == null || trialOutput.length < lineLen + 64)
+                trialOutput = new byte[lineLen + (lineLen >>> 1) + 64];
+            long bestSize = Long.MAX_VALUE;
+            for (int type = 0; type < 5; type++) {
+                final byte[] row = filtered[type];
+                row[0] = (byte) type;
+                filterRow(type, curLine, prevLine, row, 1, lineLen);
+                final Deflater def = trialDeflater;
+                def.reset();
+                def.setLevel(compression);
+                if (windowLength > 0)
+                    def.setDictionary(window, 0, windowLength);
+                def.setInput(row, 0, lineLen + 1);
+                def.finish();
+                long size = 0;
+                while (!def.finished())
+                    size += def.deflate(trialOutput, 0, trialOutput.length);
+                if (size < bestSize) {
+                    bestSize = size;
+                    best = type;
+                }
+            }
+            // keep the last 32KB of what has been written, for the next row's trials
+            final int n = lineLen + 1;
+            if (n >= 32768) {
+                System.arraycopy(filtered[best], n - 32768, window, 0, 32768);
+                windowLength = 32768;
+            } else {
+                if (windowLength + n > window.length) {
+                    final int keep = 32768 - n;
+                    System.arraycopy(window, windowLength - keep, window, 0, keep);
+                    windowLength = keep;
+                }
+                System.arraycopy(filtered[best], 0, window, windowLength, n);
+                windowLength += n;
+            }
+        }
+        filtered[best][0] = (byte) best;
+        output.write(filtered[best], 0, lineLen + 1);
+    }
+
+    /**
+     * Applies one of the five PNG filters to a row of 8-bit palette indices, where each pixel is one byte.
+     * @param type 0 for None, 1 for Sub, 2 for Up, 3 for Average, or 4 for Paeth
+     * @param curLine the row to filter
+     * @param prevLine the row above it, or all zeros for the first row
+     * @param out where to write the filtered bytes
+     * @param offset the index in out to write the first filtered byte to
+     * @param lineLen how many bytes are in a row
+     */
+    static void filterRow (int type, byte[] curLine, byte[] prevLine, byte[] out, int offset, int lineLen) {
+        switch (type) {
+            case 0:
+                System.arraycopy(curLine, 0, out, offset, lineLen);
+                break;
+            case 1:
+                out[offset] = curLine[0];
+                for (int x = 1; x < lineLen; x++)
+                    out[offset + x] = (byte)(curLine[x] - curLine[x - 1]);
+                break;
+            case 2:
+                for (int x = 0; x < lineLen; x++)
+                    out[offset + x] = (byte)(curLine[x] - prevLine[x]);
+                break;
+            case 3:
+                out[offset] = (byte)(curLine[0] - ((prevLine[0] & 0xff) >>> 1));
+                for (int x = 1; x < lineLen; x++)
+                    out[offset + x] = (byte)(curLine[x] - ((curLine[x - 1] & 0xff) + (prevLine[x] & 0xff) >>> 1));
+                break;
+            default:
+                out[offset] = (byte)(curLine[0] - prevLine[0]);
+
+                //Paeth
+                for (int x = 1; x < lineLen; x++) {
+                    int a = curLine[x - 1] & 0xff;
+                    int b = prevLine[x] & 0xff;
+                    int c = prevLine[x - 1] & 0xff;
+                    int p = a + b - c;
+                    int pa = p - a;
+                    if (pa < 0) pa = -pa;
+                    int pb = p - b;
+                    if (pb < 0) pb = -pb;
+                    int pc = p - c;
+                    if (pc < 0) pc = -pc;
+                    if (pa <= pb && pa <= pc)
+                        c = a;
+                    else if (pb <= pc)
+                        c = b;
+                    out[offset + x] = (byte)(curLine[x] - c);
+                }
+        }
+    }
+
     /** Disposal will happen automatically in {@link #finalize()} but can be done explicitly if desired. */
     public void dispose () {
         deflater.end();
+        if (trialDeflater != null) {
+            trialDeflater.end();
+            trialDeflater = null;
+        }
+        if (parallelOutput != null)
+            parallelOutput.end();
+    }
+
+    /**
+     * Collects IDAT data in blocks and compresses each block on a ForkJoinPool, like pigz does. Every block but the
+     * last ends with a sync flush, which ends its deflate data on a byte boundary without marking it final, so the
+     * compressed blocks can be written one after another between a zlib header and an Adler-32 trailer to form one
+     * valid zlib stream. This extends DeflaterOutputStream only so the writers in PNG8 can use either stream; it never
+     * uses the Deflater it passes to the superclass. The blocks' buffers and Deflaters are kept between writes.
+     */
+    @GwtIncompatible
+    static class ParallelDeflaterOutputStream extends DeflaterOutputStream {
+        ForkJoinPool pool;
+        int blockSize;
+        private int level = Deflater.DEFAULT_COMPRESSION;
+        private byte[][] inputs = new byte[0][], outputs = new byte[0][];
+        private int[] inputLengths = new int[0];
+        private Deflater[] deflaters = new Deflater[0];
+        private BlockTask[] tasks = new BlockTask[0];
+        /**
+         * How many blocks have been started in the current stream; the last of those is the one being filled.
+         */
+        private int blocks;
+        private final Adler32 adler = new Adler32();
+
+        ParallelDeflaterOutputStream (OutputStream out, Deflater unused, ForkJoinPool pool, int blockSize) {
+            super(out, unused);
+            this.pool = pool;
+            this.blockSize = Math.max(1024, blockSize);
+        }
+
+        /**
+         * Starts a new zlib stream, compressed at the given level. If the last stream was abandoned partway, such as
+         * when a write to the output threw, this first waits for any of its blocks that are still being compressed,
+         * since they read from the buffers and Deflaters that the new stream reuses.
+         */
+        void begin (int level) {
+            awaitBlocks();
+            this.level = level;
+            blocks = 0;
+            startBlock();
+        }
+
+        private void startBlock () {
+            if (blocks == inputs.length) {
+                final int cap = Math.max(4, blocks << 1);
+                inputs = Arrays.copyOf(inputs, cap);
+                outputs = Arrays.copyOf(outputs, cap);
+                inputLengths = Arrays.copyOf(inputLengths, cap);
+                deflaters = Arrays.copyOf(deflaters, cap);
+                tasks = Arrays.copyOf(tasks, cap);
+            }
+            if (inputs[blocks] == null || inputs[blocks].length != blockSize)
+                inputs[blocks] = new byte[blockSize];
+            inputLengths[blocks] = 0;
+            tasks[blocks] = null;
+            blocks++;
+        }
+
+        @Override
+        public void write (int b) {
+            int i = blocks - 1;
+            if (inputLengths[i] == blockSize) {
+                // the full block isn't the last one, so it can be compressed now
+                submit(i, false);
+                startBlock();
+                i++;
+            }
+            inputs[i][inputLengths[i]++] = (byte) b;
+        }
+
+        @Override
+        public void write (byte[] b, int off, int len) {
+            while (len > 0) {
+                int i = blocks - 1;
+                if (inputLengths[i] == blockSize) {
+                    submit(i, false);
+                    startBlock();
+                    i++;
+                }
+                final int n = Math.min(len, blockSize - inputLengths[i]);
+                System.arraycopy(b, off, inputs[i], inputLengths[i], n);
+                inputLengths[i] += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void submit (final int i, final boolean last) {
+            Deflater def = deflaters[i];
+            if (def == null)
+                def = deflaters[i] = new Deflater(level, true);
+            final int dict = i == 0 ? 0 : Math.min(32768, inputLengths[i - 1]);
+            final BlockTask task = new BlockTask(def, level, last, inputs[i], inputLengths[i],
+                    i == 0 ? null : inputs[i - 1], i == 0 ? 0 : inputLengths[i - 1] - dict, dict, outputs[i]);
+            tasks[i] = task;
+            pool.execute(task);
+        }
+
+        /**
+         * Compresses the last block, waits for all blocks, and writes the whole zlib stream to the output.
+         */
+        @Override
+        public void finish () throws IOException {
+            final int last = blocks - 1;
+            submit(last, true);
+            adler.reset();
+            for (int i = 0; i < blocks; i++) {
+                adler.update(inputs[i], 0, inputLengths[i]);
+            }
+            out.write(0x78);
+            out.write(level == 0 || level == 1 ? 0x01 : level >= 2 && level <= 5 ? 0x5E : level >= 7 ? 0xDA : 0x9C);
+            for (int i = 0; i < blocks; i++) {
+                final BlockTask task = tasks[i];
+                task.join();
+                tasks[i] = null;
+                outputs[i] = task.output;
+                out.write(task.output, 0, task.length);
+            }
+            final int sum = (int) adler.getValue();
+            out.write(sum >>> 24);
+            out.write(sum >>> 16);
+            out.write(sum >>> 8);
+            out.write(sum);
+            blocks = 0;
+        }
+
+        @Override
+        public void flush () {
+        }
+
+        @Override
+        public void close () throws IOException {
+            out.close();
+        }
+
+        /**
+         * Waits for every block task that was submitted and not yet joined by {@link #finish()}. A cancelled
+         * ForkJoinTask can keep running if it had already started, so these are joined rather than cancelled.
+         */
+        private void awaitBlocks () {
+            for (int i = 0; i < tasks.length; i++) {
+                final BlockTask task = tasks[i];
+                if (task != null) {
+                    task.quietlyJoin();
+                    tasks[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Releases the Deflaters for each block, after waiting for any blocks still using them; the stream can still
+         * be used after this, but will make new ones.
+         */
+        void end () {
+            awaitBlocks();
+            for (int i = 0; i < deflaters.length; i++) {
+                if (deflaters[i] != null) {
+                    deflaters[i].end();
+                    deflaters[i] = null;
+                }
+            }
+        }
+
+        /**
+         * Compresses one block; everything it reads is handed to it when it is submitted, and the compressed bytes are
+         * only read back after it is joined, so it never touches the stream's arrays while they might be resized.
+         */
+        private static final class BlockTask extends RecursiveAction {
+            private final Deflater deflater;
+            private final int level, inputLength, dictionaryOffset, dictionaryLength;
+            private final boolean last;
+            private final byte[] input, dictionary;
+            byte[] output;
+            int length;
+
+            BlockTask (Deflater deflater, int level, boolean last, byte[] input, int inputLength,
+                       byte[] dictionary, int dictionaryOffset, int dictionaryLength, byte[] output) {
+                this.deflater = deflater;
+                this.level = level;
+                this.last = last;
+                this.input = input;
+                this.inputLength = inputLength;
+                this.dictionary = dictionary;
+                this.dictionaryOffset = dictionaryOffset;
+                this.dictionaryLength = dictionaryLength;
+                this.output = output;
+            }
+
+            @Override
+            protected void compute () {
+                final Deflater def = deflater;
+                def.reset();
+                def.setLevel(level);
+                if (dictionaryLength > 0)
+                    def.setDictionary(dictionary, dictionaryOffset, dictionaryLength);
+                def.setInput(input, 0, inputLength);
+                byte[] output = this.output;
+                if (output == null || output.length < inputLength + (inputLength >>> 3) + 64)
+                    output = new byte[inputLength + (inputLength >>> 3) + 64];
+                int pos = 0;
+                if (last) {
+                    def.finish();
+                    while (!def.finished()) {
+                        if (pos == output.length)
+                            output = Arrays.copyOf(output, output.length << 1);
+                        pos += def.deflate(output, pos, output.length - pos);
+                    }
+                } else {
+                    // a sync flush fills the buffer exactly when it might have more to write, so loop until it doesn't
+                    do {
+                        if (pos == output.length)
+                            output = Arrays.copyOf(output, output.length << 1);
+                        pos += def.deflate(output, pos, output.length - pos, Deflater.SYNC_FLUSH);
+                    } while (pos == output.length);
+                }
+                this.output = output;
+                length = pos;
+            }
+        }
     }
 
     @GwtIncompatible
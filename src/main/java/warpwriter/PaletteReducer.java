@@ -9,14 +9,21 @@ import com.badlogic.gdx.utils.ByteArray;
 import com.badlogic.gdx.utils.IntIntMap;
 import squidpony.StringKit;
 import squidpony.annotation.GwtIncompatible;
+import squidpony.squidmath.CrossHash;
 import squidpony.squidmath.IRNG;
 import squidpony.squidmath.NumberTools;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Data that can be used to limit the colors present in a Pixmap or other image, here with the goal of using 256 or less
@@ -31,6 +38,37 @@ public class PaletteReducer {
         double difference(final int color1, int r2, int g2, int b2);
         double difference(final int r1, final int g1, final int b1, final int r2, final int g2, final int b2);
     }
+
+    /**
+     * A ColorMetric where the difference between two colors is a weighted sum of squared differences along three axes
+     * of some color space, such as L*A*B. Knowing that lets {@link #exact(int[], ColorMetric)} find the closest palette
+     * color for each RGB555 cell with a k-d tree, instead of comparing against every color in the palette.
+     * <br>
+     * For the tree to pick the same colors as a brute-force search, {@code combine(c0 - q0, c1 - q1, c2 - q2)} must
+     * return exactly what {@code difference(color, r, g, b)} returns, where c is from {@code coordinates()} for color
+     * and q is from {@code coordinates(r, g, b, ...)}. Implementations must also be safe to use from multiple threads.
+     */
+    public interface SpatialColorMetric extends ColorMetric {
+        /**
+         * Converts an RGB color to the three coordinates this metric measures differences in.
+         * @param r red value from 0 to 255, inclusive
+         * @param g green value from 0 to 255, inclusive
+         * @param b blue value from 0 to 255, inclusive
+         * @param out will receive the three coordinates, starting at offset
+         * @param offset the first index in out to write to
+         */
+        void coordinates(final int r, final int g, final int b, final double[] out, final int offset);
+
+        /**
+         * Combines the differences along each axis into the value {@link #difference(int, int, int, int)} would return.
+         * This must never decrease when any argument moves further from 0 and the others stay the same.
+         * @param d0 difference in the first coordinate
+         * @param d1 difference in the second coordinate
+         * @param d2 difference in the third coordinate
+         * @return the difference between the colors, as a positive double
+         */
+        double combine(final double d0, final double d1, final double d2);
+    }
     public static class BasicColorMetric implements ColorMetric{
         /**
          * Color difference metric; returns large numbers even for smallish differences.
@@ -97,7 +135,7 @@ public class PaletteReducer {
         }
     }
 
-    public static class LABEuclideanColorMetric implements ColorMetric {
+    public static class LABEuclideanColorMetric implements SpatialColorMetric {
         /**
          * Color difference metric (squared) using L*A*B color space; returns large numbers even for smallish differences.
          * If this returns 250 or more, the colors may be perceptibly different; 500 or more almost guarantees it.
@@ -250,9 +288,37 @@ public class PaletteReducer {
             return L * L * 190.0 + A * A * 25.0 + B * B * 10.0;
         }
 
+        @Override
+        public void coordinates(final int r8, final int g8, final int b8, final double[] out, final int offset) {
+            double x, y, z, r, g, b;
+
+            r = r8 / 255.0;
+            g = g8 / 255.0;
+            b = b8 / 255.0;
+
+            r = ((r > 0.04045) ? Math.pow((r + 0.055) / 1.055, 2.4) : r / 12.92);
+            g = ((g > 0.04045) ? Math.pow((g + 0.055) / 1.055, 2.4) : g / 12.92);
+            b = ((b > 0.04045) ? Math.pow((b + 0.055) / 1.055, 2.4) : b / 12.92);
+
+            x = (r * 0.4124 + g * 0.3576 + b * 0.1805) / 0.950489; // 0.96422;
+            y = (r * 0.2126 + g * 0.7152 + b * 0.0722) / 1.000000; // 1.00000;
+            z = (r * 0.0193 + g * 0.1192 + b * 0.9505) / 1.088840; // 0.82521;
+
+            x = (x > 0.008856) ? Math.cbrt(x) : (7.787037037037037 * x) + 0.13793103448275862;
+            y = (y > 0.008856) ? Math.cbrt(y) : (7.787037037037037 * y) + 0.13793103448275862;
+            z = (z > 0.008856) ? Math.cbrt(z) : (7.787037037037037 * z) + 0.13793103448275862;
+
+            out[offset] = (116.0 * y) - 16.0;
+            out[offset + 1] = 500.0 * (x - y);
+            out[offset + 2] = 200.0 * (y - z);
+        }
+        @Override
+        public double combine(final double L, final double A, final double B) {
+            return L * L * 190.0 + A * A * 25.0 + B * B * 10.0;
+        }
     }
 
-    public static class LABRoughColorMetric implements ColorMetric {
+    public static class LABRoughColorMetric implements SpatialColorMetric {
         /**
          * Color difference metric (squared) using L*A*B color space; returns large numbers even for smallish differences.
          * If this returns 250 or more, the colors may be perceptibly different; 500 or more almost guarantees it.
@@ -404,6 +470,34 @@ public class PaletteReducer {
             return L * L * 350.0 + A * A * 25.0 + B * B * 10.0;
         }
 
+        @Override
+        public void coordinates(final int r8, final int g8, final int b8, final double[] out, final int offset) {
+            double x, y, z, r, g, b;
+
+            r = r8 / 255.0;
+            g = g8 / 255.0;
+            b = b8 / 255.0;
+
+            r = Math.pow((r + 0.055) / 1.055, 2.4);
+            g = Math.pow((g + 0.055) / 1.055, 2.4);
+            b = Math.pow((b + 0.055) / 1.055, 2.4);
+
+            x = (r * 0.4124 + g * 0.3576 + b * 0.1805);
+            y = (r * 0.2126 + g * 0.7152 + b * 0.0722);
+            z = (r * 0.0193 + g * 0.1192 + b * 0.9505);
+
+            x = Math.sqrt(x);
+            y = Math.cbrt(y);
+            z = Math.sqrt(z);
+
+            out[offset] = 100.0 * y;
+            out[offset + 1] = 500.0 * (x - y);
+            out[offset + 2] = 200.0 * (y - z);
+        }
+        @Override
+        public double combine(final double L, final double A, final double B) {
+            return L * L * 350.0 + A * A * 25.0 + B * B * 10.0;
+        }
     }
 
     public static final BasicColorMetric basicMetric = new BasicColorMetric(); // has no state, should be fine static
@@ -880,11 +974,106 @@ public class PaletteReducer {
             exact(Coloring.AURORA, ENCODED_AURORA);
             return;
         }
+        final int plen = prepareExact(rgbaPalette);
+        fillMapping(metric, plen, metric instanceof SpatialColorMetric
+                ? new PaletteTree(paletteArray, plen, (SpatialColorMetric) metric) : null, 0, 32);
+//        generatePreloadCode(paletteMapping);
+    }
+
+    /**
+     * Just like {@link #exact(int[], ColorMetric)}, but splits the work of filling {@link #paletteMapping} across the
+     * threads of the common ForkJoinPool. The result is identical to what exact() produces. The metric must be safe to
+     * call from several threads at once; all metrics in this class are.
+     *
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items or the length of the array
+     * @param metric      almost always either {@link #basicMetric}, which is faster, or {@link #labMetric}, which may be better
+     */
+    @GwtIncompatible
+    public void exactParallel(int[] rgbaPalette, ColorMetric metric) {
+        exactParallel(rgbaPalette, metric, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Just like {@link #exact(int[], ColorMetric)}, but splits the work of filling {@link #paletteMapping} across the
+     * threads of the given ForkJoinPool, a few planes of red at a time. The result is identical to what exact()
+     * produces. The metric must be safe to call from several threads at once; all metrics in this class are.
+     *
+     * @param rgbaPalette an array of RGBA8888 ints; all will be used up to 256 items or the length of the array
+     * @param metric      almost always either {@link #basicMetric}, which is faster, or {@link #labMetric}, which may be better
+     * @param pool        the ForkJoinPool to run on
+     */
+    @GwtIncompatible
+    public void exactParallel(int[] rgbaPalette, ColorMetric metric, ForkJoinPool pool) {
+        if (rgbaPalette == null || rgbaPalette.length < 2) {
+            exact(Coloring.AURORA, ENCODED_AURORA);
+            return;
+        }
+        final int plen = prepareExact(rgbaPalette);
+        pool.invoke(new MappingTask(this, metric, plen, metric instanceof SpatialColorMetric
+                ? new PaletteTree(paletteArray, plen, (SpatialColorMetric) metric) : null, 0, 32));
+    }
+
+    /**
+     * Like {@link #exactParallel(int[], ColorMetric)}, but first looks in {@code cacheDirectory} for a mapping already
+     * built from the same palette and metric, and if it isn't there, builds it and writes it there for next time. The
+     * cache file is named using a hash of the palette's colors and the metric's class name, so changing either one
+     * just produces a different file. Because metrics are identified by class, a metric with configurable state should
+     * not share a cache directory with differently-configured instances of the same class. If the cache can't be read
+     * or written, this still builds the mapping, and just prints the exception.
+     *
+     * @param rgbaPalette    an array of RGBA8888 ints; all will be used up to 256 items or the length of the array
+     * @param metric         almost always either {@link #basicMetric}, which is faster, or {@link #labMetric}, which may be better
+     * @param cacheDirectory a directory to store cached mappings in; will be created if it doesn't exist
+     */
+    @GwtIncompatible
+    public void exactCached(int[] rgbaPalette, ColorMetric metric, String cacheDirectory) {
+        if (rgbaPalette == null || rgbaPalette.length < 2) {
+            exact(Coloring.AURORA, ENCODED_AURORA);
+            return;
+        }
+        final int plen = Math.min(256, rgbaPalette.length);
+        final File file = new File(cacheDirectory, "mapping_" + StringKit.hex(CrossHash.hash64(Arrays.copyOf(rgbaPalette, plen))
+                ^ CrossHash.hash64(metric.getClass().getName())) + ".bin");
+        if (file.length() == 0x8000) {
+            prepareExact(rgbaPalette);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                raf.readFully(paletteMapping);
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        exactParallel(rgbaPalette, metric);
+        try {
+            final File dir = file.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Could not create directory " + dir);
+            // write to a temporary file first so a reader in another process never sees half a mapping
+            final File temp = File.createTempFile("mapping_", ".tmp", dir);
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(paletteMapping);
+            }
+            if (!temp.renameTo(file) && !file.isFile())
+                throw new IOException("Could not rename " + temp + " to " + file);
+            temp.delete();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Clears {@link #paletteArray} and {@link #paletteMapping} (allocating the latter if needed), then copies the opaque
+     * colors of rgbaPalette into paletteArray and marks each one in paletteMapping as an exact match for itself.
+     * @param rgbaPalette an array of RGBA8888 ints, with at least 2 items
+     * @return how many items of paletteArray are in use
+     */
+    private int prepareExact(int[] rgbaPalette) {
+        if (paletteMapping == null || paletteMapping.length != 0x8000)
+            paletteMapping = new byte[0x8000];
         Arrays.fill(paletteArray, 0);
         Arrays.fill(paletteMapping, (byte) 0);
         final int plen = Math.min(256, rgbaPalette.length);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = rgbaPalette[i];
             if ((color & 0x80) != 0) {
@@ -892,8 +1081,25 @@ public class PaletteReducer {
                 paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
             }
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
+        return plen;
+    }
+
+    /**
+     * Fills in every cell of {@link #paletteMapping} with red from rStart (inclusive) to rEnd (exclusive) that wasn't
+     * already an exact match, choosing the palette index with the smallest difference by metric (the lowest index on
+     * ties). If tree is non-null, it is used to find that index without checking every color in the palette; it will
+     * give the same answer as checking every color would. Different threads can fill different ranges of red at once.
+     * @param metric the ColorMetric to compare colors with
+     * @param plen   how many items of {@link #paletteArray} are in use
+     * @param tree   a PaletteTree built from paletteArray and metric, or null to check every color
+     * @param rStart the lowest red value (from 0 to 31) to fill
+     * @param rEnd   one more than the highest red value (from 1 to 32) to fill
+     */
+    private void fillMapping(final ColorMetric metric, final int plen, final PaletteTree tree, final int rStart, final int rEnd) {
+        final double[] query = new double[5];
+        int rr, gg, bb, c2;
+        double dist;
+        for (int r = rStart; r < rEnd; r++) {
             rr = (r << 3 | r >>> 2);
             for (int g = 0; g < 32; g++) {
                 gg = (g << 3 | g >>> 2);
@@ -901,6 +1107,10 @@ public class PaletteReducer {
                     c2 = r << 10 | g << 5 | b;
                     if (paletteMapping[c2] == 0) {
                         bb = (b << 3 | b >>> 2);
+                        if (tree != null) {
+                            paletteMapping[c2] = (byte) tree.nearest(rr, gg, bb, query);
+                            continue;
+                        }
                         dist = 0x7FFFFFFF;
                         for (int i = 1; i < plen; i++) {
                             if (dist > (dist = Math.min(dist, metric.difference(paletteArray[i], rr, gg, bb))))
@@ -910,7 +1120,162 @@ public class PaletteReducer {
                 }
             }
         }
-//        generatePreloadCode(paletteMapping);
+    }
+
+    /**
+     * A k-d tree over the opaque colors in a palette (other than index 0), in the coordinates of a
+     * {@link SpatialColorMetric}. It is never changed after construction, so one tree can be searched from many threads,
+     * as long as each thread passes its own scratch array to {@link #nearest(int, int, int, double[])}.
+     */
+    private static final class PaletteTree {
+        private final SpatialColorMetric metric;
+        /**
+         * Three coordinates per point, in tree order; the median of each range is the node for that range.
+         */
+        private final double[] coords;
+        /**
+         * The palette index of each point, in tree order.
+         */
+        private final int[] indices;
+        /**
+         * The axis (0, 1, or 2) each node splits on, in tree order.
+         */
+        private final byte[] axes;
+        private final int size;
+
+        PaletteTree(final int[] paletteArray, final int plen, final SpatialColorMetric metric) {
+            this.metric = metric;
+            int n = 0;
+            for (int i = 1; i < plen; i++) {
+                if ((paletteArray[i] & 0x80) != 0) n++;
+            }
+            size = n;
+            coords = new double[n * 3];
+            indices = new int[n];
+            axes = new byte[n];
+            n = 0;
+            for (int i = 1; i < plen; i++) {
+                final int color = paletteArray[i];
+                if ((color & 0x80) != 0) {
+                    metric.coordinates(color >>> 24, color >>> 16 & 0xFF, color >>> 8 & 0xFF, coords, n * 3);
+                    indices[n++] = i;
+                }
+            }
+            build(0, size);
+        }
+
+        private void build(final int start, final int end) {
+            if (end - start <= 1) return;
+            double lo0 = Double.POSITIVE_INFINITY, lo1 = lo0, lo2 = lo0, hi0 = Double.NEGATIVE_INFINITY, hi1 = hi0, hi2 = hi0;
+            for (int i = start; i < end; i++) {
+                final double c0 = coords[i * 3], c1 = coords[i * 3 + 1], c2 = coords[i * 3 + 2];
+                lo0 = Math.min(lo0, c0); hi0 = Math.max(hi0, c0);
+                lo1 = Math.min(lo1, c1); hi1 = Math.max(hi1, c1);
+                lo2 = Math.min(lo2, c2); hi2 = Math.max(hi2, c2);
+            }
+            final double s0 = metric.combine(hi0 - lo0, 0.0, 0.0), s1 = metric.combine(0.0, hi1 - lo1, 0.0),
+                    s2 = metric.combine(0.0, 0.0, hi2 - lo2);
+            final int axis = s0 >= s1 ? (s0 >= s2 ? 0 : 2) : (s1 >= s2 ? 1 : 2);
+            // palettes are small, so an insertion sort on the split axis is plenty
+            for (int i = start + 1; i < end; i++) {
+                for (int j = i; j > start && coords[j * 3 + axis] < coords[j * 3 - 3 + axis]; j--) {
+                    swap(j, j - 1);
+                }
+            }
+            final int mid = start + end >>> 1;
+            axes[mid] = (byte) axis;
+            build(start, mid);
+            build(mid + 1, end);
+        }
+
+        private void swap(final int a, final int b) {
+            final int t = indices[a];
+            indices[a] = indices[b];
+            indices[b] = t;
+            for (int k = 0; k < 3; k++) {
+                final double d = coords[a * 3 + k];
+                coords[a * 3 + k] = coords[b * 3 + k];
+                coords[b * 3 + k] = d;
+            }
+        }
+
+        /**
+         * Finds the palette index closest to the given RGB color, breaking ties by taking the lowest index, or 0 if the
+         * palette has no opaque colors after index 0.
+         * @param r red, from 0 to 255
+         * @param g green, from 0 to 255
+         * @param b blue, from 0 to 255
+         * @param scratch an array with at least 5 items; this is overwritten
+         * @return the palette index with the smallest difference from the given color
+         */
+        int nearest(final int r, final int g, final int b, final double[] scratch) {
+            metric.coordinates(r, g, b, scratch, 0);
+            scratch[3] = 0x7FFFFFFF;
+            scratch[4] = 0;
+            search(0, size, scratch);
+            return (int) scratch[4];
+        }
+
+        private void search(final int start, final int end, final double[] scratch) {
+            if (start >= end) return;
+            final int mid = start + end >>> 1, axis = axes[mid];
+            final double d = metric.combine(coords[mid * 3] - scratch[0], coords[mid * 3 + 1] - scratch[1],
+                    coords[mid * 3 + 2] - scratch[2]);
+            if (d < scratch[3] || (d == scratch[3] && indices[mid] < scratch[4])) {
+                scratch[3] = d;
+                scratch[4] = indices[mid];
+            }
+            final double split = coords[mid * 3 + axis] - scratch[axis];
+            // split > 0 means the query is on the low side
+            if (split > 0) {
+                search(start, mid, scratch);
+                if (plane(axis, split) <= scratch[3]) search(mid + 1, end, scratch);
+            } else {
+                search(mid + 1, end, scratch);
+                if (plane(axis, split) <= scratch[3]) search(start, mid, scratch);
+            }
+        }
+
+        private double plane(final int axis, final double split) {
+            switch (axis) {
+                case 0: return metric.combine(split, 0.0, 0.0);
+                case 1: return metric.combine(0.0, split, 0.0);
+                default: return metric.combine(0.0, 0.0, split);
+            }
+        }
+    }
+
+    /**
+     * Fills part of a PaletteReducer's mapping on a ForkJoinPool, splitting the range of red values in half until only
+     * a few are left per task.
+     */
+    @GwtIncompatible
+    private static final class MappingTask extends RecursiveAction {
+        private final PaletteReducer reducer;
+        private final ColorMetric metric;
+        private final int plen;
+        private final PaletteTree tree;
+        private final int rStart, rEnd;
+
+        MappingTask(PaletteReducer reducer, ColorMetric metric, int plen, PaletteTree tree, int rStart, int rEnd) {
+            this.reducer = reducer;
+            this.metric = metric;
+            this.plen = plen;
+            this.tree = tree;
+            this.rStart = rStart;
+            this.rEnd = rEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (rEnd - rStart <= 2) {
+                reducer.fillMapping(metric, plen, tree, rStart, rEnd);
+                return;
+            }
+            final int mid = rStart + rEnd >>> 1;
+            invokeAll(new MappingTask(reducer, metric, plen, tree, rStart, mid),
+                    new MappingTask(reducer, metric, plen, tree, mid, rEnd));
+        }
     }
 
     /**
@@ -1040,34 +1405,19 @@ public class PaletteReducer {
             exact(Coloring.AURORA, ENCODED_AURORA);
             return;
         }
+        if (paletteMapping == null || paletteMapping.length != 0x8000)
+            paletteMapping = new byte[0x8000];
         Arrays.fill(paletteArray, 0);
         Arrays.fill(paletteMapping, (byte) 0);
         final int plen = Math.min(Math.min(256, colorPalette.length), limit);
-        int color, c2;
-        double dist;
+        int color;
         for (int i = 0; i < plen; i++) {
             color = Color.rgba8888(colorPalette[i]);
             paletteArray[i] = color;
             paletteMapping[(color >>> 17 & 0x7C00) | (color >>> 14 & 0x3E0) | (color >>> 11 & 0x1F)] = (byte) i;
         }
-        int rr, gg, bb;
-        for (int r = 0; r < 32; r++) {
-            rr = (r << 3 | r >>> 2);
-            for (int g = 0; g < 32; g++) {
-                gg = (g << 3 | g >>> 2);
-                for (int b = 0; b < 32; b++) {
-                    c2 = r << 10 | g << 5 | b;
-                    if (paletteMapping[c2] == 0) {
-                        bb = (b << 3 | b >>> 2);
-                        dist = 0x7FFFFFFF;
-                        for (int i = 1; i < plen; i++) {
-                            if (dist > (dist = Math.min(dist, metric.difference(paletteArray[i], rr, gg, bb))))
-                                paletteMapping[c2] = (byte) i;
-                        }
-                    }
-                }
-            }
-        }
+        fillMapping(metric, plen, metric instanceof SpatialColorMetric
+                ? new PaletteTree(paletteArray, plen, (SpatialColorMetric) metric) : null, 0, 32);
     }
     /**
      * Analyzes {@code pixmap} for color count and frequency, building a palette with at most 256 colors if there are
@@ -1134,13 +1484,48 @@ public class PaletteReducer {
      * @param threshold a minimum color difference as produced by {@link #difference(int, int)}; usually between 250 and 1000, 400 is a good default
      */
     public void analyze(Pixmap pixmap, int threshold, int limit) {
-        Arrays.fill(paletteArray, 0);
-        Arrays.fill(paletteMapping, (byte) 0);
+        IntIntMap counts = new IntIntMap(limit);
+        final int hasTransparent = count(pixmap, counts);
+        analyze(counts, hasTransparent, threshold, limit);
+    }
+
+    /**
+     * Analyzes all of {@code pixmaps} together, as if they were one image, for color count and frequency; this builds
+     * one palette that works for every frame of an animation, so no colors change from frame to frame. Uses a
+     * threshold of 400 and a limit of 256 colors; see {@link #analyze(Pixmap, int, int)} for what those do.
+     *
+     * @param pixmaps the frames of an animation, or any group of Pixmaps that should share a palette
+     */
+    public void analyze(Array<Pixmap> pixmaps) {
+        analyze(pixmaps, 400, 256);
+    }
+
+    /**
+     * Analyzes all of {@code pixmaps} together, as if they were one image, for color count and frequency; this builds
+     * one palette that works for every frame of an animation, so no colors change from frame to frame. Otherwise this
+     * is just like {@link #analyze(Pixmap, int, int)}.
+     *
+     * @param pixmaps   the frames of an animation, or any group of Pixmaps that should share a palette
+     * @param threshold a minimum color difference as produced by {@link #difference(int, int)}; usually between 250 and 1000, 400 is a good default
+     * @param limit     the most colors the palette may have, including transparent; usually 256
+     */
+    public void analyze(Array<Pixmap> pixmaps, int threshold, int limit) {
+        IntIntMap counts = new IntIntMap(limit);
+        int hasTransparent = 0;
+        for (int i = 0; i < pixmaps.size; i++) {
+            hasTransparent |= count(pixmaps.get(i), counts);
+        }
+        analyze(counts, hasTransparent, threshold, limit);
+    }
+
+    /**
+     * Adds how often each opaque color appears in pixmap to counts.
+     * @return 1 if any pixel in pixmap is mostly transparent, otherwise 0
+     */
+    private static int count(Pixmap pixmap, IntIntMap counts) {
         int color;
         final int width = pixmap.getWidth(), height = pixmap.getHeight();
-        IntIntMap counts = new IntIntMap(limit);
         int hasTransparent = 0;
-        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
         for (int y = 0; y < height; y++) {
             for (int x = 0; x < width; x++) {
                 color = pixmap.getPixel(x, y);
@@ -1152,6 +1537,17 @@ public class PaletteReducer {
                 }
             }
         }
+        return hasTransparent;
+    }
+
+    /**
+     * Builds the palette and mapping from color counts gathered by {@link #count(Pixmap, IntIntMap)}.
+     */
+    private void analyze(IntIntMap counts, int hasTransparent, int threshold, int limit) {
+        Arrays.fill(paletteArray, 0);
+        Arrays.fill(paletteMapping, (byte) 0);
+        int color;
+        int[] reds = new int[limit], greens = new int[limit], blues = new int[limit];
         final int cs = counts.size;
         ArrayList<IntIntMap.Entry> es = new ArrayList<>(cs);
         for(IntIntMap.Entry e : counts)
@@ -1,8 +1,11 @@
 package warpwriter;
 
+import squidpony.annotation.GwtIncompatible;
 import squidpony.squidmath.CrossHash;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static squidpony.squidmath.CrossHash.Water.*;
 
@@ -163,71 +166,223 @@ public class Tools3D {
         }
         return c;
     }
+    /**
+     * Smooths a model with a cellular automaton, {@code smoothLevel} times. Each pass looks at the 3x3x3 block around
+     * each voxel that isn't on the edge of the array: if 23 or more of those 27 cells are empty, the voxel becomes
+     * empty, otherwise it takes the most common non-empty color in the block, as long as that color is more common than
+     * a third of the empty cells (the lowest color index wins ties). Voxels on the edge, and voxels with color 2, are
+     * kept as they are.
+     * <br>
+     * This works on two flat buffers that trade places each pass, counts colors in a tiny list instead of a 256-item
+     * histogram, and skips the stretches of each row that have no filled voxels nearby. See
+     * {@link #runCAParallel(byte[][][], int)} to also split the work across threads; both give the same result.
+     * @param voxels a 3D byte array of color indices; will not be modified
+     * @param smoothLevel how many passes to run; if less than 1, this returns voxels as-is
+     * @return a new 3D byte array with the smoothed model, or voxels itself if smoothLevel is less than 1
+     */
     public static byte[][][] runCA(byte[][][] voxels, int smoothLevel)
     {
         if(smoothLevel < 1)
             return voxels;
-        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        //Dictionary<byte, int> colorCount = new Dictionary<byte, int>();
-        int[] colorCount = new int[256];
-        byte[][][] vs0 = deepCopy(voxels), vs1 = new byte[xs][ys][zs];
-        for(int v = 0; v < smoothLevel; v++)
-        {
-            if(v >= 1)
-            {
-                deepCopyInto(vs1, vs0);
-                //fetch(vs1, (byte) 0);
+        final CA ca = new CA(voxels);
+        for (int v = 0; v < smoothLevel; v++) {
+            ca.pass(0, ca.xs);
+            ca.swap();
+        }
+        return ca.result();
+    }
+
+    /**
+     * Just like {@link #runCA(byte[][][], int)}, but each pass splits the model into slabs along x and smooths them on
+     * the threads of the common ForkJoinPool. The result is identical to what runCA() produces.
+     * @param voxels a 3D byte array of color indices; will not be modified
+     * @param smoothLevel how many passes to run; if less than 1, this returns voxels as-is
+     * @return a new 3D byte array with the smoothed model, or voxels itself if smoothLevel is less than 1
+     */
+    @GwtIncompatible
+    public static byte[][][] runCAParallel(byte[][][] voxels, int smoothLevel)
+    {
+        return runCAParallel(voxels, smoothLevel, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Just like {@link #runCA(byte[][][], int)}, but each pass splits the model into slabs along x and smooths them on
+     * the threads of the given ForkJoinPool. The result is identical to what runCA() produces.
+     * @param voxels a 3D byte array of color indices; will not be modified
+     * @param smoothLevel how many passes to run; if less than 1, this returns voxels as-is
+     * @param pool the ForkJoinPool to run on
+     * @return a new 3D byte array with the smoothed model, or voxels itself if smoothLevel is less than 1
+     */
+    @GwtIncompatible
+    public static byte[][][] runCAParallel(byte[][][] voxels, int smoothLevel, ForkJoinPool pool)
+    {
+        if(smoothLevel < 1)
+            return voxels;
+        final CA ca = new CA(voxels);
+        final int slab = Math.max(1, ca.xs / (pool.getParallelism() << 2));
+        for (int v = 0; v < smoothLevel; v++) {
+            pool.invoke(new CATask(ca, 0, ca.xs, slab));
+            ca.swap();
+        }
+        return ca.result();
+    }
+
+    /**
+     * The state of a {@link #runCA(byte[][][], int)} call: the model as two flat arrays indexed by
+     * {@code (x * ys + y) * zs + z}, one read and one written by each pass, plus the lowest and highest z with a filled
+     * voxel in each (x,y) row of both, so a pass can skip the parts of a row that are far from anything.
+     */
+    private static final class CA {
+        final int xs, ys, zs;
+        byte[] src, dst;
+        int[] srcLow, srcHigh, dstLow, dstHigh;
+
+        CA(byte[][][] voxels) {
+            xs = voxels.length;
+            ys = voxels[0].length;
+            zs = voxels[0][0].length;
+            src = new byte[xs * ys * zs];
+            dst = new byte[xs * ys * zs];
+            srcLow = new int[xs * ys];
+            srcHigh = new int[xs * ys];
+            dstLow = new int[xs * ys];
+            dstHigh = new int[xs * ys];
+            for (int x = 0, row = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++, row++) {
+                    final byte[] line = voxels[x][y];
+                    System.arraycopy(line, 0, src, row * zs, zs);
+                    int lo = 0, hi = zs - 1;
+                    while (lo < zs && line[lo] == 0) lo++;
+                    while (hi >= lo && line[hi] == 0) hi--;
+                    srcLow[row] = lo;
+                    srcHigh[row] = hi;
+                }
             }
-            for(int x = 0; x < xs; x++)
-            {
-                for(int y = 0; y < ys; y++)
-                {
-                    for(int z = 0; z < zs; z++)
-                    {
-                        Arrays.fill(colorCount, 0);
-                        if(x == 0 || y == 0 || z == 0 || x == xs - 1 || y == ys - 1 || z == zs - 1 || vs0[x][y][z] == 2)
-                        {
-                            colorCount[vs0[x][y][z] & 255] = 10000;
-                            colorCount[0] = -100000;
+        }
+
+        void swap() {
+            byte[] b = src; src = dst; dst = b;
+            int[] t = srcLow; srcLow = dstLow; dstLow = t;
+            t = srcHigh; srcHigh = dstHigh; dstHigh = t;
+        }
+
+        byte[][][] result() {
+            final byte[][][] next = new byte[xs][ys][zs];
+            for (int x = 0, row = 0; x < xs; x++) {
+                for (int y = 0; y < ys; y++, row++) {
+                    System.arraycopy(src, row * zs, next[x][y], 0, zs);
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Reads src and writes dst for every x from x0 (inclusive) to x1 (exclusive). Only touches rows in that range
+         * of dst, dstLow, and dstHigh, so separate ranges can run at the same time.
+         */
+        void pass(final int x0, final int x1) {
+            final byte[] src = this.src, dst = this.dst;
+            final int zs = this.zs, rowStride = zs, slabStride = ys * zs;
+            final byte[] colors = new byte[27];
+            final int[] counts = new int[27];
+            for (int x = x0; x < x1; x++) {
+                for (int y = 0; y < ys; y++) {
+                    final int row = x * ys + y, start = row * zs;
+                    if (x == 0 || y == 0 || x == xs - 1 || y == ys - 1) {
+                        System.arraycopy(src, start, dst, start, zs);
+                        dstLow[row] = srcLow[row];
+                        dstHigh[row] = srcHigh[row];
+                        continue;
+                    }
+                    // any voxel more than one cell past the filled part of all 9 nearby rows has an empty 3x3x3 block
+                    int lo = zs, hi = -1;
+                    for (int dx = -ys; dx <= ys; dx += ys) {
+                        for (int r = row + dx - 1, e = r + 3; r < e; r++) {
+                            lo = Math.min(lo, srcLow[r]);
+                            hi = Math.max(hi, srcHigh[r]);
                         }
-                        else
-                        {
-                            for(int xx = -1; xx < 2; xx++)
-                            {
-                                for(int yy = -1; yy < 2; yy++)
-                                {
-                                    for(int zz = -1; zz < 2; zz++)
-                                    {
-                                        byte smallColor = vs0[x + xx][y + yy][z + zz];
-                                        colorCount[smallColor & 255]++;
+                    }
+                    if (lo > hi) {
+                        Arrays.fill(dst, start, start + zs, (byte) 0);
+                        dstLow[row] = zs;
+                        dstHigh[row] = -1;
+                        continue;
+                    }
+                    lo = Math.max(lo - 1, 0);
+                    hi = Math.min(hi + 1, zs - 1);
+                    Arrays.fill(dst, start, start + lo, (byte) 0);
+                    Arrays.fill(dst, start + hi + 1, start + zs, (byte) 0);
+                    int newLow = zs, newHigh = -1;
+                    for (int z = lo; z <= hi; z++) {
+                        final int i = start + z;
+                        byte result = src[i];
+                        if (z != 0 && z != zs - 1 && result != 2) {
+                            int empty = 0, distinct = 0;
+                            for (int dx = -slabStride; dx <= slabStride; dx += slabStride) {
+                                for (int dy = -rowStride; dy <= rowStride; dy += rowStride) {
+                                    for (int j = i + dx + dy - 1, e = j + 3; j < e; j++) {
+                                        final byte c = src[j];
+                                        if (c == 0) {
+                                            empty++;
+                                            continue;
+                                        }
+                                        int k = 0;
+                                        while (k < distinct && colors[k] != c) k++;
+                                        if (k == distinct) {
+                                            colors[distinct++] = c;
+                                            counts[k] = 1;
+                                        } else counts[k]++;
                                     }
                                 }
                             }
-                        }
-                        if(colorCount[0] >= 23)
-                        {
-                            vs1[x][y][z] = 0;
-                        }
-                        else
-                        {
-                            byte max = 0;
-                            int cc = colorCount[0] / 3, tmp;
-                            for(byte idx = 1; idx != 0; idx++)
-                            {
-                                tmp = colorCount[idx & 255];
-                                if(tmp > 0 && tmp > cc)
-                                {
-                                    cc = tmp;
-                                    max = idx;
+                            result = 0;
+                            if (empty < 23) {
+                                int best = empty / 3;
+                                for (int k = 0; k < distinct; k++) {
+                                    final int n = counts[k];
+                                    if (n > best || (n == best && result != 0 && (colors[k] & 255) < (result & 255))) {
+                                        best = n;
+                                        result = colors[k];
+                                    }
                                 }
                             }
-                            vs1[x][y][z] = max;
+                        }
+                        if ((dst[i] = result) != 0) {
+                            if (newLow == zs) newLow = z;
+                            newHigh = z;
                         }
                     }
+                    dstLow[row] = newLow;
+                    dstHigh[row] = newHigh;
                 }
             }
         }
-        return vs1;
+    }
+
+    /**
+     * Runs one pass of a {@link CA} over a range of x, splitting it in half until a slab is small enough.
+     */
+    @GwtIncompatible
+    private static final class CATask extends RecursiveAction {
+        private final CA ca;
+        private final int x0, x1, slab;
+
+        CATask(CA ca, int x0, int x1, int slab) {
+            this.ca = ca;
+            this.x0 = x0;
+            this.x1 = x1;
+            this.slab = slab;
+        }
+
+        @Override
+        protected void compute() {
+            if (x1 - x0 <= slab) {
+                ca.pass(x0, x1);
+                return;
+            }
+            final int mid = x0 + x1 >>> 1;
+            invokeAll(new CATask(ca, x0, mid, slab), new CATask(ca, mid, x1, slab));
+        }
     }
 
     public static int firstTight(byte[][][] voxels)
@@ -261,96 +416,244 @@ public class Tools3D {
             }
         }
     }
+    /**
+     * Spreads the filled voxels in base into any face-adjacent voxels that are filled in bounds, as far as they can
+     * reach, giving each newly-reached voxel (and each already-filled voxel in base that is also filled in bounds) the
+     * color it has in bounds. This is a breadth-first search, so it visits each voxel once.
+     * @param base a 3D byte array with one or more filled voxels to spread from; will be modified
+     * @param bounds a 3D byte array with the same sizes as base, where filled voxels can be spread into
+     * @return how many voxels are filled in base after this
+     */
     public static int flood(byte[][][] base, byte[][][] bounds)
     {
         final int xs = base.length, ys = base[0].length, zs = base[0][0].length;
-        int size = count(base), totalSize = 0;
-        /*
+        int[] queue = new int[64];
+        int head = 0, tail = 0, total = 0;
         for (int x = 0; x < xs; x++) {
             for (int y = 0; y < ys; y++) {
                 for (int z = 0; z < zs; z++) {
-                    if(base[x][y][z] != 0 && bounds[x][y][z] != 0)
-                        size++;
+                    if (base[x][y][z] != 0) {
+                        total++;
+                        if (bounds[x][y][z] != 0) {
+                            base[x][y][z] = bounds[x][y][z];
+                            if (tail == queue.length) queue = Arrays.copyOf(queue, tail << 1);
+                            queue[tail++] = (x * ys + y) * zs + z;
+                        }
+                    }
                 }
             }
         }
-        */
-
-        byte[][][] nx = deepCopy(base);
         byte t;
-        do {
-            totalSize += size;
-            size = 0;
-            for (int x = 0; x < xs; x++) {
-                for (int y = 0; y < ys; y++) {
-                    for (int z = 0; z < zs; z++) {
-                        if (nx[x][y][z] != 0 && (t = bounds[x][y][z]) != 0) {
-                            nx[x][y][z] = t;
-                            //++size;
-                            if (x > 0 && nx[x - 1][y][z] == 0 && (t = bounds[x - 1][y][z]) != 0) {
-                                nx[x - 1][y][z] = t;
-                                ++size;
-                            }
-                            if (x < xs - 1 && nx[x + 1][y][z] == 0 && (t = bounds[x + 1][y][z]) != 0) {
-                                nx[x + 1][y][z] = t;
-                                ++size;
-                            }
-                            if (y > 0 && nx[x][y - 1][z] == 0 && (t = bounds[x][y - 1][z]) != 0) {
-                                nx[x][y - 1][z] = t;
-                                ++size;
-                            }
-                            if (y < ys - 1 && nx[x][y + 1][z] == 0 && (t = bounds[x][y + 1][z]) != 0) {
-                                nx[x][y + 1][z] = t;
-                                ++size;
-                            }
-                            if (z > 0 && nx[x][y][z - 1] == 0 && (t = bounds[x][y][z - 1]) != 0) {
-                                nx[x][y][z - 1] = t;
-                                ++size;
-                            }
-                            if (z < zs - 1 && nx[x][y][z + 1] == 0 && (t = bounds[x][y][z + 1]) != 0) {
-                                nx[x][y][z + 1] = t;
-                                ++size;
-                            }
+        while (head < tail) {
+            final int i = queue[head++], z = i % zs, y = i / zs % ys, x = i / (ys * zs);
+            for (int d = 0; d < 6; d++) {
+                final int nx = x + NEIGHBORS[d * 3], ny = y + NEIGHBORS[d * 3 + 1], nz = z + NEIGHBORS[d * 3 + 2];
+                if (nx < 0 || ny < 0 || nz < 0 || nx >= xs || ny >= ys || nz >= zs
+                        || base[nx][ny][nz] != 0 || (t = bounds[nx][ny][nz]) == 0)
+                    continue;
+                base[nx][ny][nz] = t;
+                total++;
+                if (tail == queue.length) queue = Arrays.copyOf(queue, tail << 1);
+                queue[tail++] = (nx * ys + ny) * zs + nz;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Offsets to the 26 neighbors of a cell, 3 ints (x, y, z) per neighbor; the first 6 share a face with the cell,
+     * the first 18 share a face or an edge, and all 26 share at least a corner.
+     */
+    private static final int[] NEIGHBORS = new int[78];
+    static {
+        for (int n = 1, i = 0; n <= 3; n++) {
+            for (int x = -1; x <= 1; x++) {
+                for (int y = -1; y <= 1; y++) {
+                    for (int z = -1; z <= 1; z++) {
+                        if ((x & 1) + (y & 1) + (z & 1) == n) {
+                            NEIGHBORS[i++] = x;
+                            NEIGHBORS[i++] = y;
+                            NEIGHBORS[i++] = z;
                         }
                     }
                 }
             }
-        } while (size != 0);
-        deepCopyInto(nx, base);
-        return totalSize + size;
+        }
     }
 
-    public static byte[][][] largestPart(byte[][][] voxels)
-    {
-        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length;
-        int fst = firstTight(voxels), bestSize = 0, currentSize, x, y, z;
-
-        byte[][][] remaining = deepCopy(voxels), filled = new byte[xs][ys][zs],
-                choice = new byte[xs][ys][zs];
-        while (fst >= 0) {
-            fill(filled, 0);
-            x = fst / (ys * zs);
-            y = (fst / zs) % ys;
-            z = fst % zs;
-            filled[x][y][z] = voxels[x][y][z];
-            currentSize = flood(filled, remaining);
-            if(currentSize > bestSize)
-            {
-                bestSize = currentSize;
-                deepCopyInto(filled, choice);
+    /**
+     * The connected parts of a model, as found by {@link #label(byte[][][], int)}. Parts are numbered from 1 to
+     * {@link #count}, in the order their first voxel appears when scanning x, then y, then z (the same order as
+     * {@link #firstTight(byte[][][])}).
+     */
+    public static class Components {
+        /**
+         * The sizes of the model that was labeled.
+         */
+        public final int xs, ys, zs;
+        /**
+         * The part number of each voxel, indexed by {@code (x * ys + y) * zs + z}; 0 for empty voxels.
+         */
+        public final int[] labels;
+        /**
+         * How many parts there are.
+         */
+        public int count;
+        /**
+         * How many voxels are in each part; {@code sizes[id]} is the size of part id, and {@code sizes[0]} is 0.
+         */
+        public int[] sizes;
+        /**
+         * The inclusive bounding box of each part, 6 ints per part in the order min x, min y, min z, max x, max y,
+         * max z; the box of part id starts at {@code boxes[id * 6]}, and the first 6 items are unused.
+         */
+        public int[] boxes;
+
+        public Components(int xs, int ys, int zs) {
+            this.xs = xs;
+            this.ys = ys;
+            this.zs = zs;
+            labels = new int[xs * ys * zs];
+            sizes = new int[16];
+            boxes = new int[96];
+        }
+
+        /**
+         * Gets the part number of the voxel at (x,y,z).
+         * @return the part number, or 0 if that voxel is empty
+         */
+        public int labelAt(int x, int y, int z) {
+            return labels[(x * ys + y) * zs + z];
+        }
+
+        /**
+         * Finds the part with the most voxels; if several are tied, the one with the lowest number wins.
+         * @return the number of the largest part, or 0 if there are no parts
+         */
+        public int largest() {
+            int best = 0;
+            for (int id = 1; id <= count; id++) {
+                if (sizes[id] > sizes[best]) best = id;
             }
+            return best;
+        }
 
-            for (x = 0; x < xs; x++) {
-                for (y = 0; y < ys; y++) {
-                    for (z = 0; z < zs; z++) {
-                        if(filled[x][y][z] != 0)
-                            remaining[x][y][z] = 0;
+        /**
+         * Copies only the voxels in part id from voxels into a new 3D byte array; other voxels will be empty.
+         * @param voxels the same model (or one with the same sizes) that was labeled
+         * @param id which part to keep
+         * @return a new 3D byte array with the same sizes as voxels
+         */
+        public byte[][][] extract(byte[][][] voxels, int id) {
+            final byte[][][] next = new byte[xs][ys][zs];
+            if (id <= 0 || id > count)
+                return next;
+            final int[] labels = this.labels;
+            for (int x = boxes[id * 6], xe = boxes[id * 6 + 3]; x <= xe; x++) {
+                for (int y = boxes[id * 6 + 1], ye = boxes[id * 6 + 4]; y <= ye; y++) {
+                    for (int z = boxes[id * 6 + 2], ze = boxes[id * 6 + 5], i = (x * ys + y) * zs + z; z <= ze; z++, i++) {
+                        if (labels[i] == id)
+                            next[x][y][z] = voxels[x][y][z];
                     }
                 }
             }
-            fst = firstTight(remaining);
+            return next;
         }
-        return choice;
+    }
+
+    /**
+     * Finds the connected parts of a model in one pass, using a breadth-first search from the first voxel of each part.
+     * Two filled voxels are connected if they share a face (with connectivity 6), a face or an edge (18), or a face, an
+     * edge, or a corner (26).
+     * @param voxels a 3D byte array of color indices, where 0 is empty; will not be modified
+     * @param connectivity 6, 18, or 26; other values are treated as 6
+     * @return a Components holding the part number of each voxel and the size and bounding box of each part
+     */
+    public static Components label(byte[][][] voxels, int connectivity)
+    {
+        final int xs = voxels.length, ys = voxels[0].length, zs = voxels[0][0].length,
+                neighbors = connectivity == 26 ? 26 : connectivity == 18 ? 18 : 6;
+        final Components c = new Components(xs, ys, zs);
+        final int[] labels = c.labels;
+        int filled = 0;
+        for (int x = 0, i = 0; x < xs; x++) {
+            for (int y = 0; y < ys; y++) {
+                final byte[] line = voxels[x][y];
+                for (int z = 0; z < zs; z++, i++) {
+                    if (line[z] != 0) {
+                        labels[i] = -1;
+                        filled++;
+                    }
+                }
+            }
+        }
+        final int[] queue = new int[filled];
+        int id = 0;
+        for (int start = 0; start < labels.length; start++) {
+            if (labels[start] != -1)
+                continue;
+            if (++id == c.sizes.length) {
+                c.sizes = Arrays.copyOf(c.sizes, id << 1);
+                c.boxes = Arrays.copyOf(c.boxes, id * 12);
+            }
+            int head = 0, tail = 0, size = 0, minX = xs, minY = ys, minZ = zs, maxX = -1, maxY = -1, maxZ = -1;
+            labels[start] = id;
+            queue[tail++] = start;
+            while (head < tail) {
+                final int i = queue[head++], z = i % zs, y = i / zs % ys, x = i / (ys * zs);
+                size++;
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+                if (y < minY) minY = y;
+                if (y > maxY) maxY = y;
+                if (z < minZ) minZ = z;
+                if (z > maxZ) maxZ = z;
+                for (int d = 0; d < neighbors; d++) {
+                    final int nx = x + NEIGHBORS[d * 3], ny = y + NEIGHBORS[d * 3 + 1], nz = z + NEIGHBORS[d * 3 + 2];
+                    if (nx < 0 || ny < 0 || nz < 0 || nx >= xs || ny >= ys || nz >= zs)
+                        continue;
+                    final int n = (nx * ys + ny) * zs + nz;
+                    if (labels[n] == -1) {
+                        labels[n] = id;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            c.sizes[id] = size;
+            c.boxes[id * 6] = minX;
+            c.boxes[id * 6 + 1] = minY;
+            c.boxes[id * 6 + 2] = minZ;
+            c.boxes[id * 6 + 3] = maxX;
+            c.boxes[id * 6 + 4] = maxY;
+            c.boxes[id * 6 + 5] = maxZ;
+        }
+        c.count = id;
+        return c;
+    }
+
+    /**
+     * Keeps only the largest group of filled voxels that are connected by shared faces, removing everything else.
+     * If two groups are tied for largest, the one with a voxel that comes first in x, then y, then z order is kept.
+     * @param voxels a 3D byte array of color indices; will not be modified
+     * @return a new 3D byte array with the same sizes, holding only the largest connected part
+     */
+    public static byte[][][] largestPart(byte[][][] voxels)
+    {
+        return largestPart(voxels, 6);
+    }
+
+    /**
+     * Keeps only the largest group of connected filled voxels, removing everything else; see
+     * {@link #label(byte[][][], int)} for what connectivity means. If two groups are tied for largest, the one with a
+     * voxel that comes first in x, then y, then z order is kept.
+     * @param voxels a 3D byte array of color indices; will not be modified
+     * @param connectivity 6, 18, or 26
+     * @return a new 3D byte array with the same sizes, holding only the largest connected part
+     */
+    public static byte[][][] largestPart(byte[][][] voxels, int connectivity)
+    {
+        final Components c = label(voxels, connectivity);
+        return c.extract(voxels, c.largest());
     }
 
     public static byte[][][] translateCopy(byte[][][] voxels, int xMove, int yMove, int zMove)
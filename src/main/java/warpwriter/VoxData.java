@@ -0,0 +1,170 @@
+package warpwriter;
+
+import com.badlogic.gdx.utils.IntMap;
+import squidpony.squidmath.OrderedMap;
+import warpwriter.model.AnimatedVoxelSeq;
+import warpwriter.model.VoxelSeq;
+
+import java.util.Arrays;
+
+/**
+ * Everything read from one MagicaVoxel .vox file: the voxels of each model, the palette, and the scene graph and
+ * material chunks (nTRN, nGRP, nSHP, MATL, and LAYR). Unlike {@link VoxIO#readVox(java.io.InputStream)}, producing one
+ * of these doesn't touch {@link VoxIO#lastPalette} or any other shared state, so many files can be read at once on
+ * different threads; see {@link VoxIO#read(java.nio.ByteBuffer)} and {@link VoxIO#readDirectory(String)}.
+ * <br>
+ * Voxels are kept in the compact layout the file uses (4 bytes per voxel: x, y, z, color index) until you ask for them
+ * as a 3D byte array with {@link #toArray(int)} or as a VoxelSeq with {@link #toVoxelSeq(int)} or
+ * {@link #toAnimatedVoxelSeq()}.
+ */
+public class VoxData {
+    /**
+     * The file name this was read from, if known; may be null.
+     */
+    public String name;
+    /**
+     * The RGBA8888 palette for this file, always with 256 items and item 0 transparent. If the file had no RGBA chunk,
+     * this holds MagicaVoxel's default palette (see {@link VoxIO#DEFAULT_PALETTE}).
+     */
+    public final int[] palette;
+    /**
+     * True if the file had its own RGBA chunk, false if {@link #palette} is the default.
+     */
+    public boolean customPalette;
+    /**
+     * The x, y, and z sizes of each model, in file order; {@code sizes[i][0]} is the x size of model i.
+     */
+    public int[][] sizes;
+    /**
+     * The voxels of each model, in file order, each as 4 bytes (x, y, z, color index) per voxel.
+     */
+    public byte[][] voxels;
+    /**
+     * The number of models read so far; only the first {@code modelCount} items of {@link #sizes} and {@link #voxels}
+     * are meaningful.
+     */
+    public int modelCount;
+    /**
+     * Scene graph nodes (from nTRN, nGRP, and nSHP chunks), keyed by node ID.
+     */
+    public final IntMap<Node> nodes;
+    /**
+     * Material properties (from MATL chunks), keyed by material ID, which matches a palette index.
+     */
+    public final IntMap<OrderedMap<String, String>> materials;
+    /**
+     * Layer properties (from LAYR chunks), keyed by layer ID.
+     */
+    public final IntMap<OrderedMap<String, String>> layers;
+
+    /**
+     * One node in the scene graph of a .vox file. What {@link #children} and {@link #frames} hold depends on
+     * {@link #type}:
+     * <ul>
+     *     <li>"nTRN" (transform): children has the one child node ID, frames has the attributes of each frame,
+     *     usually with "_t" for translation and "_r" for rotation, and layer is the layer ID.</li>
+     *     <li>"nGRP" (group): children has the child node IDs, and frames is empty.</li>
+     *     <li>"nSHP" (shape): children has model IDs (indices into {@link #voxels}), and frames has the attributes
+     *     for each of those models, in the same order.</li>
+     * </ul>
+     */
+    public static class Node {
+        public final String type;
+        public final int id;
+        public final OrderedMap<String, String> attributes;
+        public int[] children;
+        public OrderedMap<String, String>[] frames;
+        public int layer = -1;
+
+        public Node(String type, int id, OrderedMap<String, String> attributes) {
+            this.type = type;
+            this.id = id;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + id + " " + attributes + " -> " + Arrays.toString(children);
+        }
+    }
+
+    public VoxData() {
+        palette = Arrays.copyOf(VoxIO.DEFAULT_PALETTE, 256);
+        sizes = new int[1][];
+        voxels = new byte[1][];
+        nodes = new IntMap<>(8);
+        materials = new IntMap<>(8);
+        layers = new IntMap<>(8);
+    }
+
+    /**
+     * Adds a model with no voxels and the given size; used while reading a SIZE chunk.
+     * @param sizeX x size of the model
+     * @param sizeY y size of the model
+     * @param sizeZ z size of the model
+     */
+    public void addModel(int sizeX, int sizeY, int sizeZ) {
+        if (modelCount == sizes.length) {
+            sizes = Arrays.copyOf(sizes, modelCount << 1);
+            voxels = Arrays.copyOf(voxels, modelCount << 1);
+        }
+        sizes[modelCount] = new int[]{sizeX, sizeY, sizeZ};
+        voxels[modelCount++] = new byte[0];
+    }
+
+    /**
+     * Gets how many voxels the model at {@code index} has.
+     * @param index which model, from 0 to {@link #modelCount} - 1
+     * @return the number of voxels in that model
+     */
+    public int voxelCount(int index) {
+        return voxels[index].length >>> 2;
+    }
+
+    /**
+     * Builds a 3D byte array for the model at {@code index}, with the size given in its SIZE chunk. This is the same
+     * thing {@link VoxIO#readVox(java.io.InputStream)} returns for a file with one model.
+     * @param index which model, from 0 to {@link #modelCount} - 1
+     * @return a new 3D byte array holding color indices, or 0 for empty cells
+     */
+    public byte[][][] toArray(int index) {
+        final int[] size = sizes[index];
+        final byte[] raw = voxels[index];
+        final byte[][][] data = new byte[size[0]][size[1]][size[2]];
+        for (int i = 0; i < raw.length; i += 4) {
+            data[raw[i] & 255][raw[i + 1] & 255][raw[i + 2] & 255] = raw[i + 3];
+        }
+        return data;
+    }
+
+    /**
+     * Builds a hollowed VoxelSeq for the model at {@code index}, with sizes set from its SIZE chunk.
+     * @param index which model, from 0 to {@link #modelCount} - 1
+     * @return a new VoxelSeq with {@link VoxelSeq#hollow()} already called
+     */
+    public VoxelSeq toVoxelSeq(int index) {
+        final int[] size = sizes[index];
+        final VoxelSeq seq = new VoxelSeq(voxelCount(index));
+        seq.sizeX(size[0]);
+        seq.sizeY(size[1]);
+        seq.sizeZ(size[2]);
+        seq.putPacked(voxels[index], 0, voxelCount(index));
+        seq.hollow();
+        return seq;
+    }
+
+    /**
+     * Builds an AnimatedVoxelSeq with one frame per model, in file order. This is the same thing
+     * {@link VoxIO#readVoxelSeq(java.nio.ByteBuffer)} returns.
+     * @return a new AnimatedVoxelSeq; if there were no models, it will have one empty frame
+     */
+    public AnimatedVoxelSeq toAnimatedVoxelSeq() {
+        if (modelCount == 0)
+            return new AnimatedVoxelSeq();
+        final VoxelSeq[] seqs = new VoxelSeq[modelCount];
+        for (int i = 0; i < modelCount; i++) {
+            seqs[i] = toVoxelSeq(i);
+        }
+        return new AnimatedVoxelSeq(seqs);
+    }
+}
@@ -1,12 +1,20 @@
 package warpwriter;
 
 import squidpony.annotation.GwtIncompatible;
+import squidpony.squidmath.OrderedMap;
 import warpwriter.model.AnimatedVoxelSeq;
 import warpwriter.model.IVoxelSeq;
 import warpwriter.model.VoxelSeq;
 import warpwriter.model.nonvoxel.LittleEndianDataInputStream;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static warpwriter.model.nonvoxel.HashMap3D.*;
 
@@ -15,7 +23,11 @@ import static warpwriter.model.nonvoxel.HashMap3D.*;
  * Created by Tommy Ettinger on 12/12/2017.
  */
 public class VoxIO {
-    public static int[] lastPalette = {
+    /**
+     * The palette MagicaVoxel uses for files without an RGBA chunk, as RGBA8888 ints with item 0 transparent. This
+     * should not be modified; {@link #lastPalette} starts as a copy of it.
+     */
+    public static final int[] DEFAULT_PALETTE = {
             0x00000000, 0xffffffff, 0xffffccff, 0xffff99ff, 0xffff66ff, 0xffff33ff, 0xffff00ff, 0xffccffff,
             0xffccccff, 0xffcc99ff, 0xffcc66ff, 0xffcc33ff, 0xffcc00ff, 0xff99ffff, 0xff99ccff, 0xff9999ff,
             0xff9966ff, 0xff9933ff, 0xff9900ff, 0xff66ffff, 0xff66ccff, 0xff6699ff, 0xff6666ff, 0xff6633ff,
@@ -49,6 +61,13 @@ public class VoxIO {
             0x000088ff, 0x000077ff, 0x000055ff, 0x000044ff, 0x000022ff, 0x000011ff, 0xeeeeeeff, 0xddddddff,
             0xbbbbbbff, 0xaaaaaaff, 0x888888ff, 0x777777ff, 0x555555ff, 0x444444ff, 0x222222ff, 0x111111ff
     };
+    /**
+     * The palette read by the most recent call to one of the readVox or readVoxelSeq methods that found an RGBA chunk,
+     * or a copy of {@link #DEFAULT_PALETTE} if none has. This is shared by every caller, so it can't be relied on when
+     * files are being read on more than one thread; use {@link #read(ByteBuffer)}, which gives each file its own
+     * {@link VoxData#palette}, in that case.
+     */
+    public static int[] lastPalette = Arrays.copyOf(DEFAULT_PALETTE, 256);
     public static byte[][][] readVox(InputStream stream) {
         return readVox(new LittleEndianDataInputStream(stream));
     }
@@ -171,6 +190,261 @@ public class VoxIO {
         return voxelData;
     }
 
+    // chunk IDs as they appear when the first four bytes of a chunk are read as a little-endian int
+    private static final int ID_VOX  = 'V' | 'O' << 8 | 'X' << 16 | ' ' << 24;
+    private static final int ID_SIZE = 'S' | 'I' << 8 | 'Z' << 16 | 'E' << 24;
+    private static final int ID_XYZI = 'X' | 'Y' << 8 | 'Z' << 16 | 'I' << 24;
+    private static final int ID_RGBA = 'R' | 'G' << 8 | 'B' << 16 | 'A' << 24;
+    private static final int ID_nTRN = 'n' | 'T' << 8 | 'R' << 16 | 'N' << 24;
+    private static final int ID_nGRP = 'n' | 'G' << 8 | 'R' << 16 | 'P' << 24;
+    private static final int ID_nSHP = 'n' | 'S' << 8 | 'H' << 16 | 'P' << 24;
+    private static final int ID_MATL = 'M' | 'A' << 8 | 'T' << 16 | 'L' << 24;
+    private static final int ID_LAYR = 'L' | 'A' << 8 | 'Y' << 16 | 'R' << 24;
+
+    /**
+     * Memory-maps the file at the given path as a read-only, little-endian ByteBuffer that can be passed to
+     * {@link #read(ByteBuffer)}, {@link #readVox(ByteBuffer)}, or {@link #readVoxelSeq(ByteBuffer)}. This avoids
+     * copying the file through an InputStream, which matters when many .vox files are loaded at once.
+     * @param filename the path to a .vox file
+     * @return a little-endian ByteBuffer mapping the whole file, or null if the file couldn't be mapped
+     */
+    @GwtIncompatible
+    public static ByteBuffer mapFile(String filename) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(filename, "r");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // the mapping stays valid after the channel is closed
+            raf.close();
+            return buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads everything this understands from a MagicaVoxel .vox file that has already been loaded or mapped into a
+     * ByteBuffer, such as by {@link #mapFile(String)} or {@code ByteBuffer.wrap(bytes)}. The result holds the voxels of
+     * every model, the palette, and the scene graph and material chunks. This does not write to {@link #lastPalette}
+     * or any other shared state, so it is safe to call from many threads at once. Chunks are walked by their offsets
+     * and each XYZI chunk's voxels are copied in one bulk read. The position, limit, and byte order of {@code buffer}
+     * are not changed.
+     * @param buffer a ByteBuffer holding the full contents of a .vox file, starting at its current position
+     * @return a new VoxData, or null if buffer is null or doesn't contain a valid .vox file
+     */
+    public static VoxData read(ByteBuffer buffer) {
+        // check out https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox.txt for the file format used below
+        // and https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox-extension.txt for the scene graph
+        if (buffer == null)
+            return null;
+        final ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        // a MagicaVoxel .vox file starts with a 'magic' 4 character 'VOX ' identifier, then a version int
+        if (buf.remaining() < 8 || buf.getInt() != ID_VOX)
+            return null;
+        buf.getInt();
+        final VoxData data = new VoxData();
+        final int limit = buf.limit();
+        int start, next;
+        try {
+            while (limit - (start = buf.position()) >= 12) {
+                // each chunk has an ID, size and child chunks; the children follow the content, so we step into them
+                final int chunkId = buf.getInt();
+                final int chunkSize = buf.getInt();
+                buf.getInt();
+                next = start + 12 + chunkSize;
+                if (chunkSize < 0 || next > limit)
+                    break;
+                if (chunkId == ID_SIZE) {
+                    data.addModel(buf.getInt(), buf.getInt(), buf.getInt());
+                } else if (chunkId == ID_XYZI && data.modelCount > 0) {
+                    // XYZI contains n voxels, each stored as x, y, z and color index bytes
+                    final int len = buf.getInt() << 2;
+                    final byte[] prev = data.voxels[data.modelCount - 1];
+                    final byte[] raw = Arrays.copyOf(prev, prev.length + len);
+                    buf.get(raw, prev.length, len);
+                    data.voxels[data.modelCount - 1] = raw;
+                } else if (chunkId == ID_RGBA) {
+                    for (int i = 1; i < 256; i++) {
+                        data.palette[i] = Integer.reverseBytes(buf.getInt());
+                    }
+                    data.customPalette = true;
+                } else if (chunkId == ID_nTRN) {
+                    final VoxData.Node node = new VoxData.Node("nTRN", buf.getInt(), readDict(buf));
+                    node.children = new int[]{buf.getInt()};
+                    buf.getInt(); // reserved
+                    node.layer = buf.getInt();
+                    node.frames = readDicts(buf, buf.getInt(), null);
+                    data.nodes.put(node.id, node);
+                } else if (chunkId == ID_nGRP) {
+                    final VoxData.Node node = new VoxData.Node("nGRP", buf.getInt(), readDict(buf));
+                    node.children = new int[buf.getInt()];
+                    for (int i = 0; i < node.children.length; i++) {
+                        node.children[i] = buf.getInt();
+                    }
+                    node.frames = readDicts(buf, 0, null);
+                    data.nodes.put(node.id, node);
+                } else if (chunkId == ID_nSHP) {
+                    final VoxData.Node node = new VoxData.Node("nSHP", buf.getInt(), readDict(buf));
+                    node.children = new int[buf.getInt()];
+                    node.frames = readDicts(buf, node.children.length, node.children);
+                    data.nodes.put(node.id, node);
+                } else if (chunkId == ID_MATL) {
+                    data.materials.put(buf.getInt(), readDict(buf));
+                } else if (chunkId == ID_LAYR) {
+                    data.layers.put(buf.getInt(), readDict(buf));
+                }
+                buf.position(next);
+            }
+        } catch (RuntimeException e) {
+            // a truncated or malformed chunk; keep what was read before it
+            e.printStackTrace();
+        }
+        return data;
+    }
+
+    private static OrderedMap<String, String> readDict(ByteBuffer buf) {
+        final int count = buf.getInt();
+        final OrderedMap<String, String> dict = new OrderedMap<>(count);
+        for (int i = 0; i < count; i++) {
+            dict.put(readString(buf), readString(buf));
+        }
+        return dict;
+    }
+
+    /**
+     * Reads {@code count} DICT structures; if {@code ids} is non-null, each DICT is preceded by an int that is stored
+     * into ids (as in nSHP chunks).
+     */
+    @SuppressWarnings("unchecked")
+    private static OrderedMap<String, String>[] readDicts(ByteBuffer buf, int count, int[] ids) {
+        final OrderedMap<String, String>[] dicts = new OrderedMap[count];
+        for (int i = 0; i < count; i++) {
+            if (ids != null)
+                ids[i] = buf.getInt();
+            dicts[i] = readDict(buf);
+        }
+        return dicts;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        final byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a MagicaVoxel .vox file that has already been loaded or mapped into a ByteBuffer, such as by
+     * {@link #mapFile(String)} or {@code ByteBuffer.wrap(bytes)}. This produces the same result as
+     * {@link #readVox(LittleEndianDataInputStream)}, including writing any RGBA chunk into {@link #lastPalette}, which
+     * means it isn't safe to call from multiple threads at once; use {@link #read(ByteBuffer)} for that. The position,
+     * limit, and byte order of {@code buffer} are not changed.
+     * @param buffer a ByteBuffer holding the full contents of a .vox file, starting at its current position
+     * @return a 3D byte array of the voxels in the last model, or null if the buffer doesn't contain a valid .vox file
+     */
+    public static byte[][][] readVox(ByteBuffer buffer) {
+        final VoxData data = read(buffer);
+        if (data == null || data.modelCount == 0)
+            return null;
+        if (data.customPalette)
+            System.arraycopy(data.palette, 1, lastPalette, 1, 255);
+        return data.toArray(data.modelCount - 1);
+    }
+
+    /**
+     * Reads a MagicaVoxel .vox file that has already been loaded or mapped into a ByteBuffer, such as by
+     * {@link #mapFile(String)} or {@code ByteBuffer.wrap(bytes)}, into an AnimatedVoxelSeq with one frame per model
+     * in the file. This produces the same result as {@link #readVoxelSeq(LittleEndianDataInputStream)}, including
+     * writing any RGBA chunk into {@link #lastPalette}, which means it isn't safe to call from multiple threads at
+     * once; use {@link #read(ByteBuffer)} and {@link VoxData#toAnimatedVoxelSeq()} for that. The position, limit, and
+     * byte order of {@code buffer} are not changed.
+     * @param buffer a ByteBuffer holding the full contents of a .vox file, starting at its current position
+     * @return an AnimatedVoxelSeq with the voxels of each model in the file; never null, but may be empty
+     */
+    public static AnimatedVoxelSeq readVoxelSeq(ByteBuffer buffer) {
+        final VoxData data = read(buffer);
+        if (data == null)
+            return new AnimatedVoxelSeq();
+        if (data.customPalette && data.modelCount > 0)
+            System.arraycopy(data.palette, 1, lastPalette, 1, 255);
+        return data.toAnimatedVoxelSeq();
+    }
+
+    /**
+     * Memory-maps and reads the .vox file at the given path; the result's {@link VoxData#name} is set to the file's
+     * name. This is safe to call from multiple threads at once.
+     * @param filename the path to a .vox file
+     * @return a new VoxData, or null if the file couldn't be read or isn't a valid .vox file
+     */
+    @GwtIncompatible
+    public static VoxData read(String filename) {
+        final VoxData data = read(mapFile(filename));
+        if (data != null)
+            data.name = new File(filename).getName();
+        return data;
+    }
+
+    /**
+     * Reads every .vox file directly inside the given directory, in parallel on the common ForkJoinPool. The results
+     * are sorted by file name; any file that couldn't be read has a null entry.
+     * @param directory the path to a directory containing .vox files
+     * @return an array of VoxData, one per .vox file, sorted by file name; empty if the directory has no .vox files
+     */
+    @GwtIncompatible
+    public static VoxData[] readDirectory(String directory) {
+        return readDirectory(directory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads every .vox file directly inside the given directory, in parallel on the given ForkJoinPool. The results
+     * are sorted by file name; any file that couldn't be read has a null entry.
+     * @param directory the path to a directory containing .vox files
+     * @param pool the ForkJoinPool to run on; its parallelism determines how many files are read at once
+     * @return an array of VoxData, one per .vox file, sorted by file name; empty if the directory has no .vox files
+     */
+    @GwtIncompatible
+    public static VoxData[] readDirectory(String directory, ForkJoinPool pool) {
+        final File[] files = new File(directory).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.toLowerCase().endsWith(".vox");
+            }
+        });
+        if (files == null)
+            return new VoxData[0];
+        Arrays.sort(files);
+        final VoxData[] results = new VoxData[files.length];
+        pool.invoke(new ReadTask(files, results, 0, files.length));
+        return results;
+    }
+
+    @GwtIncompatible
+    private static final class ReadTask extends RecursiveAction {
+        private final File[] files;
+        private final VoxData[] results;
+        private final int start, end;
+
+        ReadTask(File[] files, VoxData[] results, int start, int end) {
+            this.files = files;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 2) {
+                for (int i = start; i < end; i++) {
+                    results[i] = read(files[i].getPath());
+                }
+            } else {
+                final int mid = start + end >>> 1;
+                invokeAll(new ReadTask(files, results, start, mid), new ReadTask(files, results, mid, end));
+            }
+        }
+    }
+
+
     public static VoxelSeq readPriorities(LittleEndianDataInputStream stream) {
         // check out https://github.com/ephtracy/voxel-model/blob/master/MagicaVoxel-file-format-vox.txt for the file format used below
         VoxelSeq priorities = null;
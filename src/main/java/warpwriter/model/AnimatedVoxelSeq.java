@@ -125,6 +125,17 @@ public class AnimatedVoxelSeq implements IVoxelSeq, ITemporal, Serializable {
         seqs[frame].hollowRemoving();
     }
 
+    /**
+     * Calls {@link VoxelSeq#hollowIncrementally(boolean)} on every frame, so edits to any frame keep its order of
+     * potentially-visible voxels current.
+     * @param incremental true to update each frame's visible order on each put and remove
+     */
+    public void hollowIncrementally(boolean incremental) {
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i].hollowIncrementally(incremental);
+        }
+    }
+
     @Override
     public void sizeX(int i) {
         seqs[frame].sizeX(i);
@@ -201,6 +212,16 @@ public class AnimatedVoxelSeq implements IVoxelSeq, ITemporal, Serializable {
         return seqs[frame].keyAtRotatedHollow(index, rotation);
     }
 
+    @Override
+    public int facesAtHollow(int index) {
+        return seqs[frame].facesAtHollow(index);
+    }
+
+    @Override
+    public int facesAtHollow(int index, int mask) {
+        return seqs[frame].facesAtHollow(index, mask);
+    }
+
     @Override
     public int keyAtRotatedFull(int index) {
         return seqs[frame].keyAtRotatedFull(index);
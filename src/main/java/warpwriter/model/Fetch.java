@@ -1,5 +1,6 @@
 package warpwriter.model;
 
+import squidpony.annotation.GwtIncompatible;
 import squidpony.squidmath.Noise;
 import warpwriter.model.decide.DecideFetch;
 import warpwriter.model.decide.IDecide;
@@ -34,6 +35,12 @@ public abstract class Fetch implements IFetch, IDecide {
 
     private Fetch nextFetch;
 
+    /**
+     * Scratch space for {@link #deferFill(int, int, int, int, int, int, byte[])}, kept between calls so filling the
+     * same Fetch again doesn't allocate; null while a call is using it.
+     */
+    private transient byte[] deferScratch;
+
     public Fetch getNextFetch() {
         return nextFetch;
     }
@@ -87,6 +94,44 @@ public abstract class Fetch implements IFetch, IDecide {
         return voxel == 0 ? safeNextFetch().at(x, y, z) : voxel;
     }
 
+    /**
+     * The bulk version of {@link #deferByte(byte, int, int, int)}, for use by {@link #fill(int, int, int, int, int, int, byte[])}:
+     * replaces every 0 in out with what the next Fetch in the chain has at that position. If out has both zero and
+     * non-zero items, this asks the next Fetch for the whole box and keeps only what it needs, so it relies on Fetches
+     * not changing anything when they are asked for a color. The box the next Fetch fills is kept and reused by later
+     * calls on this Fetch; if two threads call this at once, the one that finds it in use allocates its own.
+     */
+    public void deferFill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        final Fetch next = getNextFetch();
+        if (next == null)
+            return;
+        final int n = sizeX * sizeY * sizeZ;
+        int zeros = 0;
+        for (int i = 0; i < n; i++) {
+            if (out[i] == 0) zeros++;
+        }
+        if (zeros == 0)
+            return;
+        if (zeros == n) {
+            next.fill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+            return;
+        }
+        byte[] under;
+        synchronized (this) {
+            under = deferScratch;
+            deferScratch = null;
+        }
+        if (under == null || under.length < n)
+            under = new byte[n];
+        next.fill(x0, y0, z0, sizeX, sizeY, sizeZ, under);
+        for (int i = 0; i < n; i++) {
+            if (out[i] == 0) out[i] = under[i];
+        }
+        synchronized (this) {
+            deferScratch = under;
+        }
+    }
+
     /**
      * This method does not chain!
      * It goes on the end, to transform the results of a chain into an IModel
@@ -126,6 +171,37 @@ public abstract class Fetch implements IFetch, IDecide {
         return model(new FetchModel(model));
     }
 
+    /**
+     * This method does not chain!
+     * Evaluates the chain once at every position inside the bounds of model and stores the result, so it can be drawn
+     * as quickly as an ArrayModel; see {@link BakedModel} for how to update it when the chain changes.
+     *
+     * @param model An IModel whose size is used for the bounds; its contents are not touched.
+     * @return A new BakedModel holding what the chain produces inside those bounds.
+     */
+    public BakedModel bake(IModel model) {
+        return new BakedModel(this, model);
+    }
+
+    /**
+     * This method does not chain!
+     * Evaluates the chain once at every position from (0,0,0) inclusive to (sizeX,sizeY,sizeZ) exclusive and stores
+     * the result; see {@link BakedModel}.
+     */
+    public BakedModel bake(int sizeX, int sizeY, int sizeZ) {
+        return new BakedModel(this, sizeX, sizeY, sizeZ);
+    }
+
+    /**
+     * This method does not chain!
+     * Like {@link #bake(IModel)}, but evaluates slabs of the chain on multiple threads. Only use this if every Fetch in
+     * the chain is safe to call from several threads at once; see {@link BakedModel}.
+     */
+    @GwtIncompatible
+    public BakedModel bakeParallel(IModel model) {
+        return BakedModel.bakeParallel(this, model.sizeX(), model.sizeY(), model.sizeZ());
+    }
+
     public Fetch offsetModel(int sizeX, int sizeY, int sizeZ) {
         return add(new OffsetModel(sizeX, sizeY, sizeZ));
     }
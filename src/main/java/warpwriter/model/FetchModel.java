@@ -143,4 +143,9 @@ public class FetchModel extends Fetch implements IModel, IDecideModel {
     public byte at(int x, int y, int z) {
         return getNextFetch().at(x, y, z);
     }
+
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        getNextFetch().fill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+    }
 }
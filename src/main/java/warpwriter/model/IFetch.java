@@ -18,4 +18,30 @@ public interface IFetch {
      * @return a color index as a byte; 0 is empty, and this should usually be masked with {@code & 255} to get an index
      */
     byte at(int x, int y, int z);
+
+    /**
+     * Looks up the color index at every position in an axis-aligned box, writing them into {@code out} with z changing
+     * fastest, then y, then x; the result for (x,y,z) goes in
+     * {@code out[((x - x0) * sizeY + (y - y0)) * sizeZ + (z - z0)]}, which is the same order as the items of a
+     * {@code byte[sizeX][sizeY][sizeZ]} array. This does the same thing as calling {@link #at(int, int, int)} for each
+     * position, but implementations can override it to handle whole rows at a time, which avoids walking a chain of
+     * Fetches once per voxel.
+     *
+     * @param x0 the lowest x position in the box
+     * @param y0 the lowest y position in the box
+     * @param z0 the lowest z position in the box
+     * @param sizeX how many x positions the box covers
+     * @param sizeY how many y positions the box covers
+     * @param sizeZ how many z positions the box covers
+     * @param out a byte array with at least {@code sizeX * sizeY * sizeZ} items; will be modified
+     */
+    default void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        for (int x = 0, i = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    out[i++] = at(x0 + x, y0 + y, z0 + z);
+                }
+            }
+        }
+    }
 }
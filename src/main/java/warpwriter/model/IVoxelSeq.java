@@ -7,6 +7,12 @@ import warpwriter.model.nonvoxel.IntComparator;
  * Created by Tommy Ettinger on 2/24/2019.
  */
 public interface IVoxelSeq extends ITurnable {
+    /**
+     * Bits in the result of {@link #facesAtHollow(int)}; each is set when the neighbor in that direction, after
+     * rotation, is empty. X_POS is the neighbor at x+1, X_NEG is x-1, and so on. FACE_ALL has all 6 bits.
+     */
+    int FACE_X_POS = 1, FACE_X_NEG = 2, FACE_Y_POS = 4, FACE_Y_NEG = 8, FACE_Z_POS = 16, FACE_Z_NEG = 32,
+            FACE_ALL = 63;
     int size();
     int fullSize();
     void clear();
@@ -30,6 +36,22 @@ public interface IVoxelSeq extends ITurnable {
     byte getRotated(int x, int y, int z, int rotation);
     int keyAtRotatedHollow(int index);
     int keyAtRotatedHollow(int index, int rotation);
+    /**
+     * Gets which faces of the potentially-visible voxel at index are exposed at the current rotation, as a mask of
+     * {@link #FACE_X_POS} and the other FACE_ constants; a bit is set when {@link #getRotated(int, int, int)} would
+     * return 0 for the neighbor on that side of the rotated position {@link #keyAtRotatedHollow(int)}.
+     * @param index the index in the potentially-visible-voxel order
+     * @return a 6-bit mask of exposed faces
+     */
+    int facesAtHollow(int index);
+    /**
+     * Like {@link #facesAtHollow(int)}, but only needs to find out about the faces in mask, which can save neighbor
+     * lookups when the result isn't cached yet.
+     * @param index the index in the potentially-visible-voxel order
+     * @param mask the FACE_ constants to check, combined with bitwise OR
+     * @return the exposed faces among those in mask
+     */
+    int facesAtHollow(int index, int mask);
     int keyAtRotatedFull(int index);
     int keyAtRotatedFull(int index, int rotation);
     byte getRotated(int index);
@@ -1,10 +1,15 @@
 package warpwriter.model;
 
 import com.badlogic.gdx.graphics.Pixmap;
+import squidpony.annotation.GwtIncompatible;
 import warpwriter.Tools3D;
 import warpwriter.view.render.VoxelPixmapRenderer;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static warpwriter.model.nonvoxel.HashMap3D.fuse;
 
 public class SlopeBox {
     public byte[][][][] data;
@@ -197,6 +202,281 @@ public class SlopeBox {
         return this;
     }
     
+    /**
+     * Calculates the same colors and slopes that {@link #putSlopes()} would, but leaves this SlopeBox unchanged and
+     * returns every cell that ends up with a color in a new SlopeSeq. This runs on the common ForkJoinPool; see
+     * {@link #toSlopeSeq(ForkJoinPool)}.
+     * @return a new SlopeSeq holding the solid voxels of this SlopeBox plus the sloped cells putSlopes() would add
+     */
+    @GwtIncompatible
+    public SlopeSeq toSlopeSeq() {
+        return toSlopeSeq(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculates the same colors and slopes that {@link #putSlopes()} would, but leaves this SlopeBox unchanged and
+     * returns every cell that ends up with a color in a new SlopeSeq. Instead of visiting every cell, this marks the
+     * solid cells in a bit set with one bit per z, finds the empty cells that touch them with a few bitwise ops per 64
+     * cells, and only does the neighbor reads and color vote for those. The work is split into slabs along x, which
+     * run in parallel on pool; the slabs only write their own cells, and each of the two smoothing passes finishes on
+     * every slab before the next starts, so the result is the same for any number of threads. No byte[x][y][z] arrays
+     * are allocated.
+     * @param pool the ForkJoinPool to run on
+     * @return a new SlopeSeq holding the solid voxels of this SlopeBox plus the sloped cells putSlopes() would add
+     */
+    @GwtIncompatible
+    public SlopeSeq toSlopeSeq(ForkJoinPool pool) {
+        final int sizeX = sizeX();
+        final SlopeJob job = new SlopeJob(data[0], data[1],
+                (sizeX + (pool.getParallelism() << 2) - 1) / (pool.getParallelism() << 2));
+        final int slabs = job.firsts.length;
+        pool.invoke(new SlopeTask(job, 0, 0, slabs));
+        pool.invoke(new SlopeTask(job, 1, 0, slabs));
+        pool.invoke(new SlopeTask(job, 2, 0, slabs));
+        return job.collect();
+    }
+
+    /**
+     * Picks the color for an empty cell from the colors of its 6 neighbors, the same way putSlopes() does: the first
+     * color that two neighbors share, preferring a pair with the first nonzero neighbor, or the first nonzero neighbor
+     * if no two match. At least one neighbor must be nonzero.
+     */
+    private static int vote(final int[] neighbors) {
+        int bestIndex = -1;
+        for (int i = 0; i < 6; i++) {
+            if(neighbors[i] == 0) continue;
+            if(bestIndex == -1) bestIndex = i;
+            for (int j = i + 1; j < 6; j++) {
+                if(neighbors[i] == neighbors[j]){
+                    if(i == bestIndex || j == bestIndex)
+                        return neighbors[bestIndex];
+                    bestIndex = i;
+                }
+            }
+        }
+        return neighbors[bestIndex];
+    }
+
+    /**
+     * The shared state for {@link #toSlopeSeq(ForkJoinPool)}. Cells are tracked in bit sets where the column at (x,y)
+     * is {@code words} longs starting at {@code (x * sizeY + y) * words}, with bit z in long {@code z >>> 6}; z runs
+     * along the bits so each x-slab writes only its own longs. The colors and slopes of the cells added by each pass go
+     * in one small SlopeSeq per slab, keyed by {@link warpwriter.model.nonvoxel.HashMap3D#fuse(int, int, int)}.
+     */
+    @GwtIncompatible
+    private static final class SlopeJob {
+        final byte[][][] colors, slopes;
+        final int sizeX, sizeY, sizeZ, words, slab;
+        /**
+         * solid has the cells with a color in the SlopeBox, first has the empty cells filled by the first pass, and
+         * second has the empty cells filled by the second pass.
+         */
+        final long[] solid, first, second;
+        final SlopeSeq[] firsts, seconds;
+
+        SlopeJob(byte[][][] colors, byte[][][] slopes, int slab) {
+            this.colors = colors;
+            this.slopes = slopes;
+            sizeX = colors.length;
+            sizeY = colors[0].length;
+            sizeZ = colors[0][0].length;
+            words = sizeZ + 63 >>> 6;
+            this.slab = slab;
+            solid = new long[sizeX * sizeY * words];
+            first = new long[solid.length];
+            second = new long[solid.length];
+            final int slabs = (sizeX + slab - 1) / slab;
+            firsts = new SlopeSeq[slabs];
+            seconds = new SlopeSeq[slabs];
+        }
+
+        /**
+         * Marks the solid cells in x-slab s.
+         */
+        void occupy(final int s) {
+            for (int x = s * slab, xEnd = Math.min(sizeX, x + slab); x < xEnd; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    final byte[] column = colors[x][y];
+                    final int base = (x * sizeY + y) * words;
+                    for (int z = 0; z < sizeZ; z++) {
+                        if(column[z] != 0)
+                            solid[base + (z >>> 6)] |= 1L << z;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets the bits of long w in column (x,y) of set that are next to a set bit in the same column or one of the
+         * four columns beside it, and aren't set themselves, or in also.
+         */
+        long touching(final long[] set, final long[] also, final int x, final int y, final int w) {
+            final int base = (x * sizeY + y) * words + w;
+            final long here = set[base];
+            long near = here << 1 | here >>> 1;
+            if(w > 0) near |= set[base - 1] >>> 63;
+            if(w + 1 < words) near |= set[base + 1] << 63;
+            if(x > 0) near |= set[base - sizeY * words];
+            if(x + 1 < sizeX) near |= set[base + sizeY * words];
+            if(y > 0) near |= set[base - words];
+            if(y + 1 < sizeY) near |= set[base + words];
+            near &= ~(here | also[base]);
+            if(w + 1 == words && (sizeZ & 63) != 0)
+                near &= (1L << sizeZ) - 1L;
+            return near;
+        }
+
+        boolean has(final long[] set, final int x, final int y, final int z) {
+            return (set[(x * sizeY + y) * words + (z >>> 6)] & 1L << z) != 0;
+        }
+
+        /**
+         * The first pass of putSlopes(), for the empty cells in x-slab s that touch a solid cell.
+         */
+        void firstPass(final int s) {
+            final SlopeSeq seq = firsts[s] = new SlopeSeq(64);
+            final int[] neighbors = new int[6];
+            final int limitX = sizeX - 1, limitY = sizeY - 1, limitZ = sizeZ - 1;
+            for (int x = s * slab, xEnd = Math.min(sizeX, x + slab); x < xEnd; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    for (int w = 0; w < words; w++) {
+                        for (long bits = touching(solid, solid, x, y, w); bits != 0; bits &= bits - 1) {
+                            final int z = w << 6 | Long.numberOfTrailingZeros(bits);
+                            int slope = 0;
+                            if((neighbors[0] = x == 0 ? 0 : (colors[x-1][y][z] & 255)) != 0) slope      |= 0x55;
+                            if((neighbors[1] = y == 0 ? 0 : (colors[x][y-1][z] & 255)) != 0) slope      |= 0x33;
+                            if((neighbors[2] = z == 0 ? 0 : (colors[x][y][z-1] & 255)) != 0) slope      |= 0x0F;
+                            if((neighbors[3] = x == limitX ? 0 : (colors[x+1][y][z] & 255)) != 0) slope |= 0xAA;
+                            if((neighbors[4] = y == limitY ? 0 : (colors[x][y+1][z] & 255)) != 0) slope |= 0xCC;
+                            if((neighbors[5] = z == limitZ ? 0 : (colors[x][y][z+1] & 255)) != 0) slope |= 0xF0;
+                            if(Integer.bitCount(slope) < 5) // next to only one voxel
+                                continue;
+                            first[(x * sizeY + y) * words + w] |= 1L << z;
+                            seq.put(fuse(x, y, z), vote(neighbors), slope);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Gets the color a cell has after the first pass, or 0 if it is still empty.
+         */
+        int firstColor(final int x, final int y, final int z) {
+            if(has(solid, x, y, z))
+                return colors[x][y][z] & 255;
+            if(has(first, x, y, z))
+                return firsts[x / slab].get(fuse(x, y, z)) & 255;
+            return 0;
+        }
+
+        /**
+         * Gets the slope a cell has after the first pass; only meaningful if {@link #firstColor(int, int, int)} is not 0.
+         */
+        int firstSlope(final int x, final int y, final int z) {
+            if(has(solid, x, y, z))
+                return -1;
+            return firsts[x / slab].getSlope(fuse(x, y, z));
+        }
+
+        /**
+         * The second pass of putSlopes(), for the empty cells in x-slab s that touch a cell filled by the first pass.
+         * putSlopes() does this pass in place, so a neighbor it has already visited (at x-1, y-1 or z-1) has its new
+         * slope, while one it hasn't (at x+1, y+1 or z+1) still has the slope it had in the SlopeBox; this reads the
+         * same values.
+         */
+        void secondPass(final int s) {
+            final SlopeSeq seq = seconds[s] = new SlopeSeq(64);
+            final int[] neighbors = new int[6];
+            final int limitX = sizeX - 1, limitY = sizeY - 1, limitZ = sizeZ - 1;
+            int next;
+            for (int x = s * slab, xEnd = Math.min(sizeX, x + slab); x < xEnd; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    final int base = (x * sizeY + y) * words;
+                    for (int w = 0; w < words; w++) {
+                        for (long bits = touching(solid, first, x, y, w) | touching(first, solid, x, y, w);
+                             bits != 0; bits &= bits - 1) {
+                            final int z = w << 6 | Long.numberOfTrailingZeros(bits);
+                            int slope = 0;
+                            if((neighbors[0] = x == 0 ? 0 : firstColor(x-1, y, z)) != 0 && ((next = firstSlope(x-1, y, z)) & 0xAA) != 0xAA) slope      |= (next & 0xAA) >>> 1;
+                            if((neighbors[1] = y == 0 ? 0 : firstColor(x, y-1, z)) != 0 && ((next = firstSlope(x, y-1, z)) & 0xCC) != 0xCC) slope      |= (next & 0xCC) >>> 2;
+                            if((neighbors[2] = z == 0 ? 0 : firstColor(x, y, z-1)) != 0 && ((next = firstSlope(x, y, z-1)) & 0xF0) != 0xF0) slope      |= (next & 0xF0) >>> 4;
+                            if((neighbors[3] = x == limitX ? 0 : firstColor(x+1, y, z)) != 0 && (firstSlope(x+1, y, z) & 0x55) != 0x55) slope |= (slopes[x+1][y][z] & 0x55) >>> 1;
+                            if((neighbors[4] = y == limitY ? 0 : firstColor(x, y+1, z)) != 0 && (firstSlope(x, y+1, z) & 0x33) != 0x33) slope |= (slopes[x][y+1][z] & 0x33) >>> 2;
+                            if((neighbors[5] = z == limitZ ? 0 : firstColor(x, y, z+1)) != 0 && (firstSlope(x, y, z+1) & 0x0F) != 0x0F) slope |= (slopes[x][y][z+1] & 0x0F) >>> 4;
+                            if(Integer.bitCount(slope) < 4) // only one partial face
+                                continue;
+                            second[base + w] |= 1L << z;
+                            seq.put(fuse(x, y, z), vote(neighbors), slope);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Puts every colored cell into a new SlopeSeq, in x, then y, then z order, as {@link SlopeSeq#putArray(byte[][][])}
+         * would for the array putSlopes() makes.
+         */
+        SlopeSeq collect() {
+            int count = 0;
+            for (int i = 0; i < solid.length; i++) {
+                count += Long.bitCount(solid[i] | first[i] | second[i]);
+            }
+            final SlopeSeq seq = new SlopeSeq(count);
+            seq.sizeX = seq.sizeY = seq.sizeZ = Math.max(sizeX, Math.max(sizeY, sizeZ));
+            for (int x = 0; x < sizeX; x++) {
+                final SlopeSeq f = firsts[x / slab], s = seconds[x / slab];
+                for (int y = 0; y < sizeY; y++) {
+                    final int base = (x * sizeY + y) * words;
+                    for (int w = 0; w < words; w++) {
+                        final long solids = solid[base + w], firstBits = first[base + w];
+                        for (long bits = solids | firstBits | second[base + w]; bits != 0; bits &= bits - 1) {
+                            final long bit = bits & -bits;
+                            final int z = w << 6 | Long.numberOfTrailingZeros(bits), key = fuse(x, y, z);
+                            if((solids & bit) != 0)
+                                seq.put(key, colors[x][y][z], -1);
+                            else if((firstBits & bit) != 0)
+                                seq.put(key, f.get(key), f.getSlope(key));
+                            else
+                                seq.put(key, s.get(key), s.getSlope(key));
+                        }
+                    }
+                }
+            }
+            return seq;
+        }
+    }
+
+    /**
+     * Runs one step of {@link #toSlopeSeq(ForkJoinPool)} on a range of x-slabs, splitting it in half until only one
+     * slab is left: step 0 marks solid cells, step 1 is the first smoothing pass, and step 2 is the second.
+     */
+    @GwtIncompatible
+    private static final class SlopeTask extends RecursiveAction {
+        private final SlopeJob job;
+        private final int step, start, end;
+
+        SlopeTask(SlopeJob job, int step, int start, int end) {
+            this.job = job;
+            this.step = step;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                if (step == 0) job.occupy(start);
+                else if (step == 1) job.firstPass(start);
+                else job.secondPass(start);
+                return;
+            }
+            final int mid = start + end >>> 1;
+            invokeAll(new SlopeTask(job, step, start, mid), new SlopeTask(job, step, mid, end));
+        }
+    }
+
     public static final double[][] SHAPES = new double[256][16];
     static {
 //                5,5,5,5,5,5,5,5,5,5,5,5,5,5,5,5,
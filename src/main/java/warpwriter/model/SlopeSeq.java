@@ -19,7 +19,7 @@ package warpwriter.model;
 import com.badlogic.gdx.math.MathUtils;
 import squidpony.squidmath.IntVLA;
 import warpwriter.model.nonvoxel.IntComparator;
-import warpwriter.model.nonvoxel.IntSort;
+import warpwriter.model.nonvoxel.IntRadixSort;
 
 import java.util.Arrays;
 import java.util.Iterator;
@@ -45,6 +45,7 @@ import static warpwriter.model.nonvoxel.HashMap3D.fuse;
  * @author Tommy Ettinger */
 public class SlopeSeq implements Iterable<SlopeSeq.Entry> {
 	public final IntVLA order;
+	private IntRadixSort radix;
 	
 	public int size;
 
@@ -451,14 +452,18 @@ public class SlopeSeq implements Iterable<SlopeSeq.Entry> {
 
 	/**
 	 * Sorts a sub-range of this SlopeSeq on its keys from what is currently the index {@code start} up to (but not
-	 * including) the index {@code end}, using the supplied IntComparator. Only sorts potentially-visible voxels.
+	 * including) the index {@code end}, using the supplied IntComparator. Only sorts potentially-visible voxels. The
+	 * comparators in {@link IntComparator#side} and {@link IntComparator#side45} are sorted in linear time by an
+	 * {@link IntRadixSort}; other comparators use a merge sort. Both are stable and give the same order.
 	 * @param comparator an {@link IntComparator} that can handle the x,y,z packed keys this uses
 	 * @param start the first index of a key to sort (the index can change after this)
 	 * @param end the exclusive bound on the indices to sort; often this is just {@link #size()}
 	 */
 	public void sort(IntComparator comparator, int start, int end)
 	{
-		IntSort.sort(order.items, start, end, comparator);
+		if(radix == null)
+			radix = new IntRadixSort();
+		radix.sort(order.items, start, end, comparator);
 	}
 
 
@@ -18,7 +18,8 @@ package warpwriter.model;
 import squidpony.annotation.GwtIncompatible;
 import squidpony.squidmath.*;
 import warpwriter.model.nonvoxel.IntComparator;
-import warpwriter.model.nonvoxel.IntSortIndirect;
+import warpwriter.model.nonvoxel.IntRadixSort;
+import warpwriter.model.nonvoxel.OccupancyGrid;
 
 import java.io.Serializable;
 import java.util.*;
@@ -107,6 +108,66 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
      * in the IntVLA {@link #order}.
      */
     public IntVLA full;
+    /**
+     * If non-null, a bit set with a bit for every key in this VoxelSeq, kept up to date by put and remove; this makes
+     * neighbor checks in {@link #hollow()} and lookups of empty space in {@link #get(int)} much cheaper. It is null by
+     * default; use {@link #trackOccupancy(boolean)} to turn it on.
+     */
+    protected OccupancyGrid occupancy;
+    /**
+     * True when {@link #order} may not hold exactly the voxels that touch a boundary or empty space, because voxels were
+     * added or removed (or a size changed) since the last {@link #hollow()}. While this is false, hollow() does nothing.
+     */
+    protected boolean stale;
+    /**
+     * If true, put and remove keep {@link #order} up to date by checking only the changed voxel and its 6 neighbors,
+     * so {@link #hollow()} has nothing to do afterwards. False by default; use {@link #hollowIncrementally(boolean)}.
+     */
+    protected boolean incremental;
+    /**
+     * While {@link #incremental} is on, holds for each position in {@link #key} one more than where that position is
+     * in {@link #order}, or 0 if it isn't in order, so voxels can be swapped out of order without searching for them.
+     * Sorting or shuffling order moves the positions around, so each entry is checked before use, and all of them are
+     * refreshed if one is out of date; only adding to or removing from order needs to keep this current.
+     */
+    protected transient int[] orderIndex;
+    /**
+     * False when {@link #orderIndex} doesn't know which positions are in {@link #order}, so it must be rebuilt.
+     */
+    protected transient boolean orderIndexed;
+    /**
+     * Holds the scratch space for sorting {@link #order} by rotated position; created on the first sort.
+     */
+    protected transient IntRadixSort radix;
+    /**
+     * Counts changes to the keys or to the positions in {@link #order}; a sorted order cached by
+     * {@link #sort(IntComparator)} is only reused if this hasn't changed since it was cached.
+     */
+    protected transient int modCount;
+    /**
+     * Sorted copies of {@link #order}, one per comparator that {@link #sort(IntComparator)} has been called with.
+     */
+    protected transient IdentityHashMap<IntComparator, SortedOrder> sortCache;
+    /**
+     * The exposed faces of voxels, indexed by position in {@link #key} so sorting or editing {@link #order} doesn't
+     * disturb it. The low 6 bits are FACE_ bits from {@link IVoxelSeq}; the same bits shifted left by 8 mark which of
+     * those faces have been checked. Filled in one face at a time by {@link #facesAtHollow(int, int)}, and cleared when
+     * {@link #modCount}, the rotation, or a size differs from what it was filled with.
+     */
+    protected transient short[] faces;
+    /**
+     * The modCount, rotation, and sizes that {@link #faces} was filled with.
+     */
+    protected transient int facesModCount, facesRotation, facesSizeX, facesSizeY, facesSizeZ;
+
+    /**
+     * A copy of {@link #order} after sorting it with one comparator, plus what is needed to tell if it is still valid.
+     */
+    protected static class SortedOrder {
+        public int modCount;
+        public long checksum;
+        public int[] items;
+    }
     /**
      * The current table size.
      */
@@ -145,6 +206,8 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     }
 
     public void sizeX(int sizeX) {
+        if(this.sizeX != sizeX)
+            stale = true;
         this.sizeX = sizeX;
     }
 
@@ -153,6 +216,8 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     }
 
     public void sizeY(int sizeY) {
+        if(this.sizeY != sizeY)
+            stale = true;
         this.sizeY = sizeY;
     }
 
@@ -161,6 +226,8 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     }
 
     public void sizeZ(int sizeZ) {
+        if(this.sizeZ != sizeZ)
+            stale = true;
         this.sizeZ = sizeZ;
     }
 
@@ -321,6 +388,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         final int sizeY = (voxels[0].length);
         final int sizeZ = (voxels[0][0].length);
         this.sizeX = this.sizeY = this.sizeZ = Math.max(sizeX, Math.max(sizeY, sizeZ));
+        stale = true;
         for (int x = 0; x < sizeX; x++) {
             for (int y = 0; y < sizeY; y++) {
                 for (int z = 0; z < sizeZ; z++) {
@@ -331,6 +399,24 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         }
     }
 
+    /**
+     * Puts {@code count} voxels stored as consecutive x, y, z, and color index bytes in {@code packed}, starting at
+     * {@code offset}; this is the layout MagicaVoxel uses in its XYZI chunk. Grows the table once up-front instead of
+     * rehashing as it goes. Like {@link #put(int, byte)}, this does not change the order of potentially-visible voxels,
+     * so you should call {@link #hollow()} when you're done.
+     * @param packed a byte array with 4 bytes per voxel, x first; coordinates are treated as unsigned
+     * @param offset the index in packed of the first voxel's x byte
+     * @param count how many voxels to read from packed
+     */
+    public void putPacked(final byte[] packed, int offset, final int count)
+    {
+        tryCapacity(size + count);
+        stale = true;
+        for (final int end = offset + (count << 2); offset < end; offset += 4) {
+            put(fuse(packed[offset] & 255, packed[offset + 1] & 255, packed[offset + 2] & 255), packed[offset + 3]);
+        }
+    }
+
     public void putSurface(byte[][][] voxels)
     {
         final int sizeX = (voxels.length);
@@ -367,6 +453,9 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         }
         order.clear();
         order.addAll(full);
+        stale = false;
+        orderIndexed = false;
+        modCount++;
     }
 
     /**
@@ -378,6 +467,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     public void putModel(IModel model)
     {
         this.sizeX = this.sizeY = this.sizeZ = Math.max(model.sizeX(), Math.max(model.sizeY(), model.sizeZ()));
+        stale = true;
         byte v;
         for (int x = 0; x < sizeX; x++) {
             for (int y = 0; y < sizeY; y++) {
@@ -393,53 +483,261 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     /**
      * Resets the order of potentially-visible voxels as used by the rotation-related methods; since this order is not
      * changed by normal {@link #put(int, byte)} and {@link #remove(int)}, this method must be used to complete any
-     * changes to the structure of the VoxelSeq.
+     * changes to the structure of the VoxelSeq. If nothing was added or removed since the last call (or if
+     * {@link #hollowIncrementally(boolean)} has kept the order current), this returns immediately, so it is cheap to
+     * call once per frame on a model that doesn't change.
      */
     public void hollow()
     {
+        if(!stale)
+            return;
+        modCount++;
         order.clear();
         final int sz = full.size;
-        int k, x, y, z, item;
+        int item;
         for (int i = 0; i < sz; i++) {
-            k = key[item = full.items[i]];
-            x = extractX(k);
-            y = extractY(k);
-            z = extractZ(k);
-            if(x <= 0 || x >= sizeX - 1 || y <= 0 || y >= sizeY -1 || z <= 0 || z >= sizeZ - 1 ||
-                    !containsKey(k - 0x00000001) || !containsKey(k + 0x00000001) ||
-                    !containsKey(k - 0x00000400) || !containsKey(k + 0x00000400) ||
-                    !containsKey(k - 0x00100000) || !containsKey(k + 0x00100000)
-//                    !containsKey(x - 1, y, z) || !containsKey(x + 1, y, z) ||
-//                    !containsKey(x, y - 1, z) || !containsKey(x, y + 1, z) ||
-//                    !containsKey(x, y, z - 1) || !containsKey(x, y, z + 1)
-            )
+            if(exposed(key[item = full.items[i]]))
                 order.add(item);
         }
+        stale = false;
+        orderIndexed = false;
     }
     public void hollowRemoving()
     {
+        modCount++;
         order.clear();
         final int sz = full.size;
-        int k, x, y, z, item;
+        int k, item;
         for (int i = sz - 1; i >= 0; i--) {
             k = key[item = full.items[i]];
-            x = extractX(k);
-            y = extractY(k);
-            z = extractZ(k);
-            if(x <= 0 || x >= sizeX - 1 || y <= 0 || y >= sizeY -1 || z <= 0 || z >= sizeZ - 1 ||
-                    !containsKey(k - 0x00000001) || !containsKey(k + 0x00000001) ||
-                    !containsKey(k - 0x00000400) || !containsKey(k + 0x00000400) ||
-                    !containsKey(k - 0x00100000) || !containsKey(k + 0x00100000)
-            )
+            if(exposed(k))
                 order.add(item);
             else 
             {
+                if(occupancy != null)
+                    occupancy.remove(k);
                 key[item] = 0;
                 value[item] = 0;
                 full.removeIndex(i);
             }
         }
         size = full.size;
+        stale = false;
+        orderIndexed = false;
+    }
+
+    /**
+     * Checks whether the voxel with key k touches the boundary of this VoxelSeq's size, or touches empty space on any
+     * of its 6 faces; these are the voxels {@link #hollow()} puts in {@link #order}.
+     * @param k a key as produced by {@link #fuse(int, int, int)}
+     * @return true if the voxel at k could be visible
+     */
+    protected boolean exposed(final int k)
+    {
+        final int x = extractX(k), y = extractY(k), z = extractZ(k);
+        return x <= 0 || x >= sizeX - 1 || y <= 0 || y >= sizeY -1 || z <= 0 || z >= sizeZ - 1 ||
+                (occupancy != null ? !occupancy.interior(x, y, z) :
+                        !containsKey(k - 0x00000001) || !containsKey(k + 0x00000001) ||
+                        !containsKey(k - 0x00000400) || !containsKey(k + 0x00000400) ||
+                        !containsKey(k - 0x00100000) || !containsKey(k + 0x00100000));
+    }
+
+    /**
+     * Turns incremental hollowing on or off. While it is on, each {@link #put(int, byte)} or {@link #remove(int)} of a
+     * single voxel also updates {@link #order} by checking that voxel and its 6 neighbors, so the order of
+     * potentially-visible voxels is always current and {@link #hollow()} returns immediately. This makes small edits to
+     * big models cheap, but adds a little work to every put and remove; methods that put many voxels at once, like
+     * {@link #putArray(byte[][][])} and {@link #putAll(VoxelSeq)}, skip the per-voxel checks and leave a full
+     * {@link #hollow()} for later. Voxels that become visible are appended to the end of the order, and voxels that
+     * become hidden or are removed have the last voxel in the order moved into their place, so the order can differ
+     * from what a fresh hollow() would produce, though it holds the same voxels.
+     * <br>
+     * Turning this on calls {@link #hollow()}, so the order is current from then on.
+     * @param incremental true to update the visible order on each put and remove, false to wait for {@link #hollow()}
+     */
+    public void hollowIncrementally(boolean incremental)
+    {
+        this.incremental = incremental;
+        if(incremental)
+            hollow();
+    }
+
+    /**
+     * Marks the order of potentially-visible voxels as out of date, so the next {@link #hollow()} will rebuild it,
+     * and the next {@link #sort(IntComparator)} won't reuse a cached order. You only need this if you edit
+     * {@link #order}, {@link #full}, or the size fields directly.
+     */
+    public void markStale()
+    {
+        stale = true;
+        modCount++;
+    }
+
+    /**
+     * Called after k is added at pos while incremental hollowing is on; adds k to the order if it is exposed, and
+     * removes any neighbors that k has just enclosed.
+     */
+    private void revealAdded(final int k, final int pos)
+    {
+        if(exposed(k))
+            addToOrder(pos);
+        final int x = extractX(k), y = extractY(k), z = extractZ(k);
+        if(x > 0) coverNeighbor(k - 0x00000001);
+        if(x < 1023) coverNeighbor(k + 0x00000001);
+        if(y > 0) coverNeighbor(k - 0x00000400);
+        if(y < 1023) coverNeighbor(k + 0x00000400);
+        if(z > 0) coverNeighbor(k - 0x00100000);
+        if(z < 1023) coverNeighbor(k + 0x00100000);
+    }
+    private void coverNeighbor(final int nk)
+    {
+        final int p = positionOf(nk);
+        if(p >= 0 && !exposed(nk))
+            removeFromOrder(p);
+    }
+
+    /**
+     * Called after k was removed while incremental hollowing is on; adds any neighbors of k to the order if they were
+     * enclosed before k was removed, since they now touch empty space.
+     */
+    private void revealRemoved(final int k)
+    {
+        final int x = extractX(k), y = extractY(k), z = extractZ(k);
+        if(x > 0) uncoverNeighbor(k - 0x00000001, k);
+        if(x < 1023) uncoverNeighbor(k + 0x00000001, k);
+        if(y > 0) uncoverNeighbor(k - 0x00000400, k);
+        if(y < 1023) uncoverNeighbor(k + 0x00000400, k);
+        if(z > 0) uncoverNeighbor(k - 0x00100000, k);
+        if(z < 1023) uncoverNeighbor(k + 0x00100000, k);
+    }
+    private void uncoverNeighbor(final int nk, final int removed)
+    {
+        final int p = positionOf(nk);
+        if(p < 0)
+            return;
+        final int x = extractX(nk), y = extractY(nk), z = extractZ(nk);
+        if(x <= 0 || x >= sizeX - 1 || y <= 0 || y >= sizeY -1 || z <= 0 || z >= sizeZ - 1)
+            return; // on the boundary, so it was already exposed
+        int m;
+        if((m = nk - 0x00000001) != removed && !containsKey(m)) return;
+        if((m = nk + 0x00000001) != removed && !containsKey(m)) return;
+        if((m = nk - 0x00000400) != removed && !containsKey(m)) return;
+        if((m = nk + 0x00000400) != removed && !containsKey(m)) return;
+        if((m = nk - 0x00100000) != removed && !containsKey(m)) return;
+        if((m = nk + 0x00100000) != removed && !containsKey(m)) return;
+        addToOrder(p);
+    }
+
+    /**
+     * Gets {@link #orderIndex}, rebuilding it first if it is missing, the wrong size after a rehash, or was invalidated
+     * by rebuilding {@link #order}. Only used while incremental hollowing keeps order current.
+     */
+    private int[] orderIndex()
+    {
+        if(!orderIndexed || orderIndex == null || orderIndex.length != key.length)
+        {
+            if(orderIndex == null || orderIndex.length != key.length)
+                orderIndex = new int[key.length];
+            else
+                Arrays.fill(orderIndex, 0);
+            refreshOrderIndex();
+            orderIndexed = true;
+        }
+        return orderIndex;
+    }
+    private void refreshOrderIndex()
+    {
+        final int[] oi = orderIndex, items = order.items;
+        for (int i = 0, sz = order.size; i < sz; i++) {
+            oi[items[i]] = i + 1;
+        }
+    }
+
+    /**
+     * Finds where pos is in {@link #order} using {@link #orderIndex}, refreshing the index if order was sorted or
+     * shuffled since it was last checked.
+     * @return the index of pos in order, or -1 if it isn't there
+     */
+    private int orderIndexOf(final int pos)
+    {
+        final int[] oi = orderIndex();
+        int i = oi[pos] - 1;
+        if(i < 0)
+            return -1;
+        if(i >= order.size || order.items[i] != pos)
+        {
+            refreshOrderIndex();
+            if((i = oi[pos] - 1) >= order.size || i >= 0 && order.items[i] != pos)
+            {
+                oi[pos] = 0;
+                return -1;
+            }
+        }
+        return i;
+    }
+    private void addToOrder(final int pos)
+    {
+        final int[] oi = orderIndex();
+        order.add(pos);
+        oi[pos] = order.size;
+    }
+
+    /**
+     * Removes pos from {@link #order} by moving the last position in order into its place, so nothing is searched
+     * or shifted.
+     */
+    private void removeFromOrder(final int pos)
+    {
+        final int i = orderIndexOf(pos);
+        if(i < 0)
+            return;
+        final int[] oi = orderIndex, items = order.items;
+        final int last = items[--order.size];
+        if(i < order.size)
+        {
+            items[i] = last;
+            oi[last] = i + 1;
+        }
+        oi[pos] = 0;
+    }
+
+    /**
+     * Turns the {@link #occupancy} bit set on or off. While it is on, every put and remove also updates a dense bit per
+     * voxel, which costs a little time per change and some memory (32KB for models up to 64x64x64, 2MB for models up
+     * to 256x256x256), but makes {@link #hollow()} and checks for empty space, like {@code getRotated(x, y, z) == 0},
+     * much faster, since they don't need to probe the hash table. This is a good trade for large models that are
+     * hollowed or drawn often.
+     * @param track true to build and maintain the occupancy bit set, false to discard it
+     */
+    public void trackOccupancy(boolean track)
+    {
+        if(!track)
+            occupancy = null;
+        else if(occupancy == null)
+        {
+            occupancy = new OccupancyGrid(sizeX, sizeY, sizeZ);
+            rebuildOccupancy();
+        }
+    }
+
+    /**
+     * Gets the {@link #occupancy} bit set, if {@link #trackOccupancy(boolean)} has turned it on, or null otherwise.
+     * This should be treated as read-only; the VoxelSeq keeps it in sync with its keys.
+     * @return the OccupancyGrid this uses, or null if this isn't tracking occupancy
+     */
+    public OccupancyGrid occupancy()
+    {
+        return occupancy;
+    }
+
+    private void rebuildOccupancy()
+    {
+        occupancy.clear();
+        final int sz = full.size;
+        final int[] items = full.items;
+        for (int i = 0; i < sz; i++) {
+            occupancy.add(key[items[i]]);
+        }
     }
     private int realSize() {
         return containsNullKey ? size - 1 : size;
@@ -459,20 +757,33 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     }
     private byte removeEntry(final int pos) {
         final byte oldValue = value[pos];
+        final int k = key[pos];
+        if (occupancy != null)
+            occupancy.remove(k);
         size--;
         fixOrder(pos);
         shiftKeys(pos);
         if (size < (maxFill >> 2) && n > DEFAULT_INITIAL_SIZE)
             rehash(n >> 1);
+        if (incremental && !stale)
+            revealRemoved(k);
+        else
+            stale = true;
         return oldValue;
     }
     private byte removeNullEntry() {
         containsNullKey = false;
+        if (occupancy != null)
+            occupancy.remove(0);
         final byte oldValue = value[n];
         size--;
         fixOrder(n);
         if (size < (maxFill >> 2) && n > DEFAULT_INITIAL_SIZE)
             rehash(n >> 1);
+        if (incremental && !stale)
+            revealRemoved(0);
+        else
+            stale = true;
         return oldValue;
     }
 
@@ -489,6 +800,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     {
         if(keyArray == null || valueArray == null)
             return;
+        stale = true;
         for (int i = 0; i < keyArray.length && i < valueArray.length; i++)
             put(keyArray[i], valueArray[i]);
 
@@ -507,6 +819,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
             ensureCapacity(m.size); // The resulting map will be sized for m.size() elements
         else
             tryCapacity(size + m.size); // The resulting map will be size() +  m.size() elements
+        stale = true;
         int n = m.size;
         for (int i = 0; i < n; i++) {             
             put(m.keyAt(i), m.getAt(i));
@@ -534,6 +847,13 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         key[pos] = k;
         value[pos] = v;
         full.add(pos);
+        if (occupancy != null)
+            occupancy.add(k);
+        modCount++;
+        if (incremental && !stale)
+            revealAdded(k, pos);
+        else
+            stale = true;
         if (size++ >= maxFill)
             rehash(arraySize(size + 1, f));
         return -1;
@@ -545,6 +865,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
             {
                 fixOrder(n);
                 full.insert(idx, n);
+                stale = true;
                 return n;
             }
             containsNullKey = true;
@@ -558,6 +879,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
                 {
                     fixOrder(pos);
                     full.insert(idx, pos);
+                    stale = true;
                     return pos;
                 }
                 while ((curr = key[pos = (pos + 1) & mask]) != 0)
@@ -565,6 +887,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
                     {
                         fixOrder(pos);
                         full.insert(idx, pos);
+                        stale = true;
                         return pos;
                     }
             }
@@ -572,6 +895,13 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         key[pos] = k;
         value[pos] = v;
         full.insert(idx, pos);
+        if (occupancy != null)
+            occupancy.add(k);
+        modCount++;
+        if (incremental && !stale)
+            revealAdded(k, pos);
+        else
+            stale = true;
         if (size++ >= maxFill)
             rehash(arraySize(size + 1, f));
         return -1;
@@ -653,6 +983,8 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     public byte get(final int k) {
         if (k == 0)
             return containsNullKey ? value[n] : defRetValue;
+        if (occupancy != null && (k & 0xC0000000) == 0 && !occupancy.contains(k))
+            return defRetValue;
         int curr;
         final int[] key = this.key;
         int pos;
@@ -745,6 +1077,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         int r = indexOf(right);
         if(r < 0) return false;
         full.swap(l, r);
+        stale = true;
         return true;
     }
     /**
@@ -759,6 +1092,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     {
         if(left < 0 || right < 0 || left >= full.size || right >= full.size || left == right) return false;
         full.swap(left, right);
+        stale = true;
         return true;
     }
 
@@ -766,6 +1100,8 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     public boolean containsKey(final int k) {
         if (k == 0)
             return containsNullKey;
+        if (occupancy != null && (k & 0xC0000000) == 0 && !occupancy.contains(k))
+            return false;
         int curr;
         final int[] key = this.key;
         int pos;
@@ -806,6 +1142,11 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         Arrays.fill(key, 0);
         full.clear();
         order.clear();
+        stale = false;
+        orderIndexed = false;
+        modCount++;
+        if (occupancy != null)
+            occupancy.clear();
     }
 
     public int fullSize() {
@@ -918,12 +1259,17 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
      * @return the iteration-order index of the removed entry
      */
     protected int fixOrder(final int i) {
+        modCount++;
         if (size == 0) {
             full.clear();
             order.clear();
+            orderIndexed = false;
             return -1;
         }
-        order.removeValue(i);
+        if (incremental && !stale)
+            removeFromOrder(i);
+        else
+            order.removeValue(i);
         return full.removeValue(i);
     }
 
@@ -934,6 +1280,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
      * @param d the destination position.
      */
     protected void fixOrder(int s, int d) {
+        modCount++;
         if(size == 0)
             return;
         if (size == 1)
@@ -951,6 +1298,15 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         {
             full.set(full.indexOf(s), d);
         }
+        if (incremental && !stale) {
+            final int i = orderIndexOf(s);
+            if (i >= 0) {
+                order.items[i] = d;
+                orderIndex[d] = i + 1;
+                orderIndex[s] = 0;
+            }
+            return;
+        }
         if(order.items[0] == s) {
             order.set(0, d);
         }
@@ -1130,6 +1486,10 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
             size--;
             int last, slot, pos = curr;
             curr = -1;
+            stale = true;
+            modCount++;
+            if (occupancy != null)
+                occupancy.remove(key[pos]);
             if (pos == n) {
                 containsNullKey = false;
             } else {
@@ -1872,6 +2232,8 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         final int[] newKey = new int[newN + 1];
         final byte[] newValue = new byte[newN + 1];
         final int sz = full.size;
+        // order holds positions too, so it needs to know where each old position went
+        final int[] remap = order.size == 0 ? null : new int[key.length];
         int k;
         int i, pos;
         final int[] oi = full.items;
@@ -1887,10 +2249,20 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
             newKey[pos] = k;
             newValue[pos] = value[i];
             oi[q] = pos;
+            if (remap != null)
+                remap[i] = pos;
+        }
+        if (remap != null) {
+            final int[] items = order.items;
+            for (int q = 0, os = order.size; q < os; q++) {
+                items[q] = remap[items[q]];
+            }
         }
         n = newN;
         this.mask = mask;
         maxFill = maxFill(n, f);
+        modCount++;
+        orderIndexed = false;
         this.key = newKey;
         this.value = newValue;
     }
@@ -1917,6 +2289,39 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         c.rotation = rotation;
         c.containsNullKey = containsNullKey;
         c.defRetValue = defRetValue;
+        c.occupancy = occupancy == null ? null : new OccupancyGrid(occupancy);
+        c.stale = stale;
+        c.incremental = incremental;
+        return c;
+    }
+
+    /**
+     * Makes a view of this VoxelSeq that shares its voxels, but has its own {@link #rotation} and its own copy of
+     * {@link #order}, so several views can be rotated, sorted, and drawn on different threads at the same time. The
+     * view shares the arrays that hold the voxels, so nothing should be put in or removed from a view, and this
+     * VoxelSeq shouldn't be changed while any view of it is in use. Calling {@link #hollow()} on this first (on one
+     * thread) means no view needs to hollow itself.
+     *
+     * @return a new VoxelSeq that reads the same voxels as this one, without copying them
+     */
+    public VoxelSeq view() {
+        VoxelSeq c = new VoxelSeq(1, f);
+        c.key = key;
+        c.value = value;
+        c.order = order.copy();
+        c.full = full;
+        c.size = size;
+        c.mask = mask;
+        c.n = n;
+        c.maxFill = maxFill;
+        c.sizeX = sizeX;
+        c.sizeY = sizeY;
+        c.sizeZ = sizeZ;
+        c.rotation = rotation;
+        c.containsNullKey = containsNullKey;
+        c.defRetValue = defRetValue;
+        c.occupancy = occupancy;
+        c.stale = stale;
         return c;
     }
     /**
@@ -2146,6 +2551,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
             value[pos] = v;
             full.add(pos);
         }
+        stale = true;
         hollow();
     }
 
@@ -2303,6 +2709,7 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         if(size < 2)
             return this;
         order.shuffle(rng);
+        modCount++;
         return this;
     }
 
@@ -2325,15 +2732,22 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
     public VoxelSeq reorder(int... ordering)
     {
         full.reorder(ordering);
+        stale = true;
         return this;
     }
     private int alterEntry(final int pos) {
+        if (occupancy != null)
+            occupancy.remove(key[pos]);
+        stale = true;
         int idx = fixOrder(pos);
         size--;
         shiftKeys(pos);
         return idx;
     }
     private int alterNullEntry() {
+        if (occupancy != null)
+            occupancy.remove(0);
+        stale = true;
         int idx = fixOrder(n);
         containsNullKey = false;
         size--;
@@ -2534,24 +2948,71 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         return put(fuse(x, y, z), val);
     }
     /**
-     * Sorts this whole VoxelSeq on its keys using the supplied Comparator.
+     * Sorts this whole VoxelSeq on its keys using the supplied Comparator. The sorted order is remembered for each
+     * comparator, so if nothing was put, removed, or hollowed since this was last sorted with the same comparator (as is
+     * the case for a static model redrawn from a rotation it has been drawn from before), this just copies the
+     * remembered order instead of sorting again. Use {@link #forgetSorts()} to free that memory.
      * @param comparator an {@link IntComparator} that can handle the x,y,z packed keys this uses
      */
     public void sort(IntComparator comparator)
     {
-        sort(comparator, 0, order.size);
+        final int sz = order.size;
+        if(sortCache == null)
+            sortCache = new IdentityHashMap<>(8);
+        final long checksum = orderChecksum();
+        SortedOrder cached = sortCache.get(comparator);
+        if(cached != null && cached.modCount == modCount && cached.checksum == checksum && cached.items.length == sz)
+        {
+            System.arraycopy(cached.items, 0, order.items, 0, sz);
+            return;
+        }
+        sort(comparator, 0, sz);
+        if(cached == null)
+            sortCache.put(comparator, cached = new SortedOrder());
+        cached.modCount = modCount;
+        cached.checksum = checksum;
+        if(cached.items == null || cached.items.length != sz)
+            cached.items = new int[sz];
+        System.arraycopy(order.items, 0, cached.items, 0, sz);
+    }
+
+    /**
+     * Discards the sorted orders that {@link #sort(IntComparator)} remembers; they will be rebuilt as needed.
+     */
+    public void forgetSorts()
+    {
+        if(sortCache != null)
+            sortCache.clear();
+    }
+
+    /**
+     * Combines the positions in {@link #order} in a way that doesn't depend on their order, so a cached sort can tell
+     * if code outside this class has changed which voxels are in order without touching {@link #modCount}.
+     */
+    private long orderChecksum()
+    {
+        final int[] items = order.items;
+        long sum = 0L;
+        for (int i = 0, sz = order.size; i < sz; i++) {
+            sum += (items[i] + 0x9E3779B97F4A7C15L) * 0xD1B54A32D192ED03L;
+        }
+        return sum ^ sum >>> 29;
     }
 
     /**
      * Sorts a sub-range of this VoxelSeq on its keys from what is currently the index {@code start} up to (but not
-     * including) the index {@code end}, using the supplied IntComparator. Only sorts potentially-visible voxels.
+     * including) the index {@code end}, using the supplied IntComparator. Only sorts potentially-visible voxels. The
+     * comparators in {@link IntComparator#side} and {@link IntComparator#side45} are sorted in linear time by an
+     * {@link IntRadixSort}; other comparators use a merge sort. Both are stable and give the same order.
      * @param comparator an {@link IntComparator} that can handle the x,y,z packed keys this uses
      * @param start the first index of a key to sort (the index can change after this)
      * @param end the exclusive bound on the indices to sort; often this is just {@link #size()}
      */
     public void sort(IntComparator comparator, int start, int end)
     {
-        IntSortIndirect.sort(key, order, start, end, comparator);
+        if(radix == null)
+            radix = new IntRadixSort();
+        radix.sort(key, order, start, end, comparator);
     }
     /**
      * Gets the key at the given index in the iteration order in constant time, rotating the x, y, and z components of
@@ -2576,6 +3037,63 @@ public class VoxelSeq implements IVoxelSeq, Serializable {
         return rotate(key[order.get(idx)], rotation);
     }
 
+    /**
+     * Gets which faces of the potentially-visible voxel at idx are exposed at the current {@link #rotation}, as a mask
+     * of {@link IVoxelSeq#FACE_X_POS} and the other FACE_ constants. Each face is checked with
+     * {@link #getRotated(int, int, int)} the first time it is asked for after the voxels, the rotation, or a size
+     * changes, and remembered after that, so drawing the same model from the same rotation again doesn't probe the hash
+     * table for neighbors. If only some faces are needed, {@link #facesAtHollow(int, int)} avoids checking the others.
+     * @param idx the index in the potentially-visible-voxel order
+     * @return a 6-bit mask of exposed faces, or 0 if idx is out of range
+     */
+    public int facesAtHollow(final int idx) {
+        return facesAtHollow(idx, FACE_ALL);
+    }
+
+    /**
+     * Like {@link #facesAtHollow(int)}, but only checks and returns the faces in mask, so a caller that only needs to
+     * know about the top face pays for one neighbor lookup, not six, the first time it asks.
+     * @param idx the index in the potentially-visible-voxel order
+     * @param mask the FACE_ constants from {@link IVoxelSeq} to check, combined with bitwise OR
+     * @return the exposed faces among those in mask, or 0 if idx is out of range
+     */
+    public int facesAtHollow(final int idx, final int mask) {
+        if (idx < 0 || idx >= order.size)
+            return 0;
+        if (faces == null || faces.length != key.length || facesModCount != modCount || facesRotation != rotation
+                || facesSizeX != sizeX || facesSizeY != sizeY || facesSizeZ != sizeZ)
+            clearFaces();
+        final int pos = order.get(idx);
+        int f = faces[pos];
+        final int missing = mask & FACE_ALL & ~(f >>> 8);
+        if (missing != 0) {
+            final int k = rotate(key[pos], rotation), x = extractX(k), y = extractY(k), z = extractZ(k);
+            if ((missing & FACE_X_POS) != 0 && getRotated(x + 1, y, z) == 0) f |= FACE_X_POS;
+            if ((missing & FACE_X_NEG) != 0 && getRotated(x - 1, y, z) == 0) f |= FACE_X_NEG;
+            if ((missing & FACE_Y_POS) != 0 && getRotated(x, y + 1, z) == 0) f |= FACE_Y_POS;
+            if ((missing & FACE_Y_NEG) != 0 && getRotated(x, y - 1, z) == 0) f |= FACE_Y_NEG;
+            if ((missing & FACE_Z_POS) != 0 && getRotated(x, y, z + 1) == 0) f |= FACE_Z_POS;
+            if ((missing & FACE_Z_NEG) != 0 && getRotated(x, y, z - 1) == 0) f |= FACE_Z_NEG;
+            faces[pos] = (short) (f |= missing << 8);
+        }
+        return f & mask;
+    }
+
+    /**
+     * Forgets every face in {@link #faces}, so they will be checked again at the current rotation.
+     */
+    protected void clearFaces() {
+        if (faces == null || faces.length != key.length)
+            faces = new short[key.length];
+        else
+            Arrays.fill(faces, (short) 0);
+        facesModCount = modCount;
+        facesRotation = rotation;
+        facesSizeX = sizeX;
+        facesSizeY = sizeY;
+        facesSizeZ = sizeZ;
+    }
+
     /**
      * Gets the key at the given index in the entire iteration order in constant time, rotating the x, y, and z
      * components of the key to match {@link #rotation}.
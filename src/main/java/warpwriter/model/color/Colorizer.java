@@ -20,6 +20,48 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
 
     protected PaletteReducer reducer;
 
+    /**
+     * How many shades {@link #colorize(byte, int)} can move in either direction with one lookup in {@link #ramps()};
+     * bigger changes take one more lookup for each extra RAMP_REACH shades.
+     */
+    public static final int RAMP_REACH = 4;
+
+    /**
+     * Lazily built by {@link #ramps()}; each thread either sees null and builds its own (identical) table, or sees a
+     * finished one.
+     */
+    private volatile byte[][] ramps;
+
+    /**
+     * Lazily built by {@link #dimmerTable()}, and cleared by {@link #setReducer(PaletteReducer)}.
+     */
+    private volatile int[][] dimmerTable;
+
+    /**
+     * Gets a table, built the first time this is called, where {@code ramps()[voxel & 0xFF][RAMP_REACH + b]} is the
+     * result of calling {@link #brighten(byte)} b times on voxel (or {@link #darken(byte)} -b times, if b is negative),
+     * for b from -RAMP_REACH to RAMP_REACH inclusive. This relies on brighten() and darken() always giving the same
+     * result for the same voxel, which is true of every Colorizer here.
+     *
+     * @return a 256 by {@code RAMP_REACH * 2 + 1} table of color indices; don't modify it
+     */
+    public byte[][] ramps() {
+        byte[][] table = ramps;
+        if (table == null) {
+            table = new byte[256][RAMP_REACH * 2 + 1];
+            for (int i = 0; i < 256; i++) {
+                final byte[] row = table[i];
+                row[RAMP_REACH] = (byte) i;
+                for (int b = 1; b <= RAMP_REACH; b++) {
+                    row[RAMP_REACH + b] = brighten(row[RAMP_REACH + b - 1]);
+                    row[RAMP_REACH - b] = darken(row[RAMP_REACH - b + 1]);
+                }
+            }
+            ramps = table;
+        }
+        return table;
+    }
+
     /**
      * @param voxel      A color index
      * @param brightness An integer representing how many shades brighter (if positive) or darker (if negative) the result should be
@@ -27,16 +69,16 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
      */
     @Override
     public byte colorize(byte voxel, int brightness) {
-        if (brightness > 0) {
-            for (int i = 0; i < brightness; i++) {
-                voxel = brighten(voxel);
-            }
-        } else if (brightness < 0) {
-            for (int i = 0; i > brightness; i--) {
-                voxel = darken(voxel);
-            }
+        final byte[][] table = ramps();
+        while (brightness > RAMP_REACH) {
+            voxel = table[voxel & 0xFF][RAMP_REACH << 1];
+            brightness -= RAMP_REACH;
+        }
+        while (brightness < -RAMP_REACH) {
+            voxel = table[voxel & 0xFF][0];
+            brightness += RAMP_REACH;
         }
-        return voxel;
+        return table[voxel & 0xFF][RAMP_REACH + brightness];
     }
 
     /**
@@ -50,7 +92,8 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
 
     /**
      * Uses {@link #colorize(byte, int)} to figure out what index has the correct brightness, then looks that index up
-     * in the {@link #reducer}'s stored palette array to get an RGBA8888 int.
+     * in the {@link #reducer}'s stored palette array to get an RGBA8888 int. Brightness from 0 to 3 is looked up in
+     * {@link #dimmerTable()}, so this is one array access for every face a renderer asks for.
      *
      * @param brightness 0 for dark, 1 for dim, 2 for medium and 3 for bright. Negative numbers are expected to normally be interpreted as black and numbers higher than 3 as white.
      * @param voxel      The color index of a voxel
@@ -58,9 +101,33 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
      */
     @Override
     public int dimmer(int brightness, byte voxel) {
+        if ((brightness & -4) == 0)
+            return dimmerTable()[voxel & 0xFF][brightness];
         return reducer.paletteArray[colorize(voxel, brightness - 2) & 0xFF];
     }
 
+    /**
+     * Gets a table, built the first time this is called, where {@code dimmerTable()[voxel & 0xFF][brightness]} is the
+     * RGBA8888 color that the default {@link #dimmer(int, byte)} returns for brightness from 0 to 3. Colorizers that
+     * override dimmer() with their own table don't use this.
+     *
+     * @return a 256 by 4 table of RGBA8888 colors; don't modify it
+     */
+    public int[][] dimmerTable() {
+        int[][] table = dimmerTable;
+        if (table == null) {
+            table = new int[256][4];
+            final int[] palette = reducer.paletteArray;
+            for (int i = 0; i < 256; i++) {
+                for (int b = 0; b < 4; b++) {
+                    table[i][b] = palette[colorize((byte) i, b - 2) & 0xFF];
+                }
+            }
+            dimmerTable = table;
+        }
+        return table;
+    }
+
     /**
      * Gets a PaletteReducer that contains the RGBA8888 int colors that the byte indices these deals with correspond to.
      * This PaletteReducer can be queried for random colors with {@link PaletteReducer#randomColor(IRNG)} (for an int
@@ -79,6 +146,7 @@ public abstract class Colorizer extends Dimmer implements IColorizer {
      */
     protected void setReducer(PaletteReducer reducer) {
         this.reducer = reducer;
+        dimmerTable = null;
     }
 
     private static int luma(final int r, final int g, final int b) {
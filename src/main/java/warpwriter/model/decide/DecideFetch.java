@@ -44,6 +44,28 @@ public class DecideFetch extends Fetch {
         return decide.bool(x, y, z) ? iFetch.at(x, y, z) : safeNextFetch().at(x, y, z);
     }
 
+    /**
+     * Fills the box the same way {@link #at(int, int, int)} would, but if the IDecide is a {@link HeightDecide}, only
+     * asks it for the height of each column once instead of once per voxel.
+     */
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        if (!(decide instanceof HeightDecide)) {
+            super.fill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+            return;
+        }
+        final HeightDecide height = (HeightDecide) decide;
+        final Fetch next = safeNextFetch();
+        for (int x = x0, i = 0; x < x0 + sizeX; x++) {
+            for (int y = y0; y < y0 + sizeY; y++) {
+                final double limit = height.limit(x, y);
+                for (int z = z0; z < z0 + sizeZ; z++) {
+                    out[i++] = z < limit ? iFetch.at(x, y, z) : next.at(x, y, z);
+                }
+            }
+        }
+    }
+
     public static final IDecide truth = new IDecide() {
         @Override
         public boolean bool(int x, int y, int z) {
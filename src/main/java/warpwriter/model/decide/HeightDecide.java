@@ -2,6 +2,12 @@ package warpwriter.model.decide;
 
 import warpwriter.model.fetch.IHeightMap;
 
+/**
+ * Decides that a position is filled if it is below the height that an {@link IHeightMap} gives for its x and y.
+ * <p>
+ * Every z in a column shares one height; {@link #limit(int, int)} gets it once so code that handles whole columns,
+ * like {@link DecideFetch#fill(int, int, int, int, int, int, byte[])}, doesn't ask the height map again for each z.
+ */
 public class HeightDecide implements IDecide {
     IHeightMap map;
     double scaleX, scaleY, scaleZ;
@@ -31,7 +37,18 @@ public class HeightDecide implements IDecide {
 
     @Override
     public boolean bool(int x, int y, int z) {
-        return z < (map.heightMap(x * scaleX, y * scaleY) + 1) * scaleZ;
+        return z < limit(x, y);
+    }
+
+    /**
+     * Gets the height that the column at x, y is filled up to; {@link #bool(int, int, int)} is true for any z less
+     * than this.
+     * @param x x position of the column
+     * @param y y position of the column
+     * @return the exclusive upper bound on filled z positions in that column, as a double
+     */
+    public double limit(int x, int y) {
+        return (map.heightMap(x * scaleX, y * scaleY) + 1) * scaleZ;
     }
 
     /**
@@ -28,11 +28,11 @@ public class AnimatedArrayModel extends Fetch implements IModel, ITemporal {
 
     public AnimatedArrayModel(IFetch fetch, int duration, int xSize, int ySize, int zSize) {
         voxels = new byte[duration][xSize][ySize][zSize];
-        for (int x = 0; x < sizeX(); x++) {
-            for (int y = 0; y < sizeY(); y++) {
-                for (int z = 0; z < sizeZ(); z++) { 
-                    voxels[0][x][y][z] = fetch.at(x, y, z);
-                }
+        final byte[] slab = new byte[ySize * zSize];
+        for (int x = 0; x < xSize; x++) {
+            fetch.fill(x, 0, 0, 1, ySize, zSize, slab);
+            for (int y = 0; y < ySize; y++) {
+                System.arraycopy(slab, y * zSize, voxels[0][x][y], 0, zSize);
             }
         }
         for (int i = 1; i < duration; i++) {
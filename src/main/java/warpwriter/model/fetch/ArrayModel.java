@@ -4,6 +4,8 @@ import warpwriter.model.Fetch;
 import warpwriter.model.IFetch;
 import warpwriter.model.IModel;
 
+import java.util.Arrays;
+
 /**
  * A simple IModel that wraps a 3D byte array, using its bounds to implement {@link #sizeX()} and its related methods
  * and using its contents to implement {@link #at(int, int, int)} (out-of-bounds requests are handled by returning 0).
@@ -25,10 +27,12 @@ public class ArrayModel extends Fetch implements IModel {
 
     public ArrayModel(IFetch fetch, int xSize, int ySize, int zSize) {
         voxels = new byte[xSize][ySize][zSize];
-        for (int x = 0; x < sizeX(); x++)
-            for (int y = 0; y < sizeY(); y++)
-                for (int z = 0; z < sizeZ(); z++)
-                    voxels[x][y][z] = fetch.at(x, y, z);
+        final byte[] slab = new byte[ySize * zSize];
+        for (int x = 0; x < xSize; x++) {
+            fetch.fill(x, 0, 0, 1, ySize, zSize, slab);
+            for (int y = 0; y < ySize; y++)
+                System.arraycopy(slab, y * zSize, voxels[x][y], 0, zSize);
+        }
     }
 
     public ArrayModel(IModel model) {
@@ -72,6 +76,22 @@ public class ArrayModel extends Fetch implements IModel {
                 : voxels[x][y][z];
     }
 
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        final int sx = sizeX(), sy = sizeY(), sz = sizeZ(),
+                zStart = Math.max(0, -z0), zEnd = Math.min(sizeZ, sz - z0);
+        Arrays.fill(out, 0, sizeX * sizeY * sizeZ, (byte) 0);
+        if (zStart < zEnd) {
+            for (int x = Math.max(0, -x0), xEnd = Math.min(sizeX, sx - x0); x < xEnd; x++) {
+                for (int y = Math.max(0, -y0), yEnd = Math.min(sizeY, sy - y0); y < yEnd; y++) {
+                    System.arraycopy(voxels[x0 + x][y0 + y], z0 + zStart, out, (x * sizeY + y) * sizeZ + zStart,
+                            zEnd - zStart);
+                }
+            }
+        }
+        deferFill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+    }
+
     @Override
     public boolean outside(int x, int y, int z) {
         return x < 0 || y < 0 || z < 0 || x >= sizeX() || y >= sizeY() || z >= sizeZ();
@@ -0,0 +1,237 @@
+package warpwriter.model.fetch;
+
+import squidpony.annotation.GwtIncompatible;
+import warpwriter.model.IFetch;
+import warpwriter.model.IModel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An {@link ArrayModel} that remembers the IFetch it was filled from, so a procedural chain of Fetches (with
+ * {@link Skew}, {@link Stripes}, {@link NoiseFetch}, and so on) can be evaluated once and then drawn as quickly as any
+ * ArrayModel, instead of walking the whole chain for every voxel on every render.
+ * <p>
+ * If something in the source chain changes, such as the offset of an {@link OffsetFetch} or the colors of a
+ * {@link ColorFetch}, call {@link #dirty(int, int, int, int, int, int)} with the box that the change could affect (or
+ * {@link #dirty()} if that isn't known), then {@link #rebake()} to evaluate the source again inside only that box.
+ * Dirty boxes are merged into one box that contains all of them until the next rebake. Nothing is re-evaluated
+ * automatically; until rebake() is called, this keeps returning the old colors.
+ * <p>
+ * {@link #rebakeParallel()} splits the work into slabs along x and evaluates them on multiple threads. That is only
+ * safe if every Fetch in the source chain can be called from several threads at once; most can, but {@link TurnFetch}
+ * shares one static turner, and anything that caches results as it goes, such as {@link WorldFetch}, should be assumed
+ * not to be safe. The serial methods work with any chain.
+ *
+ * @author Tommy Ettinger
+ */
+public class BakedModel extends ArrayModel {
+    protected IFetch source;
+    /**
+     * The box that needs to be evaluated again, from (dirtyX0, dirtyY0, dirtyZ0) inclusive to
+     * (dirtyX1, dirtyY1, dirtyZ1) exclusive; it is empty when dirtyX0 is not less than dirtyX1.
+     */
+    protected int dirtyX0, dirtyY0, dirtyZ0, dirtyX1, dirtyY1, dirtyZ1;
+
+    /**
+     * Evaluates source at every position from (0,0,0) inclusive to (sizeX,sizeY,sizeZ) exclusive, on this thread.
+     * @param source the IFetch to evaluate; usually the start of a chain of Fetches
+     * @param sizeX the x size of the model
+     * @param sizeY the y size of the model
+     * @param sizeZ the z size of the model
+     */
+    public BakedModel(IFetch source, int sizeX, int sizeY, int sizeZ) {
+        super(new byte[sizeX][sizeY][sizeZ]);
+        this.source = source;
+        dirty();
+        rebake();
+    }
+
+    /**
+     * Evaluates source at every position inside the bounds of the given IModel, on this thread. Only the size of
+     * bounds is used.
+     * @param source the IFetch to evaluate; usually the start of a chain of Fetches
+     * @param bounds an IModel whose sizeX(), sizeY(), and sizeZ() will be used for this model's size
+     */
+    public BakedModel(IFetch source, IModel bounds) {
+        this(source, bounds.sizeX(), bounds.sizeY(), bounds.sizeZ());
+    }
+
+    /**
+     * Just like {@link #BakedModel(IFetch, int, int, int)}, but evaluates source on the threads of the common
+     * ForkJoinPool; see the class documentation for which chains this is safe to use with.
+     * @param source the IFetch to evaluate; must be safe to call from multiple threads
+     * @param sizeX the x size of the model
+     * @param sizeY the y size of the model
+     * @param sizeZ the z size of the model
+     * @return a new BakedModel with the same contents as the serial constructor would produce
+     */
+    @GwtIncompatible
+    public static BakedModel bakeParallel(IFetch source, int sizeX, int sizeY, int sizeZ) {
+        final BakedModel baked = new BakedModel(new byte[sizeX][sizeY][sizeZ], source);
+        baked.rebakeParallel();
+        return baked;
+    }
+
+    /**
+     * Wraps voxels without evaluating anything yet; the whole model starts dirty.
+     */
+    protected BakedModel(byte[][][] voxels, IFetch source) {
+        super(voxels);
+        this.source = source;
+        dirty();
+    }
+
+    public IFetch getSource() {
+        return source;
+    }
+
+    /**
+     * Changes the IFetch this is evaluated from and marks the whole model dirty; call {@link #rebake()} to actually
+     * evaluate the new source.
+     * @param source the new IFetch to evaluate
+     * @return this, for chaining
+     */
+    public BakedModel setSource(IFetch source) {
+        this.source = source;
+        return dirty();
+    }
+
+    /**
+     * Marks the whole model as needing to be evaluated again by the next {@link #rebake()}.
+     * @return this, for chaining
+     */
+    public BakedModel dirty() {
+        dirtyX0 = 0;
+        dirtyY0 = 0;
+        dirtyZ0 = 0;
+        dirtyX1 = sizeX();
+        dirtyY1 = sizeY();
+        dirtyZ1 = sizeZ();
+        return this;
+    }
+
+    /**
+     * Marks a box as needing to be evaluated again by the next {@link #rebake()}, adding it to any box already marked.
+     * The parts of the box outside the model are ignored.
+     * @param x0 the lowest x position in the box
+     * @param y0 the lowest y position in the box
+     * @param z0 the lowest z position in the box
+     * @param sizeX how many x positions the box covers
+     * @param sizeY how many y positions the box covers
+     * @param sizeZ how many z positions the box covers
+     * @return this, for chaining
+     */
+    public BakedModel dirty(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ) {
+        final int x1 = Math.min(sizeX(), x0 + sizeX), y1 = Math.min(sizeY(), y0 + sizeY),
+                z1 = Math.min(sizeZ(), z0 + sizeZ);
+        x0 = Math.max(0, x0);
+        y0 = Math.max(0, y0);
+        z0 = Math.max(0, z0);
+        if (x0 >= x1 || y0 >= y1 || z0 >= z1)
+            return this;
+        if (isDirty()) {
+            dirtyX0 = Math.min(dirtyX0, x0);
+            dirtyY0 = Math.min(dirtyY0, y0);
+            dirtyZ0 = Math.min(dirtyZ0, z0);
+            dirtyX1 = Math.max(dirtyX1, x1);
+            dirtyY1 = Math.max(dirtyY1, y1);
+            dirtyZ1 = Math.max(dirtyZ1, z1);
+        } else {
+            dirtyX0 = x0;
+            dirtyY0 = y0;
+            dirtyZ0 = z0;
+            dirtyX1 = x1;
+            dirtyY1 = y1;
+            dirtyZ1 = z1;
+        }
+        return this;
+    }
+
+    /**
+     * @return true if some part of this model has been marked dirty and not yet rebaked
+     */
+    public boolean isDirty() {
+        return dirtyX0 < dirtyX1;
+    }
+
+    /**
+     * Evaluates the source again inside the dirty box, on this thread, then clears the dirty box. Does nothing if
+     * nothing is dirty.
+     * @return this, for chaining
+     */
+    public BakedModel rebake() {
+        if (isDirty()) {
+            bakeSlab(dirtyX0, dirtyX1);
+            dirtyX0 = dirtyX1 = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Just like {@link #rebake()}, but splits the dirty box into slabs along x and evaluates them on the threads of
+     * the common ForkJoinPool; see the class documentation for which chains this is safe to use with.
+     * @return this, for chaining
+     */
+    @GwtIncompatible
+    public BakedModel rebakeParallel() {
+        return rebakeParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Just like {@link #rebake()}, but splits the dirty box into slabs along x and evaluates them on the threads of
+     * the given ForkJoinPool; see the class documentation for which chains this is safe to use with.
+     * @param pool the ForkJoinPool to run on
+     * @return this, for chaining
+     */
+    @GwtIncompatible
+    public BakedModel rebakeParallel(ForkJoinPool pool) {
+        if (isDirty()) {
+            pool.invoke(new BakeTask(this, dirtyX0, dirtyX1,
+                    Math.max(1, (dirtyX1 - dirtyX0) / (pool.getParallelism() << 2))));
+            dirtyX0 = dirtyX1 = 0;
+        }
+        return this;
+    }
+
+    /**
+     * Evaluates the source for every x from x0 inclusive to x1 exclusive, within the y and z range of the dirty box.
+     * Different calls only write to different x positions, so separate ranges can be baked at the same time.
+     */
+    protected void bakeSlab(final int x0, final int x1) {
+        final int y0 = dirtyY0, z0 = dirtyZ0, ys = dirtyY1 - y0, zs = dirtyZ1 - z0;
+        final byte[] slab = new byte[ys * zs];
+        for (int x = x0; x < x1; x++) {
+            source.fill(x, y0, z0, 1, ys, zs, slab);
+            for (int y = 0; y < ys; y++) {
+                System.arraycopy(slab, y * zs, voxels[x][y0 + y], z0, zs);
+            }
+        }
+    }
+
+    /**
+     * Bakes a range of x for {@link #rebakeParallel(ForkJoinPool)}, splitting it in half until a slab is small enough.
+     */
+    @GwtIncompatible
+    private static final class BakeTask extends RecursiveAction {
+        private final BakedModel model;
+        private final int x0, x1, slab;
+
+        BakeTask(BakedModel model, int x0, int x1, int slab) {
+            this.model = model;
+            this.x0 = x0;
+            this.x1 = x1;
+            this.slab = slab;
+        }
+
+        @Override
+        protected void compute() {
+            if (x1 - x0 <= slab) {
+                model.bakeSlab(x0, x1);
+                return;
+            }
+            final int mid = x0 + x1 >>> 1;
+            invokeAll(new BakeTask(model, x0, mid, slab), new BakeTask(model, mid, x1, slab));
+        }
+    }
+}
@@ -50,6 +50,36 @@ public class BoxModel extends FetchModel {
         return bool(x, y, z) ? fetch.at(x, y, z) : safeNextFetch().at(x, y, z);
     }
 
+    /**
+     * Gets the rest of the chain for the whole box, then paints over it with the edges of the wireframe, only calling
+     * {@link #bool(int, int, int)} logic on whole columns of z instead of on every voxel.
+     */
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        safeNextFetch().fill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+        final int sx = sizeX(), sy = sizeY(), sz = sizeZ(),
+                zStart = Math.max(0, -z0), zEnd = Math.min(sizeZ, sz - z0);
+        if (zStart >= zEnd)
+            return;
+        for (int x = Math.max(0, -x0), xEnd = Math.min(sizeX, sx - x0); x < xEnd; x++) {
+            final boolean edgeX = x0 + x == 0 || x0 + x == sx - 1;
+            for (int y = Math.max(0, -y0), yEnd = Math.min(sizeY, sy - y0); y < yEnd; y++) {
+                final boolean edgeY = y0 + y == 0 || y0 + y == sy - 1;
+                final int row = (x * sizeY + y) * sizeZ;
+                if (edgeX && edgeY) {
+                    for (int z = zStart; z < zEnd; z++) {
+                        out[row + z] = fetch.at(x0 + x, y0 + y, z0 + z);
+                    }
+                } else if (edgeX || edgeY) {
+                    if (z0 + zStart == 0)
+                        out[row + zStart] = fetch.at(x0 + x, y0 + y, 0);
+                    if (z0 + zEnd == sz)
+                        out[row + zEnd - 1] = fetch.at(x0 + x, y0 + y, sz - 1);
+                }
+            }
+        }
+    }
+
     /**
      * @return True if coordinates are part of the wireframe edges of the box.
      */
@@ -2,6 +2,8 @@ package warpwriter.model.fetch;
 
 import warpwriter.model.Fetch;
 
+import java.util.Arrays;
+
 /**
  * Always returns a solid color. Prevents creating more than 256 ColorFetch objects total.
  *
@@ -32,6 +34,11 @@ public class ColorFetch extends Fetch {
         return color;
     }
 
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        Arrays.fill(out, 0, sizeX * sizeY * sizeZ, color);
+    }
+
     /**
      * This is a final fetch. Anything added after it should be ignored.
      *
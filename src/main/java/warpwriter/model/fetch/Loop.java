@@ -3,6 +3,8 @@ package warpwriter.model.fetch;
 import warpwriter.model.Fetch;
 import warpwriter.model.FetchModel;
 
+import java.util.Arrays;
+
 /**
  * Infinitely loop any Fetch in any or all of the three dimensions.
  *
@@ -18,6 +20,62 @@ public class Loop extends FetchModel {
         return safeNextFetch().at(loop(x, sizeX()), loop(y, sizeY()), loop(z, sizeZ()));
     }
 
+    /**
+     * Splits the box into pieces that don't cross a loop boundary on any axis, so each piece is one box in the next
+     * Fetch, and fills each of those with one call to the next Fetch.
+     */
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        final Fetch next = safeNextFetch();
+        final int[] xr = runs(x0, sizeX, sizeX()), yr = runs(y0, sizeY, sizeY()), zr = runs(z0, sizeZ, sizeZ());
+        if (xr.length == 3 && yr.length == 3 && zr.length == 3) {
+            next.fill(xr[1], yr[1], zr[1], sizeX, sizeY, sizeZ, out);
+            return;
+        }
+        byte[] piece = new byte[0];
+        for (int a = 0; a < xr.length; a += 3) {
+            for (int b = 0; b < yr.length; b += 3) {
+                for (int c = 0; c < zr.length; c += 3) {
+                    final int px = xr[a + 2], py = yr[b + 2], pz = zr[c + 2];
+                    if (piece.length < px * py * pz)
+                        piece = new byte[px * py * pz];
+                    next.fill(xr[a + 1], yr[b + 1], zr[c + 1], px, py, pz, piece);
+                    for (int x = 0, i = 0; x < px; x++) {
+                        for (int y = 0; y < py; y++, i += pz) {
+                            System.arraycopy(piece, i, out,
+                                    ((xr[a] + x) * sizeY + yr[b] + y) * sizeZ + zr[c], pz);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the range from start to start + length into runs where the looped position goes up by 1 each step; each
+     * run takes 3 ints: its offset from start, the looped position it starts at, and its length.
+     */
+    private static int[] runs(int start, int length, int divisor) {
+        if (divisor == 0 || length <= 0)
+            return new int[]{0, start, length};
+        int[] runs = new int[12];
+        int count = 0, prev = loop(start, divisor);
+        runs[1] = prev;
+        for (int i = 1; i < length; i++) {
+            final int curr = loop(start + i, divisor);
+            if (curr != prev + 1) {
+                runs[count + 2] = i - runs[count];
+                count += 3;
+                if (count + 3 > runs.length) runs = Arrays.copyOf(runs, runs.length << 1);
+                runs[count] = i;
+                runs[count + 1] = curr;
+            }
+            prev = curr;
+        }
+        runs[count + 2] = length - runs[count];
+        return Arrays.copyOf(runs, count + 3);
+    }
+
     /**
      * @param divisor Size of loop or 0 to turn off looping and just return dividend
      */
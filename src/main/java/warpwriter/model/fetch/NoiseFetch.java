@@ -6,9 +6,42 @@ import squidpony.squidmath.NumberTools;
 import warpwriter.ModelMaker;
 import warpwriter.model.Fetch;
 
+import java.util.Arrays;
+
+/**
+ * A final Fetch that colors every position using 3D noise, picking from {@link #colors} by the noise value at
+ * {@code (x * 0.12, y * 0.12, z * 0.12)}.
+ * <p>
+ * Noise is costly to evaluate and changes slowly from one voxel to the next, so {@link #setStep(int)} can make this
+ * evaluate noise only at positions where x, y, and z are all multiples of the step, and blend between those with
+ * trilinear interpolation. With a step of 4, this evaluates noise about 64 times less often. Both
+ * {@link #at(int, int, int)} and {@link #fill(int, int, int, int, int, int, byte[])} produce the same colors for any
+ * step; at() keeps a small cache of the lattice points it has evaluated, so neighboring requests share their corners,
+ * while fill() evaluates the whole lattice under the requested box once. The default step of 1 evaluates noise
+ * at every position, as this always has. With a step larger than 1, at() is not safe to call from multiple threads at
+ * once, because of that cache.
+ */
 public class NoiseFetch extends Fetch {
     protected Noise.Noise3D noise;
     protected byte[] colors;
+    protected int step = 1;
+    /**
+     * The lattice cell whose corners are in {@link #corners}, if {@link #cornersValid} is true.
+     */
+    private int cellX, cellY, cellZ;
+    private boolean cornersValid;
+    /**
+     * Noise values at the 8 corners of the last lattice cell at() used, indexed by {@code dx << 2 | dy << 1 | dz}.
+     */
+    private final double[] corners = new double[8];
+    /**
+     * A direct-mapped cache of lattice points that at() has evaluated, so neighboring cells share their corners; the
+     * value for the packed lattice point in {@code latticeKeys[i]} is in {@code latticeValues[i]}. Both are null until
+     * at() first needs them.
+     */
+    private long[] latticeKeys;
+    private double[] latticeValues;
+    private static final int LATTICE_BITS = 13;
 
     public NoiseFetch (Noise.Noise3D noise) {
         setNoise(noise);
@@ -29,7 +62,120 @@ public class NoiseFetch extends Fetch {
 
     @Override
     public final byte at(int x, int y, int z) {
-        return colors[(int)((noise.getNoise(x * 0.12, y * 0.12, z * 0.12) * 0.499999 + 0.5) * colors.length)];
+        if (step == 1)
+            return color(noise.getNoise(x * 0.12, y * 0.12, z * 0.12));
+        final int cx = cell(x), cy = cell(y), cz = cell(z);
+        final double[] corners = this.corners;
+        if (!cornersValid || cx != cellX || cy != cellY || cz != cellZ) {
+            for (int i = 0; i < 8; i++) {
+                corners[i] = cachedSample(cx + (i >>> 2), cy + (i >>> 1 & 1), cz + (i & 1));
+            }
+            cellX = cx;
+            cellY = cy;
+            cellZ = cz;
+            cornersValid = true;
+        }
+        final double inv = 1.0 / step, tx = (x - cx * step) * inv, ty = (y - cy * step) * inv, tz = (z - cz * step) * inv;
+        return color(blend(corners[0], corners[1], corners[2], corners[3], corners[4], corners[5], corners[6],
+                corners[7], tx, ty, tz));
+    }
+
+    /**
+     * Evaluates the lattice under the whole box once, then interpolates every voxel from it, if the step is larger
+     * than 1; otherwise this evaluates noise directly for every position. Either way, the result is identical to
+     * calling {@link #at(int, int, int)} on every position.
+     */
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        if (step == 1) {
+            for (int x = 0, i = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    for (int z = 0; z < sizeZ; z++) {
+                        out[i++] = color(noise.getNoise((x0 + x) * 0.12, (y0 + y) * 0.12, (z0 + z) * 0.12));
+                    }
+                }
+            }
+            return;
+        }
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0)
+            return;
+        final int step = this.step, cx0 = cell(x0), cy0 = cell(y0), cz0 = cell(z0),
+                lx = cell(x0 + sizeX - 1) - cx0 + 2, ly = cell(y0 + sizeY - 1) - cy0 + 2,
+                lz = cell(z0 + sizeZ - 1) - cz0 + 2;
+        final double[] lattice = new double[lx * ly * lz];
+        for (int x = 0, i = 0; x < lx; x++) {
+            for (int y = 0; y < ly; y++) {
+                for (int z = 0; z < lz; z++) {
+                    lattice[i++] = sample(cx0 + x, cy0 + y, cz0 + z);
+                }
+            }
+        }
+        final double inv = 1.0 / step;
+        final int sy = lz, sx = ly * lz;
+        for (int x = 0, i = 0; x < sizeX; x++) {
+            final int ax = x0 + x, cx = cell(ax);
+            final double tx = (ax - cx * step) * inv;
+            for (int y = 0; y < sizeY; y++) {
+                final int ay = y0 + y, cy = cell(ay);
+                final double ty = (ay - cy * step) * inv;
+                final int row = (cx - cx0) * sx + (cy - cy0) * sy;
+                for (int z = 0; z < sizeZ; z++) {
+                    final int az = z0 + z, cz = cell(az), c = row + cz - cz0;
+                    out[i++] = color(blend(lattice[c], lattice[c + 1], lattice[c + sy], lattice[c + sy + 1],
+                            lattice[c + sx], lattice[c + sx + 1], lattice[c + sx + sy], lattice[c + sx + sy + 1],
+                            tx, ty, (az - cz * step) * inv));
+                }
+            }
+        }
+    }
+
+    protected byte color(double noiseValue) {
+        return colors[(int)((noiseValue * 0.499999 + 0.5) * colors.length)];
+    }
+
+    /**
+     * Gets the lattice cell that contains the given coordinate, rounding toward negative infinity.
+     */
+    private int cell(int a) {
+        return a >= 0 ? a / step : (a + 1) / step - 1;
+    }
+
+    /**
+     * Evaluates the noise at a lattice point, given in lattice cells rather than voxels.
+     */
+    private double sample(int cx, int cy, int cz) {
+        return noise.getNoise(cx * step * 0.12, cy * step * 0.12, cz * step * 0.12);
+    }
+
+    /**
+     * Like {@link #sample(int, int, int)}, but checks the lattice cache first and stores the result in it.
+     */
+    private double cachedSample(int cx, int cy, int cz) {
+        if (latticeKeys == null) {
+            latticeKeys = new long[1 << LATTICE_BITS];
+            latticeValues = new double[1 << LATTICE_BITS];
+            // no packed key has the sign bit set, so this never matches
+            Arrays.fill(latticeKeys, Long.MIN_VALUE);
+        }
+        final long key = (cx & 0x1FFFFFL) | (cy & 0x1FFFFFL) << 21 | (cz & 0x1FFFFFL) << 42;
+        final int i = (int) (key * 0x9E3779B97F4A7C15L >>> 64 - LATTICE_BITS);
+        if (latticeKeys[i] == key)
+            return latticeValues[i];
+        latticeKeys[i] = key;
+        return latticeValues[i] = sample(cx, cy, cz);
+    }
+
+    /**
+     * Trilinear interpolation between the 8 corners of a cell, named by their x, y, and z offsets in that order, by
+     * the fractions tx, ty, and tz across it. Both at() and fill() go through this so they round the same way.
+     */
+    private static double blend(double c000, double c001, double c010, double c011,
+                                double c100, double c101, double c110, double c111,
+                                double tx, double ty, double tz) {
+        final double c00 = c000 + (c001 - c000) * tz, c01 = c010 + (c011 - c010) * tz,
+                c10 = c100 + (c101 - c100) * tz, c11 = c110 + (c111 - c110) * tz,
+                c0 = c00 + (c01 - c00) * ty, c1 = c10 + (c11 - c10) * ty;
+        return c0 + (c1 - c0) * tx;
     }
 
     /**
@@ -61,6 +207,27 @@ public class NoiseFetch extends Fetch {
 
     public NoiseFetch setNoise(Noise.Noise3D noise) {
         this.noise = noise;
+        cornersValid = false;
+        latticeKeys = null;
+        latticeValues = null;
+        return this;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Sets how far apart, in voxels, the positions where noise is actually evaluated are; positions between those are
+     * interpolated. A step of 1 (the default) evaluates noise at every position; larger steps are faster but smoother.
+     * @param step the distance between evaluated positions on each axis; will be at least 1
+     * @return this, for chaining
+     */
+    public NoiseFetch setStep(int step) {
+        this.step = Math.max(1, step);
+        cornersValid = false;
+        latticeKeys = null;
+        latticeValues = null;
         return this;
     }
 }
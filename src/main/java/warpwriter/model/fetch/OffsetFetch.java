@@ -57,4 +57,10 @@ public class OffsetFetch extends Fetch {
     public byte at(int x, int y, int z) {
         return deferByte(fetch.at(x + x(), y + y(), z + z()), x, y, z);
     }
+
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        fetch.fill(x0 + x(), y0 + y(), z0 + z(), sizeX, sizeY, sizeZ, out);
+        deferFill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+    }
 }
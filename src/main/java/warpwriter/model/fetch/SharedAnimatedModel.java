@@ -0,0 +1,313 @@
+package warpwriter.model.fetch;
+
+import warpwriter.model.Fetch;
+import warpwriter.model.IFetch;
+import warpwriter.model.IModel;
+import warpwriter.model.ITemporal;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * An animated IModel like {@link AnimatedArrayModel}, but frames share every z-row of voxels that they have in common,
+ * so an animation where only a few voxels move per frame costs little more memory than a single frame. A row is the
+ * {@code byte[]} for one (x,y) column, as in {@code byte[x][y][z]}; a row that is the same in one frame and the next,
+ * or that is completely empty, is stored once and referenced by every frame that uses it. Changing a voxel with
+ * {@link #put(int, int, int, int, byte)} copies its row first if any other frame might be using it (copy-on-write), so
+ * edits to one frame never show up in another.
+ * <p>
+ * Since the rows are shared, they aren't exposed directly; use {@link #toArray(int)} to get an independent copy of a
+ * frame. The constructor that takes a 4D array, such as the results of {@link warpwriter.ModelMaker#animateShip} or
+ * {@link warpwriter.ModelMaker#animateFish}, finds the shared rows itself, after which the 4D array can be discarded.
+ * After many edits, {@link #compact()} finds rows that have become equal again.
+ *
+ * @author Tommy Ettinger
+ */
+public class SharedAnimatedModel extends Fetch implements IModel, ITemporal {
+    /**
+     * The rows of each frame, indexed by frame, x, y, and then z; rows may be shared between frames, so never write
+     * to one without checking {@link #owned}.
+     */
+    protected byte[][][][] frames;
+    /**
+     * For each frame, one flag per row at index {@code x * sizeY + y}, true if no other frame could be using that row.
+     */
+    protected boolean[][] owned;
+    /**
+     * The row every frame uses for its empty columns; never written to.
+     */
+    protected byte[] empty;
+    protected int sizeX, sizeY, sizeZ;
+    protected int frame = 0;
+
+    /**
+     * Wraps the given frames, sharing any row that is equal to the row at the same x,y in the previous frame, or that
+     * is empty. Rows that aren't shared are used as-is rather than copied, so the arrays in voxels shouldn't be changed
+     * after this (the 4D array itself can be discarded). If the same row array is used in more than one place in
+     * voxels, in any frames, every place that uses it treats it as shared, so a put to one copies it first. All frames
+     * must have the same size.
+     * @param voxels a 4D byte array, indexed by frame, x, y, and then z
+     */
+    public SharedAnimatedModel(byte[][][][] voxels) {
+        setSize(voxels.length, voxels[0].length, voxels[0][0].length, voxels[0][0][0].length);
+        final int area = sizeX * sizeY;
+        // where each row array that was stored as-is was first put, as frame * area + x * sizeY + y
+        final IdentityHashMap<byte[], Integer> stored = new IdentityHashMap<>(area);
+        for (int f = 0; f < voxels.length; f++) {
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    final byte[] row = voxels[f][x][y];
+                    final int i = x * sizeY + y;
+                    share(f, x, y, row);
+                    if (!owned[f][i])
+                        continue;
+                    final Integer first = stored.get(row);
+                    if (first == null)
+                        stored.put(row, f * area + i);
+                    else {
+                        owned[f][i] = false;
+                        owned[first / area][first % area] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes an animation where every frame starts as the same single model; only one copy of its rows is stored
+     * until frames are changed with {@link #put(int, int, int, int, byte)}.
+     * @param fetch the IFetch to evaluate for the first frame, from (0,0,0) to (xSize,ySize,zSize) exclusive
+     * @param duration how many frames to have
+     * @param xSize the x size of each frame
+     * @param ySize the y size of each frame
+     * @param zSize the z size of each frame
+     */
+    public SharedAnimatedModel(IFetch fetch, int duration, int xSize, int ySize, int zSize) {
+        setSize(duration, xSize, ySize, zSize);
+        final byte[] slab = new byte[ySize * zSize];
+        for (int x = 0; x < xSize; x++) {
+            fetch.fill(x, 0, 0, 1, ySize, zSize, slab);
+            for (int y = 0; y < ySize; y++) {
+                share(0, x, y, Arrays.copyOfRange(slab, y * zSize, (y + 1) * zSize));
+                for (int f = 1; f < duration; f++) {
+                    share(f, x, y, frames[0][x][y]);
+                }
+            }
+        }
+    }
+
+    public SharedAnimatedModel(IModel model, int duration) {
+        this(model, duration, model.sizeX(), model.sizeY(), model.sizeZ());
+    }
+
+    private void setSize(int duration, int xSize, int ySize, int zSize) {
+        sizeX = xSize;
+        sizeY = ySize;
+        sizeZ = zSize;
+        frames = new byte[duration][xSize][ySize][];
+        owned = new boolean[duration][xSize * ySize];
+        empty = new byte[zSize];
+    }
+
+    /**
+     * Stores row as the row at x,y in frame f, unless it is empty or equal to the row at the same x,y in frame f-1,
+     * in which case that existing row is used instead.
+     */
+    private void share(final int f, final int x, final int y, final byte[] row) {
+        final int i = x * sizeY + y;
+        if (f > 0) {
+            final byte[] prev = frames[f - 1][x][y];
+            if (prev == row || Arrays.equals(prev, row)) {
+                frames[f][x][y] = prev;
+                owned[f - 1][i] = false;
+                owned[f][i] = false;
+                return;
+            }
+        }
+        if (Arrays.equals(empty, row)) {
+            frames[f][x][y] = empty;
+            owned[f][i] = false;
+            return;
+        }
+        frames[f][x][y] = row;
+        owned[f][i] = true;
+    }
+
+    @Override
+    public int duration() {
+        return frames.length;
+    }
+
+    /**
+     * This is a no-op; the duration cannot be changed after creation.
+     * @param duration ignored
+     * @return this for chaining
+     */
+    @Override
+    public SharedAnimatedModel setDuration(int duration) {
+        return this;
+    }
+
+    @Override
+    public int frame() {
+        return frame;
+    }
+
+    @Override
+    public SharedAnimatedModel setFrame(int frame) {
+        final int d = duration();
+        this.frame = ((frame % d) + d) % d;
+        return this;
+    }
+
+    @Override
+    public int sizeX() {
+        return sizeX;
+    }
+
+    @Override
+    public int sizeY() {
+        return sizeY;
+    }
+
+    @Override
+    public int sizeZ() {
+        return sizeZ;
+    }
+
+    @Override
+    public byte at(int x, int y, int z) {
+        if (outside(x, y, z))
+            return safeNextFetch().at(x, y, z);
+        final byte result = frames[frame][x][y][z];
+        return result == 0 ? safeNextFetch().at(x, y, z) : result;
+    }
+
+    @Override
+    public void fill(int x0, int y0, int z0, int sizeX, int sizeY, int sizeZ, byte[] out) {
+        final byte[][][] voxels = frames[frame];
+        final int zStart = Math.max(0, -z0), zEnd = Math.min(sizeZ, this.sizeZ - z0);
+        Arrays.fill(out, 0, sizeX * sizeY * sizeZ, (byte) 0);
+        if (zStart < zEnd) {
+            for (int x = Math.max(0, -x0), xEnd = Math.min(sizeX, this.sizeX - x0); x < xEnd; x++) {
+                for (int y = Math.max(0, -y0), yEnd = Math.min(sizeY, this.sizeY - y0); y < yEnd; y++) {
+                    System.arraycopy(voxels[x0 + x][y0 + y], z0 + zStart, out, (x * sizeY + y) * sizeZ + zStart,
+                            zEnd - zStart);
+                }
+            }
+        }
+        deferFill(x0, y0, z0, sizeX, sizeY, sizeZ, out);
+    }
+
+    /**
+     * Gets the voxel at x,y,z in the given frame, without consulting any Fetch after this one.
+     * @return the color index at that position, or 0 if it is empty or out of bounds
+     */
+    public byte get(int frame, int x, int y, int z) {
+        return outside(x, y, z) ? 0 : frames[frame][x][y][z];
+    }
+
+    /**
+     * Sets the voxel at x,y,z in the current frame; see {@link #put(int, int, int, int, byte)}.
+     * @return the previous color index at that position
+     */
+    public byte put(int x, int y, int z, byte voxel) {
+        return put(frame, x, y, z, voxel);
+    }
+
+    /**
+     * Sets the voxel at x,y,z in the given frame, copying its row first if another frame could be sharing it. Setting a
+     * voxel to the value it already has never copies anything. Does nothing if x,y,z is out of bounds.
+     * @param frame which frame to change; must be between 0 and {@link #duration()} (exclusive)
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @param voxel the color index to store
+     * @return the previous color index at that position
+     */
+    public byte put(int frame, int x, int y, int z, byte voxel) {
+        if (outside(x, y, z))
+            return 0;
+        byte[] row = frames[frame][x][y];
+        final byte old = row[z];
+        if (old == voxel)
+            return old;
+        final int i = x * sizeY + y;
+        if (!owned[frame][i]) {
+            frames[frame][x][y] = row = Arrays.copyOf(row, sizeZ);
+            owned[frame][i] = true;
+        }
+        row[z] = voxel;
+        return old;
+    }
+
+    /**
+     * Shares rows between consecutive frames again, and empty rows everywhere, after edits with
+     * {@link #put(int, int, int, int, byte)} have made rows that were copied equal to their neighbors.
+     * @return this, for chaining
+     */
+    public SharedAnimatedModel compact() {
+        for (int f = 0; f < frames.length; f++) {
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    final int i = x * sizeY + y;
+                    // a row that isn't owned is already shared with someone, and sharing it again changes nothing
+                    if (owned[f][i])
+                        share(f, x, y, frames[f][x][y]);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param frame which frame to copy
+     * @return a new 3D byte array with the contents of the given frame, indexed by x, y, and then z
+     */
+    public byte[][][] toArray(int frame) {
+        final byte[][][] next = new byte[sizeX][sizeY][];
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                next[x][y] = Arrays.copyOf(frames[frame][x][y], sizeZ);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return a new 4D byte array with the contents of every frame, indexed by frame, x, y, and then z
+     */
+    public byte[][][][] toArray() {
+        final byte[][][][] next = new byte[frames.length][][][];
+        for (int f = 0; f < frames.length; f++) {
+            next[f] = toArray(f);
+        }
+        return next;
+    }
+
+    /**
+     * @return how many distinct rows of voxels are stored across all frames; each one uses {@link #sizeZ()} bytes
+     */
+    public int distinctRows() {
+        final IdentityHashMap<byte[], Boolean> rows = new IdentityHashMap<>(sizeX * sizeY);
+        rows.put(empty, Boolean.TRUE);
+        for (int f = 0; f < frames.length; f++) {
+            for (int x = 0; x < sizeX; x++) {
+                for (int y = 0; y < sizeY; y++) {
+                    rows.put(frames[f][x][y], Boolean.TRUE);
+                }
+            }
+        }
+        return rows.size();
+    }
+
+    @Override
+    public boolean outside(int x, int y, int z) {
+        return x < 0 || y < 0 || z < 0 || x >= sizeX() || y >= sizeY() || z >= sizeZ();
+    }
+
+    @Override
+    public boolean inside(int x, int y, int z) {
+        return !outside(x, y, z);
+    }
+}
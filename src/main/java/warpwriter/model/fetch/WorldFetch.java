@@ -1,14 +1,28 @@
 package warpwriter.model.fetch;
 
+import com.badlogic.gdx.utils.IntMap;
 import warpwriter.model.Fetch;
 import warpwriter.model.nonvoxel.HashMap3D;
 import warpwriter.model.IFetch;
 
+/**
+ * Places IFetch tiles sparsely in a large space; each tile fills a blockX by blockY by blockZ block, and the block at
+ * (x2,y2,z2) in {@link #map()} covers positions from {@code (x2 * blockX, y2 * blockY, z2 * blockZ)} up to the start of
+ * the next block. Positions with no tile, or with any negative coordinate, are empty.
+ * <p>
+ * By default every call to {@link #at(int, int, int)} asks the tile for its color, which can be slow if the tiles are
+ * procedural. Calling {@link #cache(int)} with a positive limit makes this copy each block into a byte array the first
+ * time it is touched, and keep up to that many blocks, dropping the least-recently-used block when it needs room.
+ * {@link #hits()} and {@link #misses()} count how often a request found its block in the cache, which helps with
+ * choosing the limit. The cache is not updated when a tile changes; call {@link #invalidate(int, int, int)} or
+ * {@link #clearCache()} when that happens. Changing the map or block size clears the cache for you.
+ */
 public class WorldFetch extends Fetch {
     protected HashMap3D<IFetch> map;
 
     public WorldFetch set(HashMap3D<IFetch> map) {
         this.map = map;
+        clearCache();
         return this;
     }
 
@@ -32,16 +46,19 @@ public class WorldFetch extends Fetch {
 
     public WorldFetch setX(int x) {
         this.blockX = x;
+        clearCache();
         return this;
     }
 
     public WorldFetch setY(int y) {
         this.blockY = y;
+        clearCache();
         return this;
     }
 
     public WorldFetch setZ(int z) {
         this.blockZ = z;
+        clearCache();
         return this;
     }
 
@@ -49,6 +66,110 @@ public class WorldFetch extends Fetch {
         return setX(x).setY(y).setZ(z);
     }
 
+    /**
+     * A block copied into a byte array, ordered like {@link IFetch#fill(int, int, int, int, int, int, byte[])}, and
+     * linked into the list of cached blocks from most to least recently used. A block with no tile has null voxels.
+     */
+    protected static final class Chunk {
+        int key;
+        byte[] voxels;
+        Chunk newer, older;
+    }
+
+    /**
+     * The most blocks the cache will hold; 0 means blocks aren't cached at all.
+     */
+    protected int cacheLimit = 0;
+    protected IntMap<Chunk> chunks;
+    /**
+     * The most and least recently used chunks; newest is also checked before any hash lookup.
+     */
+    protected Chunk newest, oldest;
+    protected long hits, misses, evictions;
+
+    /**
+     * Starts (or stops) caching blocks; see the class documentation. Each cached block uses
+     * {@code blockX * blockY * blockZ} bytes, so the cache uses at most that times {@code limit}. Any blocks already
+     * cached are dropped, and the hit and miss counts are reset.
+     * @param limit how many blocks to keep at once; 0 or less turns caching off
+     * @return this, for chaining
+     */
+    public WorldFetch cache(int limit) {
+        cacheLimit = Math.max(0, limit);
+        chunks = cacheLimit == 0 ? null : new IntMap<Chunk>(Math.min(cacheLimit, 1024));
+        newest = oldest = null;
+        resetCounters();
+        return this;
+    }
+
+    /**
+     * @return how many blocks the cache will hold, or 0 if caching is off
+     */
+    public int cacheLimit() {
+        return cacheLimit;
+    }
+
+    /**
+     * @return how many blocks are currently cached
+     */
+    public int cachedBlocks() {
+        return chunks == null ? 0 : chunks.size;
+    }
+
+    /**
+     * @return how many cached requests found their block already in the cache since the last reset
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return how many cached requests had to copy their block from its tile since the last reset
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return how many blocks were dropped to make room for others since the last reset
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    public WorldFetch resetCounters() {
+        hits = misses = evictions = 0L;
+        return this;
+    }
+
+    /**
+     * Drops every cached block, without changing the cache limit or the counters.
+     * @return this, for chaining
+     */
+    public WorldFetch clearCache() {
+        if (chunks != null)
+            chunks.clear();
+        newest = oldest = null;
+        return this;
+    }
+
+    /**
+     * Drops the cached copy of the block at (x2,y2,z2) in the map, if there is one, so the next request for it will
+     * ask its tile again. Call this after changing or replacing that tile.
+     * @param x2 the x position of the block in the map, not in voxels
+     * @param y2 the y position of the block in the map, not in voxels
+     * @param z2 the z position of the block in the map, not in voxels
+     * @return this, for chaining
+     */
+    public WorldFetch invalidate(int x2, int y2, int z2) {
+        if (chunks != null) {
+            final Chunk chunk = chunks.remove(HashMap3D.fuse(x2, y2, z2));
+            if (chunk != null)
+                unlink(chunk);
+        }
+        return this;
+    }
+
     @Override
     public byte at(int x, int y, int z) {
         if((x | y | z) < 0) // if any of x, y or z are negative
@@ -60,8 +181,67 @@ public class WorldFetch extends Fetch {
         // all x values from `-blockX + 1` to `blockX - 1`, making small negative x, y, and
         // z values produce the voxel at 0 for that dimension.
         final int x2 = x / blockX, y2 = y / blockY, z2 = z / blockZ;
-        return map.containsKey(x2, y2, z2) ?
-                map.get(x2, y2, z2)
-                .at(x % blockX, y % blockY, z % blockZ) : 0;
+        if (cacheLimit == 0) {
+            final IFetch tile = map.get(x2, y2, z2);
+            return tile == null ? 0 : tile.at(x % blockX, y % blockY, z % blockZ);
+        }
+        final byte[] voxels = chunk(HashMap3D.fuse(x2, y2, z2), x2, y2, z2).voxels;
+        return voxels == null ? 0 : voxels[((x % blockX) * blockY + y % blockY) * blockZ + z % blockZ];
+    }
+
+    /**
+     * Gets the cached block with the given fused key, copying it from its tile if it isn't cached yet, and marks it as
+     * the most recently used.
+     */
+    protected Chunk chunk(final int key, final int x2, final int y2, final int z2) {
+        Chunk chunk = newest;
+        if (chunk != null && chunk.key == key) {
+            hits++;
+            return chunk;
+        }
+        chunk = chunks.get(key);
+        if (chunk != null) {
+            hits++;
+            unlink(chunk);
+        } else {
+            misses++;
+            if (chunks.size >= cacheLimit) {
+                chunk = oldest;
+                chunks.remove(chunk.key);
+                unlink(chunk);
+                evictions++;
+            } else
+                chunk = new Chunk();
+            chunk.key = key;
+            final IFetch tile = map.get(x2, y2, z2);
+            if (tile == null)
+                chunk.voxels = null;
+            else {
+                final int size = blockX * blockY * blockZ;
+                if (chunk.voxels == null || chunk.voxels.length != size)
+                    chunk.voxels = new byte[size];
+                tile.fill(0, 0, 0, blockX, blockY, blockZ, chunk.voxels);
+            }
+            chunks.put(key, chunk);
+        }
+        chunk.older = newest;
+        if (newest != null)
+            newest.newer = chunk;
+        else
+            oldest = chunk;
+        newest = chunk;
+        return chunk;
+    }
+
+    private void unlink(final Chunk chunk) {
+        if (chunk.newer != null)
+            chunk.newer.older = chunk.older;
+        else
+            newest = chunk.older;
+        if (chunk.older != null)
+            chunk.older.newer = chunk.newer;
+        else
+            oldest = chunk.newer;
+        chunk.newer = chunk.older = null;
     }
 }
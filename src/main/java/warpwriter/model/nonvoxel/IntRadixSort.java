@@ -0,0 +1,132 @@
+package warpwriter.model.nonvoxel;
+
+import squidpony.squidmath.IntVLA;
+
+import java.util.Arrays;
+
+/**
+ * A least-significant-digit radix sort for the draw orders of {@link warpwriter.model.VoxelSeq} and
+ * {@link warpwriter.model.SlopeSeq}. Every comparator in {@link IntComparator#side} and {@link IntComparator#side45}
+ * subtracts some linear function of the right key's x, y, and z fields from the same function of the left key's, so
+ * {@code comparator.compare(k, 0)} is a sort key for k. This computes that key once per voxel and sorts on it with a
+ * few counting passes, 8 bits at a time, instead of making O(n log n) comparator calls like {@link IntSort} and
+ * {@link IntSortIndirect} do. Each pass is stable, so the result is exactly what those merge sorts produce.
+ * <br>
+ * Any other comparator, or a sort of fewer than {@link #MIN_RADIX} items, is passed along to IntSort or
+ * IntSortIndirect. An IntRadixSort holds scratch arrays that grow to fit the largest range it has sorted, so keep one
+ * around for each sequence rather than making a new one per sort; it is not thread-safe.
+ */
+public class IntRadixSort {
+    /**
+     * Ranges shorter than this go to the merge sort, whose binary insertion sort beats counting passes on tiny inputs.
+     */
+    public static final int MIN_RADIX = 64;
+
+    private int[] keysA = new int[0], keysB = new int[0], itemsA = new int[0], itemsB = new int[0];
+    private final int[] counts = new int[256];
+
+    /**
+     * Checks whether the given comparator is one that this can sort with counting passes; that is currently any item
+     * of {@link IntComparator#side} or {@link IntComparator#side45}.
+     * @param comparator an IntComparator that may or may not be linear in x, y, and z
+     * @return true if {@code comparator.compare(left, right)} is known to equal
+     *         {@code comparator.compare(left, 0) - comparator.compare(right, 0)}
+     */
+    public static boolean isLinear(final IntComparator comparator) {
+        for (int i = 0; i < IntComparator.side.length; i++) {
+            if (IntComparator.side[i] == comparator) return true;
+        }
+        for (int i = 0; i < IntComparator.side45.length; i++) {
+            if (IntComparator.side45[i] == comparator) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sorts the keys in {@code items} from {@code start} (inclusive) to {@code end} (exclusive), comparing the items
+     * themselves; this is how {@link warpwriter.model.SlopeSeq} stores its order.
+     * @param items an array of packed x,y,z keys
+     * @param start the first index to sort
+     * @param end the exclusive end of the range to sort
+     * @param comparator how to compare keys; this is fastest with an item of {@link IntComparator#side} or
+     *                   {@link IntComparator#side45}
+     */
+    public void sort(final int[] items, final int start, final int end, final IntComparator comparator) {
+        if (end - start < MIN_RADIX || !isLinear(comparator) || !radix(null, items, start, end, comparator))
+            IntSort.sort(items, start, end, comparator);
+    }
+
+    /**
+     * Sorts the positions in {@code order} from {@code start} (inclusive) to {@code end} (exclusive), comparing the
+     * keys they point to in {@code keys}; this is how {@link warpwriter.model.VoxelSeq} stores its order.
+     * @param keys the key table that items in order are positions in
+     * @param order the positions to sort
+     * @param start the first index to sort
+     * @param end the exclusive end of the range to sort
+     * @param comparator how to compare keys; this is fastest with an item of {@link IntComparator#side} or
+     *                   {@link IntComparator#side45}
+     */
+    public void sort(final int[] keys, final IntVLA order, final int start, final int end,
+                     final IntComparator comparator) {
+        if (end - start < MIN_RADIX || !isLinear(comparator) || !radix(keys, order.items, start, end, comparator))
+            IntSortIndirect.sort(keys, order, start, end, comparator);
+    }
+
+    private void ensureCapacity(final int n) {
+        if (keysA.length < n) {
+            final int cap = Math.max(n, keysA.length + (keysA.length >>> 1));
+            keysA = new int[cap];
+            keysB = new int[cap];
+            itemsA = new int[cap];
+            itemsB = new int[cap];
+        }
+    }
+
+    /**
+     * Does the actual sort, or returns false without changing items if the keys span more than an int can hold, since
+     * then the comparator overflows and isn't a consistent ordering anyway.
+     */
+    private boolean radix(final int[] keys, final int[] items, final int start, final int end,
+                          final IntComparator comparator) {
+        final int n = end - start;
+        ensureCapacity(n);
+        int[] kIn = keysA, kOut = keysB, iIn = itemsA, iOut = itemsB, t;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0, item, k; i < n; i++) {
+            iIn[i] = item = items[start + i];
+            kIn[i] = k = comparator.compare(keys == null ? item : keys[item], 0);
+            if (k < min) min = k;
+            if (k > max) max = k;
+        }
+        final long span = (long) max - min;
+        if (span > Integer.MAX_VALUE)
+            return false;
+        for (int i = 0; i < n; i++) {
+            kIn[i] -= min;
+        }
+        final int[] counts = this.counts;
+        for (int shift = 0, bits = 32 - Integer.numberOfLeadingZeros((int) span); shift < bits; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[kIn[i] >>> shift & 255]++;
+            }
+            // every key has the same digit here, so this pass wouldn't move anything
+            if (counts[kIn[0] >>> shift & 255] == n)
+                continue;
+            for (int d = 0, sum = 0, c; d < 256; d++) {
+                c = counts[d];
+                counts[d] = sum;
+                sum += c;
+            }
+            for (int i = 0, k, p; i < n; i++) {
+                p = counts[(k = kIn[i]) >>> shift & 255]++;
+                kOut[p] = k;
+                iOut[p] = iIn[i];
+            }
+            t = kIn; kIn = kOut; kOut = t;
+            t = iIn; iIn = iOut; iOut = t;
+        }
+        System.arraycopy(iIn, 0, items, start, n);
+        return true;
+    }
+}
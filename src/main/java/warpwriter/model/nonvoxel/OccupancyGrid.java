@@ -0,0 +1,183 @@
+package warpwriter.model.nonvoxel;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A dense 3D bit set recording which (x,y,z) cells are occupied, using the same fused keys as
+ * {@link HashMap3D#fuse(int, int, int)}. Checking a cell is a shift and a mask on one long, instead of a probe into a
+ * hash table, so this is meant to sit next to a sparse structure like {@link warpwriter.model.VoxelSeq} and answer the
+ * many "is my neighbor there?" questions that hollowing and face culling ask.
+ * <br>
+ * Each axis covers a power-of-two extent, starting at 64 cells, and grows when a cell past the current extent is added.
+ * The x-axis runs along the bits of each long, so the x neighbors of a cell are almost always in the same long. A
+ * 64x64x64 grid uses 32KB; a 256x256x256 grid uses 2MB. Fused keys only have 30 meaningful bits; keys with either of
+ * the top two bits set can't be produced by fuse(), and are ignored by {@link #add(int)} and {@link #remove(int)}.
+ */
+public class OccupancyGrid implements Serializable {
+    private static final long serialVersionUID = 0L;
+    /**
+     * The bits, in rows of {@code 1 << xBits - 6} longs; the row for (y,z) starts at {@code (z << yBits | y) << xBits - 6}.
+     */
+    protected long[] words;
+    /**
+     * log2 of the extent on each axis; xBits is always at least 6 so a row is at least one long.
+     */
+    protected int xBits = 6, yBits = 6, zBits = 6;
+    /**
+     * How many cells are occupied.
+     */
+    protected int count;
+
+    /**
+     * Creates an empty OccupancyGrid that covers 64x64x64 cells and will grow as needed.
+     */
+    public OccupancyGrid() {
+        words = new long[1 << yBits + zBits];
+    }
+
+    /**
+     * Creates an empty OccupancyGrid that covers at least the given size on each axis, and will grow as needed.
+     * @param sizeX the initial x size; will be rounded up to a power of two, at least 64
+     * @param sizeY the initial y size; will be rounded up to a power of two, at least 64
+     * @param sizeZ the initial z size; will be rounded up to a power of two, at least 64
+     */
+    public OccupancyGrid(int sizeX, int sizeY, int sizeZ) {
+        xBits = bitsFor(sizeX);
+        yBits = bitsFor(sizeY);
+        zBits = bitsFor(sizeZ);
+        words = new long[1 << yBits + zBits + xBits - 6];
+    }
+
+    /**
+     * Copy constructor.
+     * @param other another OccupancyGrid to copy
+     */
+    public OccupancyGrid(OccupancyGrid other) {
+        xBits = other.xBits;
+        yBits = other.yBits;
+        zBits = other.zBits;
+        count = other.count;
+        words = Arrays.copyOf(other.words, other.words.length);
+    }
+
+    private static int bitsFor(int size) {
+        return Math.max(6, Math.min(10, 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1)));
+    }
+
+    /**
+     * Makes sure cell (x,y,z) is within the grid, growing any axis that is too small and copying the existing bits.
+     */
+    private void ensure(final int x, final int y, final int z) {
+        if (x >>> xBits == 0 && y >>> yBits == 0 && z >>> zBits == 0)
+            return;
+        final int nx = Math.max(xBits, bitsFor(x + 1)), ny = Math.max(yBits, bitsFor(y + 1)),
+                nz = Math.max(zBits, bitsFor(z + 1)), oldRow = 1 << xBits - 6, newRow = 1 << nx - 6;
+        final long[] next = new long[1 << ny + nz + nx - 6];
+        for (int zz = 0, zEnd = 1 << zBits; zz < zEnd; zz++) {
+            for (int yy = 0, yEnd = 1 << yBits; yy < yEnd; yy++) {
+                System.arraycopy(words, (zz << yBits | yy) << xBits - 6, next, (zz << ny | yy) << nx - 6, oldRow);
+            }
+        }
+        words = next;
+        xBits = nx;
+        yBits = ny;
+        zBits = nz;
+    }
+
+    /**
+     * Marks the cell with the given fused key as occupied.
+     * @param key a fused key, as from {@link HashMap3D#fuse(int, int, int)}
+     * @return true if the cell was not already occupied
+     */
+    public boolean add(final int key) {
+        if ((key & 0xC0000000) != 0) return false;
+        final int x = key & 0x3FF, y = key >>> 10 & 0x3FF, z = key >>> 20;
+        ensure(x, y, z);
+        final int i = (z << yBits | y) << xBits - 6 | x >>> 6;
+        final long w = words[i];
+        if ((w & 1L << x) != 0L) return false;
+        words[i] = w | 1L << x;
+        count++;
+        return true;
+    }
+
+    /**
+     * Marks the cell with the given fused key as empty.
+     * @param key a fused key, as from {@link HashMap3D#fuse(int, int, int)}
+     * @return true if the cell was occupied before this call
+     */
+    public boolean remove(final int key) {
+        if ((key & 0xC0000000) != 0) return false;
+        final int x = key & 0x3FF, y = key >>> 10 & 0x3FF, z = key >>> 20;
+        if (x >>> xBits != 0 || y >>> yBits != 0 || z >>> zBits != 0) return false;
+        final int i = (z << yBits | y) << xBits - 6 | x >>> 6;
+        final long w = words[i];
+        if ((w & 1L << x) == 0L) return false;
+        words[i] = w & ~(1L << x);
+        count--;
+        return true;
+    }
+
+    /**
+     * Checks whether the cell with the given fused key is occupied. Keys with either of the top two bits set are never
+     * occupied.
+     * @param key a fused key, as from {@link HashMap3D#fuse(int, int, int)}
+     * @return true if the cell is occupied
+     */
+    public boolean contains(final int key) {
+        if ((key & 0xC0000000) != 0) return false;
+        final int x = key & 0x3FF, y = key >>> 10 & 0x3FF, z = key >>> 20;
+        return x >>> xBits == 0 && y >>> yBits == 0 && z >>> zBits == 0
+                && (words[(z << yBits | y) << xBits - 6 | x >>> 6] & 1L << x) != 0L;
+    }
+
+    /**
+     * Checks whether cell (x,y,z) is occupied; any coordinate that is negative or too large is treated as empty.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return true if the cell is occupied
+     */
+    public boolean contains(final int x, final int y, final int z) {
+        return x >>> xBits == 0 && y >>> yBits == 0 && z >>> zBits == 0
+                && (words[(z << yBits | y) << xBits - 6 | x >>> 6] & 1L << x) != 0L;
+    }
+
+    /**
+     * Checks whether all 6 cells that share a face with (x,y,z) are occupied. This doesn't check (x,y,z) itself.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return true if (x,y,z) is completely enclosed
+     */
+    public boolean interior(final int x, final int y, final int z) {
+        if (x <= 0 || y <= 0 || z <= 0 || x + 1 >>> xBits != 0 || y + 1 >>> yBits != 0 || z + 1 >>> zBits != 0)
+            return false;
+        final int shift = xBits - 6, yStride = 1 << shift, zStride = 1 << yBits + shift,
+                i = (z << yBits | y) << shift | x >>> 6;
+        final long bit = 1L << x;
+        if ((words[i - yStride] & words[i + yStride] & words[i - zStride] & words[i + zStride] & bit) == 0L)
+            return false;
+        // the x neighbors are in the same long unless x is at either end of it
+        final int b = x & 63;
+        if (b != 0 && b != 63)
+            return (words[i] >>> b - 1 & 5L) == 5L;
+        return contains(x - 1, y, z) && contains(x + 1, y, z);
+    }
+
+    /**
+     * Empties every cell, without shrinking the grid.
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+        count = 0;
+    }
+
+    /**
+     * @return how many cells are occupied
+     */
+    public int size() {
+        return count;
+    }
+}
@@ -162,7 +162,7 @@ public class SlopeDraw {
                 z = HashMap3D.extractZ(xyz);
                 final int xPos = (sizeY - y) * 3 + offsetPX;
                 renderer.rectRight(xPos, z * scaleY, scaleX, scaleY, v, x*3, x, y, z);//, x * 2, x, y, z
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, (z+1) * scaleY, scaleX, 1, v, x*3, x, y, z);//, x * 2, x, y, z
             }
         }
@@ -190,7 +190,7 @@ public class SlopeDraw {
                 dep = 50 + (x + y) * 2;
                 renderer.rectLeft(xPos, z * scaleY, scaleX, scaleY, v, dep, x, y, z);
                 renderer.rectRight(xPos + scaleX, z * scaleY, scaleX, scaleY, v, dep, x, y, z);
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, (z+1) * scaleY, scaleX * 2, 1, v, dep, x, y, z);
             }
         }
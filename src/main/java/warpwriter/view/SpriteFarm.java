@@ -0,0 +1,217 @@
+package warpwriter.view;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+import squidpony.annotation.GwtIncompatible;
+import warpwriter.model.AnimatedVoxelSeq;
+import warpwriter.model.IVoxelSeq;
+import warpwriter.model.VoxelSeq;
+import warpwriter.view.color.VoxelColor;
+import warpwriter.view.render.VoxelBufferRenderer;
+import warpwriter.view.render.VoxelPixmapRenderer;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders every combination of frame, rotation, drawing method, and color scheme for one model, spreading the work
+ * over the threads of a ForkJoinPool, and hands each finished image to a {@link Sink}. This is meant for exporting
+ * sprite sheets, where one model might need 8 directions times many frames times several palettes.
+ * <p>
+ * The drawing methods in {@link WarpDraw} sort and rotate the IVoxelSeq they are given, and set the time on the
+ * renderer's {@link VoxelColor}, so they can't share any of those between threads. Here, each piece of work draws a
+ * {@link VoxelSeq#view()} of its frame, which shares the voxels but has its own rotation and sort order, and each
+ * thread has its own {@link VoxelBufferRenderer} (with its own Pixmap) and its own copies of the VoxelColors. The
+ * IModel methods in WarpDraw and {@link VoxelDraw} aren't used, since {@link warpwriter.model.TurnModel} rotates with
+ * the static {@link warpwriter.model.nonvoxel.Rotation#tempTurner}.
+ * <p>
+ * Usage: make a SpriteFarm with a size big enough for the largest frame (see {@link WarpDraw#xLimit(IVoxelSeq)} and
+ * {@link WarpDraw#yLimit(IVoxelSeq)}), then call {@link #render(IVoxelSeq, int[], Drawer[], VoxelColor[], Sink)} as
+ * many times as needed, and {@link #dispose()} when done to free the Pixmaps.
+ */
+@GwtIncompatible
+public class SpriteFarm implements Disposable {
+    /**
+     * A way to draw an IVoxelSeq with a renderer, such as {@code WarpDraw::draw45} or {@code WarpDraw::drawIso}.
+     */
+    public interface Drawer {
+        Pixmap draw(IVoxelSeq seq, VoxelPixmapRenderer renderer);
+    }
+
+    /**
+     * Receives each finished image. This is called from the pool's threads, often several at once, so it must be safe
+     * to call concurrently; the Pixmap belongs to the calling thread and is drawn over once this returns, so anything
+     * that should be kept (such as a PNG8 encoding of it) must be done before returning.
+     */
+    public interface Sink {
+        /**
+         * @param frame the frame of the animation, or 0 for a model that isn't animated
+         * @param rotation the rotation the model was drawn with, between 0 and 23 inclusive
+         * @param drawer the index of the Drawer used, in the array given to render()
+         * @param color the index of the VoxelColor used, in the array given to render()
+         * @param pixmap the finished image; only valid until this returns
+         */
+        void accept(int frame, int rotation, int drawer, int color, Pixmap pixmap);
+    }
+
+    protected final int width, height;
+    protected ForkJoinPool pool;
+    public boolean outline = true, easing = false;
+    protected final ThreadLocal<VoxelBufferRenderer> renderers = new ThreadLocal<>();
+    /**
+     * Every renderer made so far, by any thread, so they can all be disposed.
+     */
+    protected final ArrayList<VoxelBufferRenderer> allRenderers = new ArrayList<>();
+
+    /**
+     * Makes a SpriteFarm that uses the common ForkJoinPool.
+     * @param width the width of each image; must be big enough for the model
+     * @param height the height of each image; must be big enough for the model
+     */
+    public SpriteFarm(int width, int height) {
+        this(width, height, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param width the width of each image; must be big enough for the model
+     * @param height the height of each image; must be big enough for the model
+     * @param pool the ForkJoinPool to render on
+     */
+    public SpriteFarm(int width, int height, ForkJoinPool pool) {
+        this.width = width;
+        this.height = height;
+        this.pool = pool;
+    }
+
+    /**
+     * Renders seq from each of the given rotations with each Drawer and each VoxelColor, for every frame if seq is an
+     * {@link AnimatedVoxelSeq}, and passes each image to sink; returns when all of them are done. Nothing in seq or
+     * colors is changed, except that each frame's {@link VoxelSeq#hollow()} is called first; seq must not be changed
+     * by other threads while this runs.
+     * @param seq a VoxelSeq or AnimatedVoxelSeq
+     * @param rotations rotation indices between 0 and 23 inclusive, as used by {@link IVoxelSeq#rotate(int)}
+     * @param drawers how to draw each rotation, such as {@code WarpDraw::draw} and {@code WarpDraw::draw45}
+     * @param colors the color schemes to draw with; each thread uses its own copies
+     * @param sink receives every image; see {@link Sink} for its thread-safety requirements
+     */
+    public void render(IVoxelSeq seq, int[] rotations, Drawer[] drawers, VoxelColor[] colors, Sink sink) {
+        final VoxelSeq[] frames;
+        if (seq instanceof AnimatedVoxelSeq)
+            frames = ((AnimatedVoxelSeq) seq).seqs;
+        else if (seq instanceof VoxelSeq)
+            frames = new VoxelSeq[]{(VoxelSeq) seq};
+        else
+            throw new IllegalArgumentException("SpriteFarm can only render a VoxelSeq or AnimatedVoxelSeq");
+        for (int i = 0; i < frames.length; i++) {
+            frames[i].hollow();
+        }
+        final Job job = new Job(frames, rotations, drawers, colors, sink);
+        final int count = frames.length * rotations.length * drawers.length;
+        if (count > 0)
+            pool.invoke(new RenderTask(job, 0, count));
+    }
+
+    /**
+     * Gets the calling thread's renderer, making it (and its Pixmap) the first time.
+     */
+    protected VoxelBufferRenderer renderer() {
+        VoxelBufferRenderer renderer = renderers.get();
+        if (renderer == null) {
+            renderer = new VoxelBufferRenderer().set(new Pixmap(width, height, Pixmap.Format.RGBA8888));
+            renderers.set(renderer);
+            synchronized (allRenderers) {
+                allRenderers.add(renderer);
+            }
+        }
+        renderer.outline = outline;
+        renderer.easing = easing;
+        return renderer;
+    }
+
+    /**
+     * Disposes the Pixmaps of every thread's renderer; this SpriteFarm can't be used afterwards.
+     */
+    @Override
+    public void dispose() {
+        synchronized (allRenderers) {
+            for (int i = 0; i < allRenderers.size(); i++) {
+                allRenderers.get(i).pixmap().dispose();
+            }
+            allRenderers.clear();
+        }
+    }
+
+    /**
+     * Everything one call to render() needs, plus each thread's copies of the colors for that call.
+     */
+    protected static final class Job {
+        final VoxelSeq[] frames;
+        final int[] rotations;
+        final Drawer[] drawers;
+        final VoxelColor[] colors;
+        final Sink sink;
+        final ThreadLocal<VoxelColor[]> colorCopies = new ThreadLocal<>();
+
+        Job(VoxelSeq[] frames, int[] rotations, Drawer[] drawers, VoxelColor[] colors, Sink sink) {
+            this.frames = frames;
+            this.rotations = rotations;
+            this.drawers = drawers;
+            this.colors = colors;
+            this.sink = sink;
+        }
+
+        VoxelColor[] colors() {
+            VoxelColor[] copies = colorCopies.get();
+            if (copies == null) {
+                copies = new VoxelColor[colors.length];
+                for (int i = 0; i < colors.length; i++) {
+                    copies[i] = colors[i].copy();
+                }
+                colorCopies.set(copies);
+            }
+            return copies;
+        }
+    }
+
+    /**
+     * Draws one frame from one rotation with one Drawer, in every color.
+     */
+    protected void renderOne(Job job, int index) {
+        final int d = index % job.drawers.length, rest = index / job.drawers.length,
+                r = rest % job.rotations.length, f = rest / job.rotations.length;
+        final VoxelSeq view = job.frames[f].view();
+        view.rotate(job.rotations[r]);
+        final VoxelBufferRenderer renderer = renderer();
+        final VoxelColor[] colors = job.colors();
+        for (int c = 0; c < colors.length; c++) {
+            renderer.set(colors[c].time(f));
+            job.drawers[d].draw(view, renderer);
+            job.sink.accept(f, job.rotations[r], d, c, renderer.pixmap());
+        }
+    }
+
+    /**
+     * Renders a range of (frame, rotation, drawer) combinations, splitting it in half until only one is left.
+     */
+    protected final class RenderTask extends RecursiveAction {
+        private final Job job;
+        private final int start, end;
+
+        RenderTask(Job job, int start, int end) {
+            this.job = job;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                renderOne(job, start);
+                return;
+            }
+            final int mid = start + end >>> 1;
+            invokeAll(new RenderTask(job, start, mid), new RenderTask(job, mid, end));
+        }
+    }
+}
@@ -609,7 +609,7 @@ public class VoxelDraw {
                 z = HashMap3D.extractZ(xyz);
                 final int xPos = (sizeY - y) * 3 + offsetPX;
                 renderer.rectRight(xPos, z * scaleY, scaleX, scaleY, v, x*3, x, y, z);//, x * 2, x, y, z
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, (z+1) * scaleY, scaleX, 1, v, x*3, x, y, z);//, x * 2, x, y, z
             }
         }
@@ -637,7 +637,7 @@ public class VoxelDraw {
                 dep = 50 + (x + y) * 2;
                 renderer.rectLeft(xPos, z * scaleY, scaleX, scaleY, v, dep, x, y, z);
                 renderer.rectRight(xPos + scaleX, z * scaleY, scaleX, scaleY, v, dep, x, y, z);
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, (z+1) * scaleY, scaleX * 2, 1, v, dep, x, y, z);
             }
         }
@@ -725,7 +725,7 @@ public class VoxelDraw {
 				renderer.drawRightTriangleRightFace(xPos + 2, yPos, v, x, y, z);
 				renderer.drawLeftTriangleLeftFace(xPos, yPos, v, x, y, z);
 				renderer.drawRightTriangleLeftFace(xPos, yPos + 2, v, x, y, z);
-				if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0) {
+				if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0) {
 					renderer.drawLeftTriangleVerticalFace(xPos, yPos + 4, v, x, y, z);
 					renderer.drawRightTriangleVerticalFace(xPos + 2, yPos + 4, v, x, y, z);
 				}
@@ -474,7 +474,7 @@ public class WarpDraw {
                 z = HashMap3D.extractZ(xyz);
                 final int xPos = (sizeY - y) * 3 + offsetPX;
                 renderer.rectRight(xPos, z * 3 + 1, 3, 3, v, 256 + x, x, y, z);
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, z * 3 + 4, 3, 1, v, 256 + x, x, y, z);
             }
         }
@@ -503,7 +503,7 @@ public class WarpDraw {
                 final int xPos = (sizeY + x - y) * 2 + 1;
                 renderer.rectLeft(xPos, z * 3 + 1, 2, 3, v, dep, x, y, z);
                 renderer.rectRight(xPos + 2, z * 3 + 1, 2, 3, v, dep, x, y, z);
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, z * 3 + 4, 4, 1, v, dep, x, y, z);
             }
         }
@@ -626,7 +626,7 @@ public class WarpDraw {
                 final int xPos = (sizeY - y) * 3 + offsetPX;
                 renderer.rect(xPos, 0, 3, 1, shadowColor, 0, -99999);
                 renderer.rectRight(xPos, z * 3 + 1, 3, 3, v, 256 + x, x, y, z);
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, z * 3 + 4, 3, 1, v, 256 + x, x, y, z);
 
             }
@@ -655,7 +655,7 @@ public class WarpDraw {
                 renderer.rect(xPos, 0, 4, 1, shadowColor, 0, -99999);
                 renderer.rectLeft(xPos, z * 3 + 1, 2, 3, v, dep, x, y, z);
                 renderer.rectRight(xPos + 2, z * 3 + 1, 2, 3, v, dep, x, y, z);
-                if (z >= sizeZ - 1 || seq.getRotated(x, y, z + 1) == 0)
+                if (z >= sizeZ - 1 || seq.facesAtHollow(i, IVoxelSeq.FACE_Z_POS) != 0)
                     renderer.rectVertical(xPos, z * 3 + 4, 4, 1, v, dep, x, y, z);
             }
         }
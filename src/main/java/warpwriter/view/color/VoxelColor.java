@@ -291,6 +291,15 @@ public class VoxelColor implements IVoxelColor {
         return this;
     }
 
+    /**
+     * Makes a new VoxelColor with the same light direction, time, and Colorizer as this one, so each thread rendering
+     * with the same settings can have its own (the time changes as frames are drawn).
+     * @return a new VoxelColor with the same settings as this
+     */
+    public VoxelColor copy() {
+        return new VoxelColor().direction(lightDirection).time(time).colorizer(colorizer);
+    }
+
     public static int mixLightly(int baseColor, int mixColor)
     {
         final int
@@ -494,34 +503,51 @@ public class VoxelColor implements IVoxelColor {
     
     public int spotColor(byte voxel, int x, int y, int z, IVoxelSeq seq)
     {
-        final byte 
-                xh = seq.getRotated(x + 1, y, z),
-                yh = seq.getRotated(x, y + 1, z),
-                zh = seq.getRotated(x, y, z + 1),
-                zl = seq.getRotated(x, y, z - 1);
-        if(zh == 0)
+        return spotColor(voxel, x, y, z,
+                (seq.getRotated(x + 1, y, z) == 0 ? IVoxelSeq.FACE_X_POS : 0)
+                        | (seq.getRotated(x, y + 1, z) == 0 ? IVoxelSeq.FACE_Y_POS : 0)
+                        | (seq.getRotated(x, y, z + 1) == 0 ? IVoxelSeq.FACE_Z_POS : 0)
+                        | (seq.getRotated(x, y, z - 1) == 0 ? IVoxelSeq.FACE_Z_NEG : 0));
+    }
+
+    /**
+     * Like {@link #spotColor(byte, int, int, int, IVoxelSeq)}, but takes the exposed faces of the voxel as a mask, such
+     * as the one {@link IVoxelSeq#facesAtHollow(int)} caches, instead of looking up its neighbors. Only the
+     * {@link IVoxelSeq#FACE_X_POS}, {@link IVoxelSeq#FACE_Y_POS}, {@link IVoxelSeq#FACE_Z_POS} and
+     * {@link IVoxelSeq#FACE_Z_NEG} bits are used.
+     * @param voxel the color index of the voxel
+     * @param x the rotated x position of the voxel
+     * @param y the rotated y position of the voxel
+     * @param z the rotated z position of the voxel
+     * @param faces a mask of the FACE_ constants in IVoxelSeq, with a bit set for each side that touches empty space
+     * @return an RGBA8888 color
+     */
+    public int spotColor(byte voxel, int x, int y, int z, int faces)
+    {
+        final boolean xOpen = (faces & IVoxelSeq.FACE_X_POS) != 0, yOpen = (faces & IVoxelSeq.FACE_Y_POS) != 0;
+        if((faces & IVoxelSeq.FACE_Z_POS) != 0)
         {
-            if(xh == 0 && yh != 0)
+            if(xOpen && !yOpen)
                 return mixLightly(leftFace(voxel, x, y, z), verticalFace(voxel, x, y, z));
-            else if(yh == 0 && xh != 0)
+            else if(yOpen && !xOpen)
                 return mixLightly(rightFace(voxel, x, y, z), verticalFace(voxel, x, y, z));
             else
                 return verticalFace(voxel, x, y, z);
         }
-        else if(zl == 0)
+        else if((faces & IVoxelSeq.FACE_Z_NEG) != 0)
         {
-            if(xh == 0 && yh != 0)
+            if(xOpen && !yOpen)
                 return mixLightly(leftFace(voxel, x, y, z), reverseVerticalFace(voxel, x, y, z));
-            else if(yh == 0 && xh != 0)
+            else if(yOpen && !xOpen)
                 return mixLightly(rightFace(voxel, x, y, z), reverseVerticalFace(voxel, x, y, z));
             else
                 return reverseVerticalFace(voxel, x, y, z);
         }
         else 
         {
-            if(xh == 0 && yh != 0)
+            if(xOpen && !yOpen)
                 return leftFace(voxel, x, y, z);
-            else if(yh == 0 && xh != 0)
+            else if(yOpen && !xOpen)
                 return rightFace(voxel, x, y, z);
             else
                 return mixEvenly(leftFace(voxel, x, y, z), rightFace(voxel, x, y, z));
@@ -590,6 +616,11 @@ public class VoxelColor implements IVoxelColor {
             return darkSide;
         }
 
+        @Override
+        public VoxelColor copy() {
+            return new VoxelColor3D().set(darkSide).direction(lightDirection).time(time).colorizer(colorizer);
+        }
+
         @Override
         public int verticalFace(byte voxel) {
             switch (lightDirection) {
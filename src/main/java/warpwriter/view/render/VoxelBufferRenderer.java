@@ -0,0 +1,423 @@
+package warpwriter.view.render;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link VoxelPixmapRenderer} that draws into flat {@code int[]} buffers instead of 2D arrays and Pixmap calls, so it
+ * can be used anywhere a VoxelPixmapRenderer is (such as {@link warpwriter.view.WarpDraw} or
+ * {@link warpwriter.model.SlopeBox#drawIso}) but spends much less time per frame when rendering many frames in a row.
+ * Every buffer is indexed by {@code y * width() + x}. The color, outline, and depth buffers use the same coordinates as
+ * the 2D arrays in VoxelPixmapRenderer, while {@link #image()} holds the finished RGBA8888 image in the same row order
+ * as a Pixmap, so it can be copied into a Pixmap or any other ByteBuffer in one bulk put with
+ * {@link #copyTo(ByteBuffer)}.
+ * <p>
+ * This doesn't need a Pixmap at all; {@link #VoxelBufferRenderer(int, int)} makes a headless renderer, and
+ * {@link #blitImage(int, int, int)} renders a frame and returns the image buffer. If a Pixmap was given with
+ * {@link #set(Pixmap)}, {@link #blit(int, int, int)} also copies the image into it and returns it. After each blit,
+ * only the part of each buffer that was drawn to is cleared, and nothing is allocated. The 2D arrays inherited from
+ * VoxelPixmapRenderer ({@link #working}, {@link #render}, {@link #depths}, and {@link #outlines}) are not used, and
+ * stay null.
+ * <p>
+ * Colors are written to the image as-is, without blending, which matches VoxelPixmapRenderer for opaque colors.
+ */
+public class VoxelBufferRenderer extends VoxelPixmapRenderer {
+    protected int width, height;
+    /**
+     * The same data as {@link #working}, {@link #render}, {@link #depths}, and {@link #outlines} in the superclass,
+     * but flattened; the index for x,y is {@code y * width + x}.
+     */
+    protected int[] workingBuffer, renderBuffer, depthBuffer, outlineBuffer;
+    /**
+     * The finished image, as RGBA8888 ints in Pixmap order (the top row first); written by blit and the methods that
+     * draw directly, such as {@link #rect(int, int, int, int, int)}.
+     */
+    protected int[] image;
+    /**
+     * The area of the working buffers that has been drawn to since the last blit, inclusive on both ends; empty when
+     * dirtyMinX is greater than dirtyMaxX.
+     */
+    protected int dirtyMinX, dirtyMinY, dirtyMaxX = -1, dirtyMaxY = -1;
+    /**
+     * An IntBuffer view of the last ByteBuffer given to {@link #copyTo(ByteBuffer)}, reused while that ByteBuffer and
+     * its position stay the same.
+     */
+    private ByteBuffer lastTarget;
+    private int lastPosition;
+    private IntBuffer targetView;
+
+    /**
+     * Makes a renderer without any buffers yet; call {@link #set(Pixmap)} or {@link #setSize(int, int)} before drawing.
+     */
+    public VoxelBufferRenderer() {
+    }
+
+    /**
+     * Makes a headless renderer that draws into buffers of the given size, with no Pixmap.
+     * @param width the width of the image, in pixels
+     * @param height the height of the image, in pixels
+     */
+    public VoxelBufferRenderer(int width, int height) {
+        setSize(width, height);
+    }
+
+    /**
+     * Uses pixmap as the target for {@link #blit(int, int, int)}, and sizes the buffers to match it.
+     * @param pixmap a Pixmap that should use RGBA8888 format
+     * @return this, for chaining
+     */
+    @Override
+    public VoxelBufferRenderer set(Pixmap pixmap) {
+        this.pixmap = pixmap;
+        return setSize(pixmap.getWidth(), pixmap.getHeight());
+    }
+
+    /**
+     * Changes the size of the buffers and clears them; existing buffers are reused if they are large enough.
+     * @param width the width of the image, in pixels
+     * @param height the height of the image, in pixels
+     * @return this, for chaining
+     */
+    public VoxelBufferRenderer setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        final int size = width * height;
+        if (image == null || image.length < size) {
+            workingBuffer = new int[size];
+            renderBuffer = new int[size];
+            depthBuffer = new int[size];
+            outlineBuffer = new int[size];
+            image = new int[size];
+        } else {
+            Arrays.fill(workingBuffer, 0);
+            Arrays.fill(renderBuffer, 0);
+            Arrays.fill(depthBuffer, 0);
+            Arrays.fill(outlineBuffer, 0);
+            Arrays.fill(image, 0);
+        }
+        dirtyMinX = dirtyMinY = 0;
+        dirtyMaxX = dirtyMaxY = -1;
+        return this;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @return the finished image as RGBA8888 ints, indexed by {@code y * width() + x} with the top row first; this is
+     * the buffer itself, not a copy, and it may be longer than {@code width() * height()}
+     */
+    public int[] image() {
+        return image;
+    }
+
+    /**
+     * Fills a rectangle of the image with one color, clipping it to the image.
+     */
+    protected void fillImage(int x, int y, int sizeX, int sizeY, int color) {
+        final int x1 = Math.min(width, x + sizeX), y1 = Math.min(height, y + sizeY);
+        x = Math.max(0, x);
+        y = Math.max(0, y);
+        if (x >= x1)
+            return;
+        for (; y < y1; y++) {
+            Arrays.fill(image, y * width + x, y * width + x1, color);
+        }
+    }
+
+    /**
+     * Grows the dirty area to include the given box, which is inclusive on both ends and already clipped.
+     */
+    private void touch(int x0, int y0, int x1, int y1) {
+        if (dirtyMinX > dirtyMaxX) {
+            dirtyMinX = x0;
+            dirtyMinY = y0;
+            dirtyMaxX = x1;
+            dirtyMaxY = y1;
+        } else {
+            if (x0 < dirtyMinX) dirtyMinX = x0;
+            if (y0 < dirtyMinY) dirtyMinY = y0;
+            if (x1 > dirtyMaxX) dirtyMaxX = x1;
+            if (y1 > dirtyMaxY) dirtyMaxY = y1;
+        }
+    }
+
+    @Override
+    public VoxelBufferRenderer rect(int x, int y, int sizeX, int sizeY, int color) {
+        fillImage(scaleX * (flipX ? -x : x) + offsetX,
+                scaleY * (flipY ? -y : y) + offsetY,
+                sizeX * scaleX,
+                sizeY * scaleY,
+                transparency(color));
+        return this;
+    }
+
+    @Override
+    public VoxelBufferRenderer rect(int x, int y, int sizeX, int sizeY, int color, int outlineColor, int depth) {
+        x = scaleX * (flipX ? -x : x) + offsetX;
+        y = scaleY * (flipY ? -y : y) + offsetY;
+        final int x1 = Math.min(width, x + sizeX * scaleX), y1 = Math.min(height, y + sizeY * scaleY);
+        x = Math.max(0, x);
+        y = Math.max(0, y);
+        if (x >= x1 || y >= y1)
+            return this;
+        for (int yy = y; yy < y1; yy++) {
+            final int from = yy * width + x, to = yy * width + x1;
+            Arrays.fill(workingBuffer, from, to, color);
+            Arrays.fill(depthBuffer, from, to, depth);
+            Arrays.fill(outlineBuffer, from, to, outlineColor);
+        }
+        touch(x, y, x1 - 1, y1 - 1);
+        return this;
+    }
+
+    @Override
+    public VoxelBufferRenderer select(int px, int py, byte voxel, double[] shape, int depth) {
+        px = (flipX ? -px : px) + offsetX;
+        py = (flipY ? -py : py) + offsetY;
+        final int xStart = Math.max(0, -px), yStart = Math.max(0, -py),
+                xs = Math.min(4, width - px), ys = Math.min(4, height - py);
+        if (xStart >= xs || yStart >= ys)
+            return this;
+        final int outline = color.colorizer().dark(voxel);
+        for (int y = yStart; y < ys; y++) {
+            for (int x = xStart, i = (py + y) * width + px + x; x < xs; x++, i++) {
+                if (shape[3 - y << 2 | x] >= 6.0) continue;
+                workingBuffer[i] = color.colorizer().dimmer((int) (shape[3 - y << 2 | x] + 0.5 * (px + x + py + y & 1)
+                        + 0.4 * (px + x & py + y + 1 & 1)), voxel);
+                depthBuffer[i] = depth;
+                outlineBuffer[i] = outline;
+            }
+        }
+        touch(px + xStart, py + yStart, px + xs - 1, py + ys - 1);
+        return this;
+    }
+
+    @Override
+    public int getPixel(int x, int y) {
+        x = x * scaleX + offsetX;
+        y = y * scaleY + offsetY;
+        return (x >= 0 && x < width && y >= 0 && y < height) ? image[y * width + x] : 0;
+    }
+
+    @Override
+    public int depth(int x, int y) {
+        return (x >= 0 && x < width && y >= 0 && y < height) ? depthBuffer[y * width + x] : 0;
+    }
+
+    @Override
+    public VoxelBufferRenderer clear() {
+        Arrays.fill(image, 0, width * height, 0);
+        clearDirty();
+        if (pixmap != null)
+            copyTo(pixmap.getPixels());
+        return this;
+    }
+
+    /**
+     * Zeroes the working, depth, outline, and render buffers inside the dirty area (and the one-pixel border outlines
+     * can reach), then marks nothing as dirty.
+     */
+    protected void clearDirty() {
+        if (dirtyMinX > dirtyMaxX)
+            return;
+        final int x0 = Math.max(0, dirtyMinX - 1), x1 = Math.min(width, dirtyMaxX + 2),
+                y0 = Math.max(0, dirtyMinY - 1), y1 = Math.min(height, dirtyMaxY + 2);
+        for (int y = y0; y < y1; y++) {
+            final int from = y * width + x0, to = y * width + x1;
+            Arrays.fill(workingBuffer, from, to, 0);
+            Arrays.fill(renderBuffer, from, to, 0);
+            Arrays.fill(depthBuffer, from, to, 0);
+            Arrays.fill(outlineBuffer, from, to, 0);
+        }
+        dirtyMinX = dirtyMinY = 0;
+        dirtyMaxX = dirtyMaxY = -1;
+    }
+
+    /**
+     * Renders everything drawn since the last blit into {@link #image()}, then copies the image into the Pixmap given
+     * to {@link #set(Pixmap)}, if there is one. This does the same work as {@link VoxelPixmapRenderer#blit(int, int, int)}.
+     * @param threshold how much farther away a neighboring pixel must be to get an outline drawn between it and this
+     * @param pixelWidth the width of the area that was drawn to, before scaling
+     * @param pixelHeight the height of the area that was drawn to, before scaling
+     * @return the Pixmap this draws into, or null if this is headless
+     */
+    @Override
+    public Pixmap blit(int threshold, int pixelWidth, int pixelHeight) {
+        blitImage(threshold, pixelWidth, pixelHeight);
+        if (pixmap != null)
+            copyTo(pixmap.getPixels());
+        return pixmap;
+    }
+
+    /**
+     * Renders everything drawn since the last blit into {@link #image()}, drawing outlines and easing if those are
+     * enabled, and clears what was drawn so the next frame can start. Doesn't touch any Pixmap.
+     * @param threshold how much farther away a neighboring pixel must be to get an outline drawn between it and this
+     * @param pixelWidth the width of the area that was drawn to, before scaling
+     * @param pixelHeight the height of the area that was drawn to, before scaling
+     * @return the image buffer, as RGBA8888 ints indexed by {@code y * width() + x} with the top row first
+     */
+    public int[] blitImage(int threshold, int pixelWidth, int pixelHeight) {
+        final int w = width;
+        final int[] working = workingBuffer, render = renderBuffer, depths = depthBuffer, outlines = outlineBuffer;
+        Arrays.fill(image, 0, w * height, 0);
+        final int xSize = Math.min(pixelWidth, w) - 1, ySize = Math.min(pixelHeight, height) - 1;
+        // everything outside the dirty area is already 0 in every buffer
+        final int minX = dirtyMinX, minY = dirtyMinY,
+                maxX = Math.min(dirtyMaxX, xSize), maxY = Math.min(dirtyMaxY, ySize);
+        if (minX > maxX || minY > maxY) {
+            clearDirty();
+            return image;
+        }
+        // VoxelPixmapRenderer copies rows 0 through ySize - 1 only, so row ySize can hold outlines but nothing else
+        for (int y = minY, yEnd = Math.min(maxY, ySize - 1); y <= yEnd; y++) {
+            System.arraycopy(working, y * w + minX, render, y * w + minX, maxX - minX + 1);
+        }
+        if (outline) {
+            int o, depth;
+            // columns go in the outer loop, like VoxelPixmapRenderer, because later outlines overwrite earlier ones
+            final int yStart = Math.max(1, minY), yEnd = Math.min(maxY, ySize - 1);
+            for (int x = Math.max(1, minX), xEnd = Math.min(maxX, xSize - 1); x <= xEnd; x++) {
+                for (int y = yStart, i = y * w + x; y <= yEnd; y++, i += w) {
+                    if ((o = outlines[i]) != 0) {
+                        depth = depths[i];
+                        final int l = i - 1, r = i + 1, d = i - w, u = i + w;
+                        if (outlines[l] == 0 && outlines[d] == 0) {
+                            render[l] = o;
+                            render[d] = o;
+                            render[i] = o;
+                        } else if (outlines[r] == 0 && outlines[d] == 0) {
+                            render[r] = o;
+                            render[d] = o;
+                            render[i] = o;
+                        } else if (outlines[l] == 0 && outlines[u] == 0) {
+                            render[l] = o;
+                            render[u] = o;
+                            render[i] = o;
+                        } else if (outlines[r] == 0 && outlines[u] == 0) {
+                            render[r] = o;
+                            render[u] = o;
+                            render[i] = o;
+                        } else {
+                            if (outlines[l] == 0 || depths[l] < depth - threshold) {
+                                render[l] = o;
+                            }
+                            if (outlines[r] == 0 || depths[r] < depth - threshold) {
+                                render[r] = o;
+                            }
+                            if (outlines[d] == 0 || depths[d] < depth - threshold) {
+                                render[d] = o;
+                            }
+                            if (outlines[u] == 0 || depths[u] < depth - threshold) {
+                                render[u] = o;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // outlines can reach one pixel past the dirty area
+        final int x0 = Math.max(0, minX - 1), x1 = Math.min(xSize, maxX + 1),
+                y0 = Math.max(0, minY - 1), y1 = Math.min(ySize, maxY + 1),
+                pmh = height - 1;
+        int c;
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0, i = y * w + x; x <= x1; x++, i++) {
+                if ((c = render[i]) != 0)
+                    fillImage(x * scaleX + offsetX, pmh - (y * scaleY) + offsetY, scaleX, scaleY, c);
+            }
+        }
+
+        if (easing) {
+            int o, a, b, cc, d, e, f, g, h;
+            int tgt, lo;
+            for (int y = Math.max(1, y0), yEnd = Math.min(y1, ySize - 1); y <= yEnd; y++) {
+                for (int x = Math.max(1, x0), xEnd = Math.min(x1, xSize - 1), i = y * w + x; x <= xEnd; x++, i++) {
+                    o = render[i];
+                    if (o != 0) {
+                        a = render[i - w - 1];
+                        b = render[i - w + 1];
+                        cc = render[i + w - 1];
+                        d = render[i + w + 1];
+                        e = render[i - 1];
+                        f = render[i + 1];
+                        g = render[i - w];
+                        h = render[i + w];
+                        if (a != 0 && b != 0 && cc != 0 && d != 0 && e != 0 && f != 0 && g != 0 && h != 0) {
+                            tgt = 0;
+                            lo = lightness(o);
+                            if (lightness(a) < lo && count(a, a, b, cc, d, e, f, g, h) >= 4)
+                                tgt = a;
+                            else if (lightness(b) < lo && count(b, a, b, cc, d, e, f, g, h) >= 4)
+                                tgt = b;
+                            else if (lightness(cc) < lo && count(cc, a, b, cc, d, e, f, g, h) >= 4)
+                                tgt = cc;
+                            else if (lightness(d) < lo && count(d, a, b, cc, d, e, f, g, h) >= 4)
+                                tgt = d;
+                            if (tgt != 0)
+                                fillImage(x * scaleX + offsetX, pmh - (y * scaleY) + offsetY, scaleX, scaleY, tgt);
+                        }
+                    }
+                }
+            }
+        }
+        clearDirty();
+        return image;
+    }
+
+    private static int lightness(int color) {
+        return (color >>> 24) + (color >>> 16 & 0xFF) + (color >>> 8 & 0xFF);
+    }
+
+    /**
+     * Counts how many of the 8 neighbors a through h are equal to color.
+     */
+    private static int count(int color, int a, int b, int c, int d, int e, int f, int g, int h) {
+        return (color == a ? 1 : 0) + (color == b ? 1 : 0) + (color == c ? 1 : 0) + (color == d ? 1 : 0)
+                + (color == e ? 1 : 0) + (color == f ? 1 : 0) + (color == g ? 1 : 0) + (color == h ? 1 : 0);
+    }
+
+    /**
+     * Copies {@link #image()} into buffer as RGBA8888 bytes, the format Pixmap uses, starting at the buffer's position
+     * and writing {@code width() * height() * 4} bytes. The buffer's position, limit, and byte order are not changed.
+     * @param buffer a ByteBuffer with room for the whole image, such as {@link Pixmap#getPixels()}
+     * @return buffer, for chaining
+     */
+    public ByteBuffer copyTo(ByteBuffer buffer) {
+        if (buffer != lastTarget || buffer.position() != lastPosition || targetView == null) {
+            lastTarget = buffer;
+            lastPosition = buffer.position();
+            targetView = buffer.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        }
+        targetView.clear();
+        targetView.put(image, 0, width * height);
+        return buffer;
+    }
+
+    @Override
+    public VoxelBufferRenderer drawLeftTriangle(int x, int y, int color) {
+        color = transparency(color);
+        fillImage((x + 1) * scaleX + offsetX, y * scaleY + offsetY, scaleX, scaleY * 3, color);
+        fillImage(x * scaleX + offsetX, (y + 1) * scaleY + offsetY * scaleY, scaleX, scaleY, color);
+        return this;
+    }
+
+    @Override
+    public VoxelBufferRenderer drawRightTriangle(int x, int y, int color) {
+        color = transparency(color);
+        fillImage(x * scaleX + offsetX, y * scaleY + offsetY, scaleX, scaleY * 3, color);
+        fillImage((x + 1) * scaleX + offsetX, (y + 1) * scaleY + offsetY, scaleX, scaleY, color);
+        return this;
+    }
+}
@@ -198,7 +198,7 @@ public class VoxelPixmapRenderer implements IRectangleRenderer, ITriangleRendere
         return (color >>> 24) + (color >>> 16 & 0xFF) + (color >>> 8 & 0xFF);
     }
 
-    private static final IntIntMap counts = new IntIntMap(9);
+    private final IntIntMap counts = new IntIntMap(9);
 
     public Pixmap blit(int threshold, int pixelWidth, int pixelHeight) {
         pixmap.setColor(0);
@@ -144,7 +144,8 @@ public class VoxelSpotRenderer implements Disposable {
                 z = HashMap3D.extractZ(xyz);
 //                dep = 3 * (x + y + z) + 256;
                 final float xPos = (sizeY - y + x) * scaleX + 1, yPos = (z - x - y + sizeX + sizeY) * scaleY + 1;
-                spot(xPos, yPos, color.spotColor(v, x, y, z, seq));
+                spot(xPos, yPos, color.spotColor(v, x, y, z, seq.facesAtHollow(i,
+                        IVoxelSeq.FACE_X_POS | IVoxelSeq.FACE_Y_POS | IVoxelSeq.FACE_Z_POS | IVoxelSeq.FACE_Z_NEG)));
             }
         }
     }
@@ -0,0 +1,144 @@
+import warpwriter.model.color.Colorizer;
+import warpwriter.view.color.VoxelColor;
+
+/**
+ * Times VoxelColor.verticalFace, leftFace and rightFace (which go through Colorizer.dimmer) and Colorizer.colorize,
+ * using the lookup tables Colorizer now builds, against a copy of each Colorizer that steps through brighten() and
+ * darken() one shade at a time the way colorize() and the default dimmer() used to. Also checks that both give the
+ * same results for every voxel and brightness. Most of the bonus Colorizers already have their own table-based
+ * dimmer(), so for them only the colorize columns should change; Aurora and Rinsed use the default dimmer(). This is a
+ * plain timing loop with a warm-up pass, not a JMH harness, so treat small differences with suspicion.
+ */
+public class ColorizerBenchmark {
+    private static final int WARMUP = 2, ROUNDS = 5, PASSES = 4000;
+    /**
+     * Keeps the results of the timed loops alive so they can't be optimized away.
+     */
+    public static volatile int blackhole;
+
+    public static void main(String[] args) throws NoSuchMethodException {
+        final String[] names = {"Aurora", "AuroraBonus", "FlesurrectBonus", "WardBonus", "TwirlBonus", "Rinsed"};
+        final Colorizer[] colorizers = {Colorizer.AuroraColorizer, Colorizer.AuroraBonusColorizer,
+                Colorizer.FlesurrectBonusColorizer, Colorizer.WardBonusColorizer, Colorizer.TwirlBonusColorizer,
+                Colorizer.RinsedColorizer};
+        System.out.printf("%-16s %14s %14s %8s %14s %14s %8s %6s%n", "colorizer", "faces ns/loop", "faces ns/table",
+                "speedup", "colorize loop", "colorize table", "speedup", "same?");
+        for (int c = 0; c < colorizers.length; c++) {
+            final Colorizer fast = colorizers[c], slow = looping(fast);
+            boolean same = true;
+            for (int v = 0; v < 256 && same; v++) {
+                for (int b = -9; b <= 9; b++) {
+                    same &= fast.colorize((byte) v, b) == slow.colorize((byte) v, b);
+                    same &= fast.dimmer(b, (byte) v) == slow.dimmer(b, (byte) v);
+                }
+            }
+            final VoxelColor slowColor = new VoxelColor().colorizer(slow), fastColor = new VoxelColor().colorizer(fast);
+            long slowFaces = 0L, fastFaces = 0L, slowColorize = 0L, fastColorize = 0L;
+            for (int w = 0; w < 2; w++) {
+                final int rounds = w == 0 ? WARMUP : ROUNDS;
+                slowFaces = fastFaces = slowColorize = fastColorize = 0L;
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    blackhole += faces(slowColor);
+                    slowFaces += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    blackhole += faces(fastColor);
+                    fastFaces += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    blackhole += colorize(slow);
+                    slowColorize += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    blackhole += colorize(fast);
+                    fastColorize += System.nanoTime() - start;
+                }
+            }
+            final double calls = (double) ROUNDS * PASSES * 256 * 3;
+            System.out.printf("%-16s %14.3f %14.3f %8.2f %14.3f %14.3f %8.2f %6s%n", names[c],
+                    slowFaces / calls, fastFaces / calls, (double) slowFaces / fastFaces,
+                    slowColorize / calls, fastColorize / calls, (double) slowColorize / fastColorize,
+                    same ? "yes" : "NO");
+        }
+    }
+
+    private static int faces(VoxelColor color) {
+        int sum = 0;
+        for (int p = 0; p < PASSES; p++) {
+            for (int v = 0; v < 256; v++) {
+                sum += color.verticalFace((byte) v) ^ color.leftFace((byte) v) ^ color.rightFace((byte) v);
+            }
+        }
+        return sum;
+    }
+
+    private static int colorize(Colorizer colorizer) {
+        int sum = 0;
+        for (int p = 0; p < PASSES; p++) {
+            for (int v = 0; v < 256; v++) {
+                sum += colorizer.colorize((byte) v, (p & 3) - 2) + colorizer.colorize((byte) v, 2)
+                        + colorizer.colorize((byte) v, -3);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Wraps a Colorizer so colorize() loops over brighten() or darken(), and so dimmer() does too unless the Colorizer
+     * has its own dimmer(); this is how Colorizer worked before it had lookup tables.
+     */
+    private static Colorizer looping(final Colorizer colorizer) throws NoSuchMethodException {
+        final boolean ownDimmer = colorizer.getClass().getMethod("dimmer", int.class, byte.class)
+                .getDeclaringClass() != Colorizer.class;
+        return new Colorizer(colorizer.getReducer()) {
+            @Override
+            public byte[] mainColors() {
+                return colorizer.mainColors();
+            }
+
+            @Override
+            public byte[] grayscale() {
+                return colorizer.grayscale();
+            }
+
+            @Override
+            public byte brighten(byte voxel) {
+                return colorizer.brighten(voxel);
+            }
+
+            @Override
+            public byte darken(byte voxel) {
+                return colorizer.darken(voxel);
+            }
+
+            @Override
+            public byte colorize(byte voxel, int brightness) {
+                if (brightness > 0) {
+                    for (int i = 0; i < brightness; i++) {
+                        voxel = brighten(voxel);
+                    }
+                } else if (brightness < 0) {
+                    for (int i = 0; i > brightness; i--) {
+                        voxel = darken(voxel);
+                    }
+                }
+                return voxel;
+            }
+
+            @Override
+            public int dimmer(int brightness, byte voxel) {
+                if (ownDimmer)
+                    return colorizer.dimmer(brightness, voxel);
+                return getReducer().paletteArray[colorize(voxel, brightness - 2) & 0xFF];
+            }
+
+            @Override
+            public int getShadeBit() {
+                return colorizer.getShadeBit();
+            }
+
+            @Override
+            public int getWaveBit() {
+                return colorizer.getWaveBit();
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import warpwriter.Coloring;
+import warpwriter.DitherEngine;
+import warpwriter.PaletteReducer;
+
+import java.util.Arrays;
+
+/**
+ * Reports megapixels per second for each ditherer in PaletteReducer, both the serial Pixmap methods and the
+ * multi-threaded int[] methods in DitherEngine, and checks that both produce the same pixels. The test image is a
+ * generated gradient with some noise and a transparent border, so it exercises dithering without needing any files.
+ * Pass a width and height as arguments to change the image size (the default is 1024x1024). This is a plain timing loop
+ * with a warm-up pass, not a JMH harness, so treat small differences with suspicion.
+ */
+public class DitherBenchmark {
+    private static final int WARMUP = 3, ROUNDS = 10;
+    private static final String[] NAMES = {"reduce (Sierra Lite)", "reduceBurkes", "reduceFloydSteinberg",
+            "reduceWithNoise", "reduceSolid", "reduceWithRoberts", "reduceRobertsMul", "reduceRobertsEdit",
+            "reduceShaderMimic"};
+
+    public static void main(String[] args) {
+        GdxNativesLoader.load();
+        final int width = args.length > 1 ? Integer.parseInt(args[0]) : 1024,
+                height = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        final int[] source = new int[width * height];
+        int state = 12345;
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                state = state * 0x2C9277B5 + 0xAC564B05;
+                if (x < 8 || y < 8 || x >= width - 8 || y >= height - 8) {
+                    source[i] = 0;
+                    continue;
+                }
+                final int r = Math.min(255, x * 255 / width + (state >>> 29)),
+                        g = Math.min(255, y * 255 / height + (state >>> 26 & 7)),
+                        b = (x + y) * 127 / (width + height) + (state >>> 23 & 7);
+                source[i] = r << 24 | g << 16 | b << 8 | 0xFF;
+            }
+        }
+        final PaletteReducer reducer = new PaletteReducer(Coloring.AURORA);
+        final DitherEngine engine = new DitherEngine(reducer);
+        final Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        final int[] buffer = new int[width * height];
+        final double megapixels = width * height * 1e-6;
+        System.out.println("Image is " + width + "x" + height + ", running on "
+                + engine.pool.getParallelism() + " threads, " + ROUNDS + " rounds each.");
+        System.out.printf("%-24s %14s %14s %8s%n", "ditherer", "serial MP/s", "engine MP/s", "same?");
+        for (int kind = 0; kind < NAMES.length; kind++) {
+            long serial = 0L, parallel = 0L;
+            boolean same = true;
+            for (int w = 0; w < 2; w++) {
+                final int rounds = w == 0 ? WARMUP : ROUNDS;
+                serial = 0L;
+                parallel = 0L;
+                for (int r = 0; r < rounds; r++) {
+                    DitherEngine.setPixels(pixmap, source);
+                    long start = System.nanoTime();
+                    serialReduce(reducer, kind, pixmap);
+                    serial += System.nanoTime() - start;
+                    System.arraycopy(source, 0, buffer, 0, buffer.length);
+                    start = System.nanoTime();
+                    engineReduce(engine, kind, buffer, width, height);
+                    parallel += System.nanoTime() - start;
+                    same &= Arrays.equals(buffer, DitherEngine.getPixels(pixmap, null));
+                }
+            }
+            System.out.printf("%-24s %14.2f %14.2f %8s%n", NAMES[kind], megapixels * ROUNDS / (serial * 1e-9),
+                    megapixels * ROUNDS / (parallel * 1e-9), same ? "yes" : "NO");
+        }
+        pixmap.dispose();
+    }
+
+    private static void serialReduce(PaletteReducer reducer, int kind, Pixmap pixmap) {
+        switch (kind) {
+            case 0: reducer.reduce(pixmap); break;
+            case 1: reducer.reduceBurkes(pixmap); break;
+            case 2: reducer.reduceFloydSteinberg(pixmap); break;
+            case 3: reducer.reduceWithNoise(pixmap); break;
+            case 4: reducer.reduceSolid(pixmap); break;
+            case 5: reducer.reduceWithRoberts(pixmap); break;
+            case 6: reducer.reduceRobertsMul(pixmap); break;
+            case 7: reducer.reduceRobertsEdit(pixmap); break;
+            default: reducer.reduceShaderMimic(pixmap); break;
+        }
+    }
+
+    private static void engineReduce(DitherEngine engine, int kind, int[] pixels, int width, int height) {
+        switch (kind) {
+            case 0: engine.reduce(pixels, width, height); break;
+            case 1: engine.reduceBurkes(pixels, width, height); break;
+            case 2: engine.reduceFloydSteinberg(pixels, width, height); break;
+            case 3: engine.reduceWithNoise(pixels, width, height); break;
+            case 4: engine.reduceSolid(pixels, width, height); break;
+            case 5: engine.reduceWithRoberts(pixels, width, height); break;
+            case 6: engine.reduceRobertsMul(pixels, width, height); break;
+            case 7: engine.reduceRobertsEdit(pixels, width, height); break;
+            default: engine.reduceShaderMimic(pixels, width, height); break;
+        }
+    }
+}
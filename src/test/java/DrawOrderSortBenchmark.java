@@ -0,0 +1,97 @@
+import squidpony.squidmath.IntVLA;
+import warpwriter.model.VoxelSeq;
+import warpwriter.model.nonvoxel.HashMap3D;
+import warpwriter.model.nonvoxel.IntComparator;
+import warpwriter.model.nonvoxel.IntRadixSort;
+import warpwriter.model.nonvoxel.IntSortIndirect;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times sorting a VoxelSeq's draw order with the merge sort in IntSortIndirect against the radix sort in IntRadixSort,
+ * for every comparator in IntComparator.side and IntComparator.side45, on random blobs with roughly 10k to 500k
+ * potentially-visible voxels, and checks that both sorts give the same order. Every round starts from the same
+ * unsorted order, since the merge sort is much faster on input that is already sorted. This is a plain timing loop
+ * with a warm-up pass, not a JMH harness, so treat small differences with suspicion.
+ */
+public class DrawOrderSortBenchmark {
+    private static final int WARMUP = 2, ROUNDS = 5;
+
+    public static void main(String[] args) {
+        final int[] targets = {10000, 50000, 100000, 250000, 500000};
+        final IntRadixSort radix = new IntRadixSort();
+        System.out.printf("%10s %14s %14s %8s %6s%n", "visible", "merge ms/sort", "radix ms/sort", "speedup", "same?");
+        for (int target : targets) {
+            final VoxelSeq seq = blob(target, new Random(target));
+            final int[] unsorted = Arrays.copyOf(seq.order.items, seq.order.size);
+            final int size = unsorted.length;
+            final int[] merged = new int[size];
+            final int[] keys = keyTable(seq);
+            long merge = 0L, fast = 0L;
+            boolean same = true;
+            for (int w = 0; w < 2; w++) {
+                final int rounds = w == 0 ? WARMUP : ROUNDS;
+                merge = 0L;
+                fast = 0L;
+                for (int r = 0; r < rounds; r++) {
+                    for (int c = 0; c < 48; c++) {
+                        final IntComparator comparator = c < 24 ? IntComparator.side[c] : IntComparator.side45[c - 24];
+                        System.arraycopy(unsorted, 0, seq.order.items, 0, size);
+                        long start = System.nanoTime();
+                        IntSortIndirect.sort(keys, seq.order, 0, size, comparator);
+                        merge += System.nanoTime() - start;
+                        System.arraycopy(seq.order.items, 0, merged, 0, size);
+                        System.arraycopy(unsorted, 0, seq.order.items, 0, size);
+                        start = System.nanoTime();
+                        radix.sort(keys, seq.order, 0, size, comparator);
+                        fast += System.nanoTime() - start;
+                        for (int i = 0; i < size && same; i++) {
+                            same = merged[i] == seq.order.items[i];
+                        }
+                    }
+                }
+            }
+            System.out.printf("%10d %14.3f %14.3f %8.2f %6s%n", size, merge * 1e-6 / (ROUNDS * 48),
+                    fast * 1e-6 / (ROUNDS * 48), (double) merge / fast, same ? "yes" : "NO");
+        }
+    }
+
+    /**
+     * Makes a VoxelSeq filled with random voxels in a cube, at a density that leaves almost every voxel exposed, so
+     * its hollowed order has close to {@code visible} voxels.
+     */
+    private static VoxelSeq blob(int visible, Random random) {
+        final int side = (int) Math.ceil(Math.cbrt(visible * 2.0));
+        final VoxelSeq seq = new VoxelSeq(visible * 2);
+        seq.sizeX(side);
+        seq.sizeY(side);
+        seq.sizeZ(side);
+        for (int x = 0; x < side; x++) {
+            for (int y = 0; y < side; y++) {
+                for (int z = 0; z < side; z++) {
+                    if (random.nextBoolean())
+                        seq.put(HashMap3D.fuse(x, y, z), (byte) (random.nextInt(255) + 1));
+                }
+            }
+        }
+        seq.hollow();
+        return seq;
+    }
+
+    /**
+     * Rebuilds the key table that the positions in seq.order point into, since VoxelSeq doesn't expose its own.
+     */
+    private static int[] keyTable(VoxelSeq seq) {
+        final IntVLA order = seq.order;
+        int max = 0;
+        for (int i = 0; i < order.size; i++) {
+            max = Math.max(max, order.items[i]);
+        }
+        final int[] keys = new int[max + 1];
+        for (int i = 0; i < order.size; i++) {
+            keys[order.items[i]] = seq.keyAtHollow(i);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,95 @@
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import warpwriter.PNG8;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares PNG8.writePrecisely() compressing on one thread against the same method after PNG8.setParallel(), on a
+ * generated sprite-atlas-like image with fewer than 256 colors, reporting throughput in megabytes of pixel data per
+ * second, the size of each file, and whether both files decode (with ImageIO) to the same pixels. Pass a width and
+ * height as arguments to change the image size (the default is 4096x4096). This is a plain timing loop with a warm-up
+ * pass, not a JMH harness, so treat small differences with suspicion.
+ */
+public class PngDeflateBenchmark {
+    private static final int WARMUP = 2, ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        GdxNativesLoader.load();
+        final int width = args.length > 1 ? Integer.parseInt(args[0]) : 4096,
+                height = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        final Pixmap pixmap = atlas(width, height);
+        final PNG8 serial = new PNG8(width * height >>> 2), parallel = new PNG8(width * height >>> 2);
+        parallel.setParallel();
+        final ByteArrayOutputStream serialOut = new ByteArrayOutputStream(width * height >>> 2),
+                parallelOut = new ByteArrayOutputStream(width * height >>> 2);
+        System.out.println("Image is " + width + "x" + height + ", running on "
+                + ForkJoinPool.commonPool().getParallelism() + " threads, " + ROUNDS + " rounds each.");
+        long serialTime = 0L, parallelTime = 0L;
+        for (int w = 0; w < 2; w++) {
+            final int rounds = w == 0 ? WARMUP : ROUNDS;
+            serialTime = 0L;
+            parallelTime = 0L;
+            for (int r = 0; r < rounds; r++) {
+                serialOut.reset();
+                long start = System.nanoTime();
+                serial.writePrecisely(serialOut, pixmap, null, false, 400);
+                serialTime += System.nanoTime() - start;
+                parallelOut.reset();
+                start = System.nanoTime();
+                parallel.writePrecisely(parallelOut, pixmap, null, false, 400);
+                parallelTime += System.nanoTime() - start;
+            }
+        }
+        final double megabytes = width * height * 1e-6;
+        final byte[] serialBytes = serialOut.toByteArray(), parallelBytes = parallelOut.toByteArray();
+        System.out.printf("%-10s %10s %12s %8s%n", "writer", "MB/s", "bytes", "ratio");
+        System.out.printf("%-10s %10.2f %12d %8.4f%n", "serial", megabytes * ROUNDS / (serialTime * 1e-9),
+                serialBytes.length, 1.0);
+        System.out.printf("%-10s %10.2f %12d %8.4f%n", "parallel", megabytes * ROUNDS / (parallelTime * 1e-9),
+                parallelBytes.length, (double) parallelBytes.length / serialBytes.length);
+        System.out.println("Same pixels? " + (Arrays.equals(decode(serialBytes), decode(parallelBytes)) ? "yes" : "NO"));
+        serial.dispose();
+        parallel.dispose();
+        pixmap.dispose();
+    }
+
+    /**
+     * Makes an image of 64x64 tiles, each a banded disc using colors from a 200-color palette on a transparent
+     * background, so it compresses somewhat like a real sprite atlas.
+     */
+    private static Pixmap atlas(int width, int height) {
+        final int[] palette = new int[200];
+        int state = 42;
+        for (int i = 0; i < palette.length; i++) {
+            state = state * 0x2C9277B5 + 0xAC564B05;
+            palette[i] = state | 0xFF;
+        }
+        final Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        for (int ty = 0; ty < height; ty += 64) {
+            for (int tx = 0; tx < width; tx += 64) {
+                state = state * 0x2C9277B5 + 0xAC564B05;
+                final int base = (state >>> 8) % 190, radius = 12 + (state >>> 27);
+                for (int y = 0; y < 64 && ty + y < height; y++) {
+                    for (int x = 0; x < 64 && tx + x < width; x++) {
+                        final int dx = x - 32, dy = y - 32, d = dx * dx + dy * dy;
+                        if (d < radius * radius)
+                            pixmap.drawPixel(tx + x, ty + y, palette[base + (d * 10 / (radius * radius))]);
+                    }
+                }
+            }
+        }
+        return pixmap;
+    }
+
+    private static int[] decode(byte[] png) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
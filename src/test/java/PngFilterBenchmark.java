@@ -0,0 +1,105 @@
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import warpwriter.PNG8;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compares the size of PNG8 files and the time taken to write them with each PNG8.FilterMode, on two generated images
+ * with fewer than 256 colors: a sprite sheet with large flat areas, like rendered voxel models, and a noisy texture.
+ * Also checks that every mode decodes (with ImageIO) to the same pixels. Pass a width and height as arguments to change
+ * the image size (the default is 1024x1024). This is a plain timing loop with a warm-up pass, not a JMH harness, so
+ * treat small differences with suspicion.
+ */
+public class PngFilterBenchmark {
+    private static final int WARMUP = 1, ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        GdxNativesLoader.load();
+        final int width = args.length > 1 ? Integer.parseInt(args[0]) : 1024,
+                height = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        final PNG8 png = new PNG8(width * height >>> 2);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(width * height >>> 2);
+        System.out.println("Images are " + width + "x" + height + ", " + ROUNDS + " rounds each.");
+        System.out.printf("%-8s %-12s %10s %12s %8s %6s%n", "image", "mode", "ms/write", "bytes", "ratio", "same?");
+        for (int kind = 0; kind < 2; kind++) {
+            final Pixmap pixmap = kind == 0 ? sprites(width, height) : texture(width, height);
+            int[] expected = null;
+            int paethSize = 0;
+            for (PNG8.FilterMode mode : PNG8.FilterMode.values()) {
+                png.setFilterMode(mode);
+                long time = 0L;
+                for (int w = 0; w < 2; w++) {
+                    final int rounds = w == 0 ? WARMUP : ROUNDS;
+                    time = 0L;
+                    for (int r = 0; r < rounds; r++) {
+                        out.reset();
+                        final long start = System.nanoTime();
+                        png.writePrecisely(out, pixmap, null, false, 400);
+                        time += System.nanoTime() - start;
+                    }
+                }
+                final byte[] bytes = out.toByteArray();
+                final int[] pixels = decode(bytes);
+                if (expected == null) {
+                    expected = pixels;
+                    paethSize = bytes.length;
+                }
+                System.out.printf("%-8s %-12s %10.2f %12d %8.4f %6s%n", kind == 0 ? "sprites" : "texture", mode,
+                        time * 1e-6 / ROUNDS, bytes.length, (double) bytes.length / paethSize,
+                        Arrays.equals(expected, pixels) ? "yes" : "NO");
+            }
+            pixmap.dispose();
+        }
+        png.dispose();
+    }
+
+    /**
+     * Makes rows of 48x48 cells, each holding a flat-shaded diamond with a darker outline on a transparent background.
+     */
+    private static Pixmap sprites(int width, int height) {
+        final Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        int state = 123;
+        for (int ty = 0; ty < height; ty += 48) {
+            for (int tx = 0; tx < width; tx += 48) {
+                state = state * 0x2C9277B5 + 0xAC564B05;
+                final int fill = state | 0xFF, outline = (state >>> 1 & 0x7F7F7F00) | 0xFF,
+                        radius = 10 + (state >>> 28);
+                for (int y = 0; y < 48 && ty + y < height; y++) {
+                    for (int x = 0; x < 48 && tx + x < width; x++) {
+                        final int d = Math.abs(x - 24) + Math.abs(y - 24);
+                        if (d < radius)
+                            pixmap.drawPixel(tx + x, ty + y, d == radius - 1 ? outline : fill);
+                    }
+                }
+            }
+        }
+        return pixmap;
+    }
+
+    /**
+     * Makes a grainy gradient using 240 gray levels.
+     */
+    private static Pixmap texture(int width, int height) {
+        final Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        int state = 456;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                state = state * 0x2C9277B5 + 0xAC564B05;
+                final int v = Math.min(239, (x + y) * 224 / (width + height) + (state >>> 28));
+                pixmap.drawPixel(x, y, v * 0x01010100 + 0x101010FF);
+            }
+        }
+        return pixmap;
+    }
+
+    private static int[] decode(byte[] png) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,102 @@
+import warpwriter.VoxIO;
+import warpwriter.model.AnimatedVoxelSeq;
+import warpwriter.model.nonvoxel.LittleEndianDataInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares the stream-based VoxIO readers against the ByteBuffer readers, both from a byte array already in memory and
+ * from a memory-mapped file. Pass the paths of .vox files as arguments, or run it from the project root to use the
+ * models in the "Rinsed" folder. This is a plain timing loop with a warm-up pass, not a JMH harness, so treat small
+ * differences with suspicion.
+ */
+public class VoxIOBenchmark {
+    private static final int WARMUP = 3, ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        File[] files;
+        if (args.length > 0) {
+            files = new File[args.length];
+            for (int i = 0; i < args.length; i++) {
+                files[i] = new File(args[i]);
+            }
+        } else {
+            files = new File("Rinsed").listFiles((dir, name) -> name.endsWith(".vox"));
+            if (files == null || files.length == 0) {
+                System.out.println("No .vox files given and none found in Rinsed/");
+                return;
+            }
+        }
+        final int count = files.length;
+        final byte[][] contents = new byte[count][];
+        long totalBytes = 0L;
+        for (int i = 0; i < count; i++) {
+            RandomAccessFile raf = new RandomAccessFile(files[i], "r");
+            contents[i] = new byte[(int) raf.length()];
+            raf.readFully(contents[i]);
+            raf.close();
+            totalBytes += contents[i].length;
+        }
+        System.out.println("Loading " + count + " files, " + totalBytes + " bytes total, " + ROUNDS + " rounds each.");
+
+        long sink = 0L;
+        for (int w = 0; w < 2; w++) {
+            final int rounds = w == 0 ? WARMUP : ROUNDS;
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < count; i++) {
+                    byte[][][] v = VoxIO.readVox(new LittleEndianDataInputStream(new ByteArrayInputStream(contents[i])));
+                    if (v != null) sink += v.length;
+                }
+            }
+            long streamArray = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < count; i++) {
+                    byte[][][] v = VoxIO.readVox(ByteBuffer.wrap(contents[i]));
+                    if (v != null) sink += v.length;
+                }
+            }
+            long bufferArray = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < count; i++) {
+                    byte[][][] v = VoxIO.readVox(VoxIO.mapFile(files[i].getPath()));
+                    if (v != null) sink += v.length;
+                }
+            }
+            long mappedArray = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < count; i++) {
+                    AnimatedVoxelSeq v = VoxIO.readVoxelSeq(new LittleEndianDataInputStream(new ByteArrayInputStream(contents[i])));
+                    sink += v.fullSize();
+                }
+            }
+            long streamSeq = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < count; i++) {
+                    AnimatedVoxelSeq v = VoxIO.readVoxelSeq(ByteBuffer.wrap(contents[i]));
+                    sink += v.fullSize();
+                }
+            }
+            long bufferSeq = System.nanoTime() - start;
+            if (w == 0) continue;
+            report("readVox, stream", streamArray, rounds * count);
+            report("readVox, wrapped buffer", bufferArray, rounds * count);
+            report("readVox, mapped file", mappedArray, rounds * count);
+            report("readVoxelSeq, stream", streamSeq, rounds * count);
+            report("readVoxelSeq, wrapped buffer", bufferSeq, rounds * count);
+        }
+        System.out.println("(ignore this) " + sink);
+    }
+
+    private static void report(String name, long nanos, int loads) {
+        System.out.printf("%-30s %10.3f ms total, %8.2f microseconds per file%n", name, nanos * 1e-6, nanos * 1e-3 / loads);
+    }
+}